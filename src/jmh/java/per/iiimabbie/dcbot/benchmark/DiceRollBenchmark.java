@@ -0,0 +1,102 @@
+package per.iiimabbie.dcbot.benchmark;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import per.iiimabbie.dcbot.dice.DiceExpression;
+
+/**
+ * 骰子指令比對的基準測試
+ * DiceRollListener 會收到每一則訊息，所以以一般聊天為主、少量擲骰的語料測量整批比對的成本
+ *
+ * @author iiimabbie
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.AverageTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class DiceRollBenchmark {
+
+  // 改寫前 DiceRollListener 使用的規則，作為對照組
+  private static final Pattern DICE_PATTERN = Pattern.compile("(\\d+)[dD](\\d+)");
+
+  private static final String[] CHAT = {
+      "早安大家",
+      "今天晚上 9 點開團，記得準時上線",
+      "https://discord.com/channels/123456789012345678/876543210987654321 這個連結看一下",
+      "我剛剛抽到 SSR 了哈哈哈哈哈哈",
+      "有人知道 D&D 5e 的法術位怎麼算嗎？我查了好久還是看不懂，規則書第 201 頁那段",
+      "好累喔 明天還要上班",
+      "<@1367355249643360317> 幫我整理一下上次的劇情",
+      "2024 年的團錄我放在共用資料夾了",
+      "笑死",
+      "這個 boss 血量 350 打了三回合才打掉 120",
+  };
+
+  private static final String[] ROLLS = {
+      "1d100 偵查",
+      "3d6 力量",
+      "1D20 先攻",
+      "2d10+5 傷害",
+      "4d6kh3+2 屬性",
+      "1d20adv 隱匿",
+  };
+
+  private List<String> corpus;
+
+  @Setup
+  public void setup() {
+    // 固定種子，確保每次執行的語料相同；約 5% 是擲骰
+    Random random = new Random(42);
+    corpus = new ArrayList<>(1000);
+    for (int i = 0; i < 1000; i++) {
+      corpus.add(random.nextInt(20) == 0
+          ? ROLLS[random.nextInt(ROLLS.length)]
+          : CHAT[random.nextInt(CHAT.length)]);
+    }
+  }
+
+  /**
+   * DiceRollListener 目前的掃描：沒有擲骰的訊息不配置物件
+   */
+  @Benchmark
+  public int scanCorpus() {
+    int matches = 0;
+    for (String content : corpus) {
+      if (DiceExpression.find(content) != null) {
+        matches++;
+      }
+    }
+    return matches;
+  }
+
+  /**
+   * 對照組：以 regex 比對整批語料，回傳擲骰訊息數
+   */
+  @Benchmark
+  public int matchCorpus() {
+    int matches = 0;
+    for (String content : corpus) {
+      Matcher matcher = DICE_PATTERN.matcher(content);
+      if (matcher.find()) {
+        matches += Integer.parseInt(matcher.group(1)) > 0 ? 1 : 0;
+      }
+    }
+    return matches;
+  }
+}
@@ -0,0 +1,53 @@
+package per.iiimabbie.dcbot.benchmark;
+
+import ch.qos.logback.classic.Level;
+import ch.qos.logback.classic.Logger;
+import ch.qos.logback.classic.LoggerContext;
+import ch.qos.logback.classic.spi.LoggingEvent;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import per.iiimabbie.dcbot.logging.DiscordAppender;
+
+/**
+ * Discord 日誌 webhook 內容建立的基準測試（建立 embed 並序列化成 JSON）
+ *
+ * @author iiimabbie
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.AverageTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class DiscordAppenderBenchmark {
+
+  private final ObjectMapper objectMapper = new ObjectMapper();
+  private DiscordAppender appender;
+  private LoggingEvent event;
+
+  @Setup
+  public void setup() {
+    appender = new DiscordAppender();
+    Logger logger = new LoggerContext().getLogger("per.iiimabbie.dcbot.listener.MessageListener");
+    event = new LoggingEvent(Logger.class.getName(), logger, Level.ERROR,
+        "AI 處理失敗 - 錯誤類型: {}, 訊息: {}",
+        new IllegalStateException("Gemini API 回應錯誤 503"),
+        new Object[]{"GEMINI_API_ERROR", "Gemini API 暫時無法使用（斷路器開啟）"});
+  }
+
+  @Benchmark
+  public byte[] buildPayload() throws JsonProcessingException {
+    return objectMapper.writeValueAsBytes(appender.buildPayload(event));
+  }
+}
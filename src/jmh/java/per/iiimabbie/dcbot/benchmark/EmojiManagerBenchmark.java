@@ -0,0 +1,89 @@
+package per.iiimabbie.dcbot.benchmark;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import net.dv8tion.jda.api.entities.emoji.ApplicationEmoji;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import per.iiimabbie.dcbot.enums.BotEmojis;
+import per.iiimabbie.dcbot.service.EmojiManager;
+
+/**
+ * Emoji 查詢的基準測試
+ * 每則訊息處理都會查詢 loading / error / busy 等 emoji
+ *
+ * @author iiimabbie
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.AverageTime})
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class EmojiManagerBenchmark {
+
+  private EmojiManager emojiManager;
+
+  @Setup
+  public void setup() {
+    List<ApplicationEmoji> emojis = new ArrayList<>();
+    long id = 1_300_000_000_000_000_000L;
+    for (BotEmojis.Tool tool : BotEmojis.Tool.values()) {
+      emojis.add(emoji(tool.getName(), id++));
+    }
+    for (BotEmojis.Emotion emotion : BotEmojis.Emotion.values()) {
+      emojis.add(emoji(emotion.getName(), id++));
+    }
+    for (BotEmojis.Dice dice : BotEmojis.Dice.values()) {
+      emojis.add(emoji(dice.getName(), id++));
+    }
+    emojiManager = new EmojiManager();
+    emojiManager.replaceCache(emojis);
+  }
+
+  /**
+   * 已快取的 emoji
+   */
+  @Benchmark
+  public String toolEmoji() {
+    return emojiManager.getToolEmoji(BotEmojis.Tool.LOADING);
+  }
+
+  /**
+   * 未上傳的 emoji，回傳空字串
+   */
+  @Benchmark
+  public String missingEmoji() {
+    return emojiManager.getEmojiFormatted("not_uploaded");
+  }
+
+  /**
+   * 不需要 JDA 的最小 ApplicationEmoji，只提供名稱和 ID，其餘走介面的 default 實作
+   */
+  private static ApplicationEmoji emoji(String name, long id) {
+    InvocationHandler handler = (proxy, method, args) -> switch (method.getName()) {
+      case "getName" -> name;
+      case "getIdLong" -> id;
+      case "getId" -> Long.toUnsignedString(id);
+      case "isAnimated" -> false;
+      case "getFormatted" -> "<:" + name + ":" + id + ">";
+      case "hashCode" -> Long.hashCode(id);
+      case "equals" -> proxy == args[0];
+      case "toString" -> "ApplicationEmoji:" + name;
+      default -> method.isDefault() ? InvocationHandler.invokeDefault(proxy, method, args) : null;
+    };
+    return (ApplicationEmoji) Proxy.newProxyInstance(ApplicationEmoji.class.getClassLoader(),
+        new Class<?>[]{ApplicationEmoji.class}, handler);
+  }
+}
@@ -0,0 +1,115 @@
+package per.iiimabbie.dcbot.benchmark;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import per.iiimabbie.dcbot.config.BotConfig;
+import per.iiimabbie.dcbot.dto.gemini.GeminiRequest;
+import per.iiimabbie.dcbot.service.ConversationCache;
+import per.iiimabbie.dcbot.service.GeminiRequestTemplate;
+import per.iiimabbie.dcbot.service.TokenEstimator;
+
+/**
+ * Gemini 請求建立的基準測試
+ * 比較每次重建 DTO 並 pretty print 的舊做法，和預先序列化骨架只編碼對話內容的做法
+ *
+ * @author iiimabbie
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.AverageTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class GeminiRequestBenchmark {
+
+  @Param({"10", "50"})
+  private int turns;
+
+  private final ObjectMapper objectMapper = new ObjectMapper();
+  private BotConfig botConfig;
+  private GeminiRequestTemplate template;
+  private List<ConversationCache.Entry> history;
+
+  @Setup
+  public void setup() {
+    botConfig = new BotConfig();
+    botConfig.setName("小幫手");
+    botConfig.setSystemPrompt("你是一個友善的 Discord 機器人，回答要簡潔，使用繁體中文。".repeat(20));
+    template = new GeminiRequestTemplate(botConfig, new TokenEstimator(new SimpleMeterRegistry()));
+
+    history = new ArrayList<>(turns);
+    for (int i = 0; i < turns; i++) {
+      history.add(i % 2 == 0
+          ? new ConversationCache.Entry(i, "user", "user" + i + ": 今天要不要一起玩 TRPG？記得帶 d20 和角色卡")
+          : new ConversationCache.Entry(i, "model", "好啊！我來準備劇本，大家先擲 4d6 決定屬性吧。"));
+    }
+  }
+
+  /**
+   * 舊做法：每次都重新建立固定前綴、生成配置和安全設定，再整份 pretty print
+   */
+  @Benchmark
+  public byte[] rebuildAndPrettyPrint() throws IOException {
+    List<GeminiRequest.Content> contents = new ArrayList<>();
+    contents.add(content("user", "System: " + botConfig.getSystemPrompt()));
+    contents.add(content("model", "好的，我是" + botConfig.getName() + "，我會按照指示與用戶互動。"));
+    for (ConversationCache.Entry entry : history) {
+      contents.add(content(entry.role(), entry.text()));
+    }
+
+    GeminiRequest request = GeminiRequest.builder()
+        .contents(contents)
+        .generationConfig(GeminiRequest.GenerationConfig.builder()
+            .temperature(0.7)
+            .topK(40)
+            .topP(0.95)
+            .maxOutputTokens(2048)
+            .build())
+        .safetySettings(List.of(
+            safety("HARM_CATEGORY_HARASSMENT"),
+            safety("HARM_CATEGORY_HATE_SPEECH"),
+            safety("HARM_CATEGORY_SEXUALLY_EXPLICIT"),
+            safety("HARM_CATEGORY_DANGEROUS_CONTENT")))
+        .build();
+    return objectMapper.writerWithDefaultPrettyPrinter().writeValueAsString(request)
+        .getBytes(StandardCharsets.UTF_8);
+  }
+
+  /**
+   * 新做法：固定部分已預先序列化，只編碼變動的對話
+   */
+  @Benchmark
+  public byte[] renderSkeleton() throws IOException {
+    return template.current().render(history);
+  }
+
+  private static GeminiRequest.Content content(String role, String text) {
+    return GeminiRequest.Content.builder()
+        .role(role)
+        .parts(List.of(GeminiRequest.Part.builder().text(text).build()))
+        .build();
+  }
+
+  private static GeminiRequest.SafetySetting safety(String category) {
+    return GeminiRequest.SafetySetting.builder()
+        .category(category)
+        .threshold("BLOCK_MEDIUM_AND_ABOVE")
+        .build();
+  }
+}
@@ -0,0 +1,83 @@
+package per.iiimabbie.dcbot.benchmark;
+
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import per.iiimabbie.dcbot.client.GeminiResponseParser;
+import per.iiimabbie.dcbot.dto.gemini.GeminiResponse;
+
+/**
+ * Gemini 回應解析的基準測試
+ * 使用接近實際大小的回應（約 4 KB 文字、安全評分、usageMetadata 和未對應的欄位）
+ *
+ * @author iiimabbie
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.AverageTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class GeminiResponseBenchmark {
+
+  // 與 Gemini 傳輸層相同的設定
+  private final ObjectMapper objectMapper = new ObjectMapper()
+      .configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false);
+
+  private byte[] bytes;
+  private String string;
+
+  @Setup
+  public void setup() throws IOException {
+    try (InputStream in = getClass().getResourceAsStream("/gemini-response.json")) {
+      bytes = in.readAllBytes();
+    }
+    string = new String(bytes, StandardCharsets.UTF_8);
+  }
+
+  /**
+   * 對照組：ObjectMapper 從 byte[] 解析整棵物件
+   */
+  @Benchmark
+  public String parseBytes() throws IOException {
+    return objectMapper.readValue(bytes, GeminiResponse.class).getFirstCandidateText();
+  }
+
+  /**
+   * 舊的 RestTemplate 傳輸層：先解碼成 String 再解析整棵物件
+   */
+  @Benchmark
+  public String parseString() throws IOException {
+    return objectMapper.readValue(string, GeminiResponse.class).getFirstCandidateText();
+  }
+
+  /**
+   * RestTemplate 傳輸層：從回應串流只取需要的欄位
+   */
+  @Benchmark
+  public String streamingParseStream() throws IOException {
+    return GeminiResponseParser.parse(new ByteArrayInputStream(bytes)).getFirstCandidateText();
+  }
+
+  /**
+   * HttpClient 傳輸層：從 byte[] 只取需要的欄位
+   */
+  @Benchmark
+  public String streamingParseBytes() throws IOException {
+    return GeminiResponseParser.parse(bytes).getFirstCandidateText();
+  }
+}
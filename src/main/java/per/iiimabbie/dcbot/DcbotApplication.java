@@ -3,11 +3,14 @@ package per.iiimabbie.dcbot;
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
 import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.annotation.ImportRuntimeHints;
 import org.springframework.scheduling.annotation.EnableScheduling;
+import per.iiimabbie.dcbot.config.NativeRuntimeHints;
 
 @SpringBootApplication
 @EnableConfigurationProperties
 @EnableScheduling
+@ImportRuntimeHints(NativeRuntimeHints.class)
 public class DcbotApplication {
 
     public static void main(String[] args) {
@@ -0,0 +1,87 @@
+package per.iiimabbie.dcbot.client;
+
+import java.time.Duration;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Gemini API 斷路器
+ * 連續失敗達到門檻後開啟，期間直接拒絕請求；一段時間後放行一個試探請求，成功才關閉
+ *
+ * @author iiimabbie
+ */
+@Slf4j
+public class GeminiCircuitBreaker {
+
+  public enum State {
+    CLOSED, OPEN, HALF_OPEN
+  }
+
+  private final int failureThreshold;
+  private final long openNanos;
+
+  private State state = State.CLOSED;
+  private int consecutiveFailures;
+  private long openedAt;
+  private boolean trialInFlight;
+
+  GeminiCircuitBreaker(int failureThreshold, Duration openDuration) {
+    this.failureThreshold = failureThreshold;
+    this.openNanos = openDuration.toNanos();
+  }
+
+  /**
+   * 是否允許送出請求
+   */
+  synchronized boolean tryAcquire() {
+    if (state == State.OPEN && System.nanoTime() - openedAt >= openNanos) {
+      state = State.HALF_OPEN;
+      trialInFlight = false;
+    }
+    return switch (state) {
+      case CLOSED -> true;
+      case OPEN -> false;
+      case HALF_OPEN -> {
+        if (trialInFlight) {
+          yield false;
+        }
+        trialInFlight = true;
+        yield true;
+      }
+    };
+  }
+
+  synchronized void onSuccess() {
+    if (state != State.CLOSED) {
+      log.info("Gemini API 已恢復，關閉斷路器");
+    }
+    state = State.CLOSED;
+    consecutiveFailures = 0;
+    trialInFlight = false;
+  }
+
+  synchronized void onFailure() {
+    consecutiveFailures++;
+    if (state == State.HALF_OPEN || consecutiveFailures >= failureThreshold) {
+      if (state != State.OPEN) {
+        log.warn("Gemini API 連續失敗 {} 次，開啟斷路器", consecutiveFailures);
+      }
+      state = State.OPEN;
+      openedAt = System.nanoTime();
+      trialInFlight = false;
+    }
+  }
+
+  /**
+   * 結果與 API 是否可用無關（例如 429、400），只釋放試探名額
+   */
+  synchronized void onIgnored() {
+    trialInFlight = false;
+  }
+
+  public synchronized State getState() {
+    if (state == State.OPEN && System.nanoTime() - openedAt >= openNanos) {
+      return State.HALF_OPEN;
+    }
+    return state;
+  }
+}
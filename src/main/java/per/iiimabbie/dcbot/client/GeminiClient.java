@@ -0,0 +1,34 @@
+package per.iiimabbie.dcbot.client;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Consumer;
+import per.iiimabbie.dcbot.dto.gemini.GeminiResponse;
+
+/**
+ * Gemini API 傳輸層介面
+ * 由 gemini.transport 決定使用哪一種實作，url 和 key 由 GeminiDispatcher 選定的端點提供
+ *
+ * @author iiimabbie
+ */
+public interface GeminiClient {
+
+  /**
+   * 呼叫 generateContent
+   *
+   * @param endpoint 要呼叫的端點
+   * @param body     已序列化的請求 JSON
+   * @return 完整回應，失敗時以 BotException 結束
+   */
+  CompletableFuture<GeminiResponse> generateContent(GeminiEndpoint endpoint, byte[] body);
+
+  /**
+   * 呼叫 streamGenerateContent (SSE)
+   *
+   * @param endpoint 要呼叫的端點
+   * @param body     已序列化的請求 JSON
+   * @param onChunk  每收到一段文字就呼叫一次
+   * @return 彙整後的完整回應
+   */
+  CompletableFuture<GeminiResponse> streamGenerateContent(GeminiEndpoint endpoint, byte[] body,
+      Consumer<String> onChunk);
+}
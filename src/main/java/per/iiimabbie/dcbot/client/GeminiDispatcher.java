@@ -0,0 +1,543 @@
+package per.iiimabbie.dcbot.client;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.annotation.DependsOn;
+import org.springframework.stereotype.Service;
+import per.iiimabbie.dcbot.config.GeminiConfig;
+import per.iiimabbie.dcbot.dto.gemini.GeminiResponse;
+import per.iiimabbie.dcbot.exception.BotException;
+import per.iiimabbie.dcbot.exception.GeminiApiException;
+
+/**
+ * Gemini 請求調度
+ * 在傳輸層之前加上多 key / 多模型路由、RPM / TPM 限流、429 與 5xx 的退避重試、斷路器和 hedged request。
+ * 每次嘗試都從最優先的一層中挑選可用且負載最低的端點，整層都飽和時才改用下一層
+ *
+ * 建立時就會讀取 gemini.api，所以要等 ConfigValidationService 驗證過設定
+ *
+ * @author iiimabbie
+ */
+@Slf4j
+@Service
+@DependsOn("configValidationService")
+public class GeminiDispatcher {
+
+  private final GeminiClient geminiClient;
+  private final GeminiConfig geminiConfig;
+  // 依 priority 排序的端點
+  private final List<GeminiEndpoint> endpoints;
+
+  private final Counter throttledCounter;
+  private final Counter limitRejectedCounter;
+  private final Counter circuitRejectedCounter;
+  private final Counter retryCounter;
+  private final Counter failoverCounter;
+
+  // 傳輸層呼叫都在虛擬執行緒上執行，RestTemplate 的阻塞呼叫也能被取消
+  private final ExecutorService executor = Executors.newThreadPerTaskExecutor(
+      Thread.ofVirtual().name("gemini-dispatch-", 0).factory());
+  private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(
+      Thread.ofPlatform().name("gemini-hedge").daemon().factory());
+
+  // hedge：最近成功嘗試的延遲、可用額度
+  private final LatencyWindow attemptLatency = new LatencyWindow(256);
+  private double hedgeCredits;
+  private final Timer attemptTimer;
+  private final Timer hedgedRequestTimer;
+  private final Timer unhedgedRequestTimer;
+  private final Counter hedgeLaunchedCounter;
+  private final Counter hedgeWonCounter;
+  private final Counter hedgeSkippedCounter;
+
+  public GeminiDispatcher(GeminiClient geminiClient, GeminiConfig geminiConfig, MeterRegistry meterRegistry) {
+    this.geminiClient = geminiClient;
+    this.geminiConfig = geminiConfig;
+    this.endpoints = buildEndpoints(geminiConfig, meterRegistry);
+
+    this.throttledCounter = Counter.builder("dcbot.gemini.ratelimit.throttled")
+        .description("因用戶端限流而等待的請求數")
+        .register(meterRegistry);
+    this.limitRejectedCounter = Counter.builder("dcbot.gemini.ratelimit.rejected")
+        .description("等待配額超時而拒絕的請求數")
+        .register(meterRegistry);
+    this.circuitRejectedCounter = Counter.builder("dcbot.gemini.circuit.rejected")
+        .description("所有端點斷路器都開啟時直接拒絕的請求數")
+        .register(meterRegistry);
+    this.retryCounter = Counter.builder("dcbot.gemini.retries")
+        .description("Gemini 請求重試次數")
+        .register(meterRegistry);
+    this.failoverCounter = Counter.builder("dcbot.gemini.failover")
+        .description("優先端點飽和而改用下一層端點的次數")
+        .register(meterRegistry);
+
+    this.attemptTimer = Timer.builder("dcbot.gemini.attempt.latency")
+        .description("單次 Gemini 嘗試的延遲（hedge 門檻的依據）")
+        .publishPercentiles(0.5, 0.9, 0.99)
+        .register(meterRegistry);
+    this.hedgedRequestTimer = requestTimer(meterRegistry, "true");
+    this.unhedgedRequestTimer = requestTimer(meterRegistry, "false");
+    this.hedgeLaunchedCounter = hedgeCounter(meterRegistry, "launched");
+    this.hedgeWonCounter = hedgeCounter(meterRegistry, "won");
+    this.hedgeSkippedCounter = hedgeCounter(meterRegistry, "budget_exhausted");
+  }
+
+  private static Timer requestTimer(MeterRegistry meterRegistry, String hedged) {
+    return Timer.builder("dcbot.gemini.request.latency")
+        .description("Gemini 請求（含重試與 hedge）的總延遲")
+        .tag("hedged", hedged)
+        .publishPercentiles(0.5, 0.9, 0.99)
+        .register(meterRegistry);
+  }
+
+  private static Counter hedgeCounter(MeterRegistry meterRegistry, String result) {
+    return Counter.builder("dcbot.gemini.hedge")
+        .description("hedged request 次數：送出、第二次嘗試勝出、額度不足略過")
+        .tag("result", result)
+        .register(meterRegistry);
+  }
+
+  /**
+   * gemini.api 為預設端點，gemini.endpoints 中未設定的 url / key 沿用 gemini.api
+   */
+  private static List<GeminiEndpoint> buildEndpoints(GeminiConfig config, MeterRegistry meterRegistry) {
+    GeminiConfig.Api api = config.getApi();
+    GeminiConfig.RateLimit rateLimit = config.getRateLimit();
+    List<GeminiEndpoint> endpoints = new ArrayList<>();
+    endpoints.add(new GeminiEndpoint(GeminiEndpoint.DEFAULT_NAME, api.getUrl(), api.getStreamUrl(), api.getKey(),
+        1, 0, rateLimit.getRequestsPerMinute(), rateLimit.getTokensPerMinute(), config.getCircuitBreaker(),
+        meterRegistry));
+
+    for (int i = 0; i < config.getEndpoints().size(); i++) {
+      GeminiConfig.Endpoint endpoint = config.getEndpoints().get(i);
+      String name = endpoint.getName() != null ? endpoint.getName() : "endpoint-" + (i + 1);
+      String url = endpoint.getUrl() != null ? endpoint.getUrl() : api.getUrl();
+      // 沿用 api 的 url 時串流端點也一起沿用
+      String streamUrl = endpoint.getStreamUrl() != null || endpoint.getUrl() != null
+          ? endpoint.getStreamUrl() : api.getStreamUrl();
+      endpoints.add(new GeminiEndpoint(name, url, streamUrl,
+          endpoint.getKey() != null ? endpoint.getKey() : api.getKey(),
+          endpoint.getWeight(), endpoint.getPriority(),
+          endpoint.getRequestsPerMinute() != null ? endpoint.getRequestsPerMinute() : rateLimit.getRequestsPerMinute(),
+          endpoint.getTokensPerMinute() != null ? endpoint.getTokensPerMinute() : rateLimit.getTokensPerMinute(),
+          config.getCircuitBreaker(), meterRegistry));
+    }
+    endpoints.sort(Comparator.comparingInt(GeminiEndpoint::getPriority));
+    if (endpoints.size() > 1) {
+      log.info("Gemini 路由池: {}", endpoints.stream()
+          .map(endpoint -> endpoint.getName() + "(p" + endpoint.getPriority() + ")").toList());
+    }
+    return List.copyOf(endpoints);
+  }
+
+  /**
+   * 送出一般請求，token 以請求大小粗估
+   */
+  public CompletableFuture<GeminiResponse> generateContent(byte[] body) {
+    return generateContent(endpoint -> body, body.length / 4);
+  }
+
+  /**
+   * 送出一般請求
+   *
+   * @param body            依選定的端點產生請求 JSON（每次嘗試都會呼叫）
+   * @param estimatedTokens 預估的輸入 token，用來預扣 TPM 配額
+   */
+  public CompletableFuture<GeminiResponse> generateContent(Function<GeminiEndpoint, byte[]> body,
+      int estimatedTokens) {
+    if (!geminiConfig.getHedge().isEnabled()) {
+      return execute(new Call(estimatedTokens, body, null, null));
+    }
+    return hedged(estimatedTokens, body);
+  }
+
+  /**
+   * 送出串流請求，已經送出片段後就不再重試，避免重複內容
+   */
+  public CompletableFuture<GeminiResponse> streamGenerateContent(Function<GeminiEndpoint, byte[]> body,
+      int estimatedTokens, Consumer<String> onChunk) {
+    AtomicBoolean emitted = new AtomicBoolean();
+    Consumer<String> tracked = chunk -> {
+      emitted.set(true);
+      onChunk.accept(chunk);
+    };
+    return execute(new Call(estimatedTokens, body, tracked, emitted));
+  }
+
+  /**
+   * 各端點目前的限流與斷路器狀態
+   */
+  public List<GeminiEndpoint.Snapshot> snapshot() {
+    return endpoints.stream().map(GeminiEndpoint::snapshot).toList();
+  }
+
+  private CompletableFuture<GeminiResponse> execute(Call call) {
+    acquire(call);
+    return call.result;
+  }
+
+  /**
+   * 第一次嘗試超過門檻還沒回應時送出第二次嘗試，取先成功的結果並取消另一個
+   */
+  private CompletableFuture<GeminiResponse> hedged(int estimatedTokens, Function<GeminiEndpoint, byte[]> body) {
+    long start = System.nanoTime();
+    CompletableFuture<GeminiResponse> result = new CompletableFuture<>();
+    Call primary = new Call(estimatedTokens, body, null, null);
+    AtomicReference<Call> hedge = new AtomicReference<>();
+    AtomicInteger pending = new AtomicInteger(1);
+    AtomicBoolean hedgeLaunched = new AtomicBoolean();
+
+    synchronized (this) {
+      hedgeCredits = Math.min(10, hedgeCredits + geminiConfig.getHedge().getBudgetPercent() / 100);
+    }
+
+    execute(primary).whenComplete((response, error) -> {
+      if (error == null && result.complete(response)) {
+        Call other = hedge.get();
+        if (other != null) {
+          other.cancel();
+        }
+      } else if (error != null && pending.decrementAndGet() == 0) {
+        result.completeExceptionally(unwrap(error));
+      }
+    });
+
+    ScheduledFuture<?> timer = scheduler.schedule(() -> {
+      if (result.isDone()) {
+        return;
+      }
+      synchronized (this) {
+        if (hedgeCredits < 1) {
+          hedgeSkippedCounter.increment();
+          return;
+        }
+        hedgeCredits -= 1;
+      }
+      Call second = new Call(estimatedTokens, body, null, null);
+      pending.incrementAndGet();
+      hedge.set(second);
+      // 先公開再檢查：第一次嘗試在上面的檢查之後才結束時，不是這裡看到結果，就是它的回呼看到 hedge 並取消
+      if (result.isDone()) {
+        synchronized (this) {
+          hedgeCredits = Math.min(10, hedgeCredits + 1);
+        }
+        return;
+      }
+      hedgeLaunched.set(true);
+      hedgeLaunchedCounter.increment();
+      log.debug("Gemini 請求超過 hedge 門檻，送出第二次嘗試");
+      execute(second).whenComplete((response, error) -> {
+        if (error == null && result.complete(response)) {
+          hedgeWonCounter.increment();
+          primary.cancel();
+        } else if (error != null && pending.decrementAndGet() == 0) {
+          result.completeExceptionally(unwrap(error));
+        }
+      });
+    }, hedgeDelay().toNanos(), TimeUnit.NANOSECONDS);
+
+    result.whenComplete((response, error) -> {
+      timer.cancel(false);
+      (hedgeLaunched.get() ? hedgedRequestTimer : unhedgedRequestTimer)
+          .record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+    });
+    return result;
+  }
+
+  /**
+   * 自適應門檻：近期單次嘗試延遲的百分位數，樣本不足時使用初始值
+   */
+  private Duration hedgeDelay() {
+    GeminiConfig.Hedge hedge = geminiConfig.getHedge();
+    if (attemptLatency.size() < 20) {
+      return hedge.getInitialDelay();
+    }
+    Duration observed = Duration.ofNanos(attemptLatency.percentile(hedge.getPercentile()));
+    return observed.compareTo(hedge.getMinDelay()) < 0 ? hedge.getMinDelay() : observed;
+  }
+
+  /**
+   * 選擇端點並取得配額，所有端點都不夠時延遲後再試（不佔用執行緒）
+   */
+  private void acquire(Call call) {
+    if (call.cancelled) {
+      call.result.cancel(false);
+      return;
+    }
+    long now = System.nanoTime();
+    GeminiEndpoint chosen = null;
+    long wait = Long.MAX_VALUE;
+    boolean anyAvailable = false;
+
+    synchronized (this) {
+      double bestScore = Double.MAX_VALUE;
+      int tiedWeight = 0;
+      int tier = Integer.MIN_VALUE;
+      for (GeminiEndpoint endpoint : endpoints) {
+        // 上一層已經有可用端點，不再往下找
+        if (chosen != null && endpoint.getPriority() != tier) {
+          break;
+        }
+        if (endpoint.getCircuitBreaker().getState() == GeminiCircuitBreaker.State.OPEN) {
+          continue;
+        }
+        anyAvailable = true;
+        long endpointWait = endpoint.waitNanos(call.tokens, now);
+        if (endpointWait > 0) {
+          wait = Math.min(wait, endpointWait);
+          continue;
+        }
+        double score = endpoint.score(now);
+        if (score < bestScore) {
+          bestScore = score;
+          chosen = endpoint;
+          tiedWeight = endpoint.getWeight();
+          tier = endpoint.getPriority();
+        } else if (score == bestScore) {
+          // 分數相同時依權重隨機選擇，避免總是落在清單中的第一個
+          tiedWeight += endpoint.getWeight();
+          if (ThreadLocalRandom.current().nextInt(tiedWeight) < endpoint.getWeight()) {
+            chosen = endpoint;
+          }
+        }
+      }
+      if (chosen != null) {
+        chosen.take(call.tokens);
+      }
+    }
+
+    if (chosen != null) {
+      if (chosen.getPriority() > endpoints.getFirst().getPriority()) {
+        failoverCounter.increment();
+      }
+      send(call, chosen);
+      return;
+    }
+    if (!anyAvailable) {
+      circuitRejectedCounter.increment();
+      call.result.completeExceptionally(BotException.geminiError("Gemini API 暫時無法使用（斷路器開啟）"));
+      return;
+    }
+    if (now + wait - call.deadline > 0) {
+      limitRejectedCounter.increment();
+      call.result.completeExceptionally(BotException.geminiBusy("等待 Gemini 配額逾時"));
+      return;
+    }
+    if (!call.throttled) {
+      call.throttled = true;
+      throttledCounter.increment();
+    }
+    log.debug("Gemini 配額不足，等待 {} ms", TimeUnit.NANOSECONDS.toMillis(wait));
+    CompletableFuture.delayedExecutor(wait, TimeUnit.NANOSECONDS, executor).execute(() -> acquire(call));
+  }
+
+  private void send(Call call, GeminiEndpoint endpoint) {
+    if (!endpoint.getCircuitBreaker().tryAcquire()) {
+      // 半開的試探名額已被其他請求拿走，重新選擇端點
+      endpoint.release(call.tokens, 0);
+      CompletableFuture.delayedExecutor(10, TimeUnit.MILLISECONDS, executor).execute(() -> acquire(call));
+      return;
+    }
+
+    long start = System.nanoTime();
+    // 不保留 Future：還沒開始的工作被取消就不會執行，配額和半開名額會永遠還不回去
+    executor.execute(() -> {
+      CompletableFuture<GeminiResponse> response;
+      synchronized (call) {
+        call.worker = Thread.currentThread();
+      }
+      try {
+        if (call.cancelled) {
+          // 開始前就被取消，一樣經過 onError 歸還配額
+          throw new CancellationException("已由另一個嘗試完成");
+        }
+        byte[] body = call.body.apply(endpoint);
+        response = call.onChunk == null
+            ? geminiClient.generateContent(endpoint, body)
+            : geminiClient.streamGenerateContent(endpoint, body, call.onChunk);
+      } catch (Exception e) {
+        response = CompletableFuture.failedFuture(e);
+      } finally {
+        synchronized (call) {
+          call.worker = null;
+        }
+        // 清掉取消時留下的中斷狀態，之後的回呼也在這個執行緒上執行
+        Thread.interrupted();
+      }
+      call.transport = response;
+      if (call.cancelled) {
+        response.cancel(true);
+      }
+
+      response.whenComplete((result, error) -> {
+        if (error == null) {
+          long elapsed = System.nanoTime() - start;
+          attemptTimer.record(elapsed, TimeUnit.NANOSECONDS);
+          attemptLatency.record(elapsed);
+          endpoint.getCircuitBreaker().onSuccess();
+          endpoint.recordSuccess();
+          GeminiResponse.UsageMetadata usage = result.getUsageMetadata();
+          long actual = usage != null && usage.getTotalTokenCount() != null ? usage.getTotalTokenCount() : call.tokens;
+          endpoint.release(call.tokens, actual);
+          call.result.complete(result);
+        } else {
+          onError(call, endpoint, unwrap(error));
+        }
+      });
+    });
+  }
+
+  private void onError(Call call, GeminiEndpoint endpoint, Throwable cause) {
+    // 失敗的請求不計入 TPM
+    endpoint.release(call.tokens, 0);
+    if (call.cancelled) {
+      // 被 hedge 的另一個嘗試取代，不算錯誤
+      endpoint.getCircuitBreaker().onIgnored();
+      call.result.completeExceptionally(new CancellationException("已由另一個嘗試完成"));
+      return;
+    }
+    endpoint.recordError();
+    if (isOutage(cause)) {
+      endpoint.getCircuitBreaker().onFailure();
+    } else {
+      endpoint.getCircuitBreaker().onIgnored();
+    }
+
+    GeminiConfig.Retry retry = geminiConfig.getRetry();
+    boolean emitted = call.emitted != null && call.emitted.get();
+    boolean retryable = isRetryable(cause) && call.attempt < retry.getMaxAttempts() && !emitted;
+
+    Duration delay;
+    Duration maxWait = geminiConfig.getRateLimit().getMaxWait();
+    if (cause instanceof GeminiApiException apiException && apiException.getStatusCode() == 429) {
+      // 暫停這個端點，重試時由 acquire 改選其他端點或等待冷卻結束
+      Duration cooldown = apiException.getRetryAfter() != null
+          ? apiException.getRetryAfter() : backoff(call.attempt);
+      endpoint.throttle(cooldown.toNanos(), System.nanoTime());
+      delay = Duration.ZERO;
+      // 最多等 maxBackoff：Retry-After 更長且沒有其他端點可用時，acquire 直接回覆忙碌
+      if (retry.getMaxBackoff().compareTo(maxWait) < 0) {
+        maxWait = retry.getMaxBackoff();
+      }
+    } else {
+      delay = backoff(call.attempt);
+    }
+
+    if (!retryable) {
+      call.result.completeExceptionally(cause);
+      return;
+    }
+
+    retryCounter.increment();
+    call.attempt++;
+    log.warn("Gemini 請求失敗（{}: {}），{} ms 後進行第 {} 次嘗試", endpoint.getName(), cause.getMessage(),
+        delay.toMillis(), call.attempt);
+    long maxWaitNanos = maxWait.toNanos();
+    CompletableFuture.delayedExecutor(delay.toMillis(), TimeUnit.MILLISECONDS, executor).execute(() -> {
+      call.deadline = System.nanoTime() + maxWaitNanos;
+      acquire(call);
+    });
+  }
+
+  /**
+   * 帶抖動的指數退避
+   */
+  private Duration backoff(int attempt) {
+    GeminiConfig.Retry retry = geminiConfig.getRetry();
+    long base = Math.min(retry.getMaxBackoff().toMillis(),
+        retry.getInitialBackoff().toMillis() << Math.min(attempt - 1, 20));
+    return Duration.ofMillis(base / 2 + ThreadLocalRandom.current().nextLong(base / 2 + 1));
+  }
+
+  private static boolean isRetryable(Throwable cause) {
+    if (cause instanceof GeminiApiException apiException) {
+      int status = apiException.getStatusCode();
+      return status == 429 || status == 500 || status == 502 || status == 503 || status == 504;
+    }
+    return cause instanceof BotException botException
+        && botException.getErrorType() == BotException.ErrorType.NETWORK_ERROR;
+  }
+
+  /**
+   * 是否代表 API 無法使用（計入斷路器）
+   */
+  private static boolean isOutage(Throwable cause) {
+    if (cause instanceof GeminiApiException apiException) {
+      return apiException.getStatusCode() >= 500;
+    }
+    return cause instanceof BotException botException
+        && botException.getErrorType() == BotException.ErrorType.NETWORK_ERROR;
+  }
+
+  private static Throwable unwrap(Throwable error) {
+    return error instanceof CompletionException && error.getCause() != null ? error.getCause() : error;
+  }
+
+  /**
+   * 一次請求（含重試）的狀態
+   */
+  private class Call {
+
+    private final int tokens;
+    private final Function<GeminiEndpoint, byte[]> body;
+    private final Consumer<String> onChunk;
+    private final AtomicBoolean emitted;
+    private final CompletableFuture<GeminiResponse> result = new CompletableFuture<>();
+    private long deadline = System.nanoTime() + geminiConfig.getRateLimit().getMaxWait().toNanos();
+    private int attempt = 1;
+    private boolean throttled;
+    // hedge 的落後者被取消時設定，停止重試並中止進行中的傳輸
+    private volatile boolean cancelled;
+    // 正在呼叫傳輸層的執行緒（以 Call 本身同步）
+    private Thread worker;
+    private volatile CompletableFuture<GeminiResponse> transport;
+
+    Call(int tokens, Function<GeminiEndpoint, byte[]> body, Consumer<String> onChunk, AtomicBoolean emitted) {
+      this.tokens = Math.max(0, tokens);
+      this.body = body;
+      this.onChunk = onChunk;
+      this.emitted = emitted;
+    }
+
+    void cancel() {
+      cancelled = true;
+      CompletableFuture<GeminiResponse> current = transport;
+      if (current != null) {
+        current.cancel(true);
+      }
+      synchronized (this) {
+        if (worker != null) {
+          // RestTemplate 傳輸在虛擬執行緒上阻塞，以中斷取消（中斷後照常經過 onError）
+          worker.interrupt();
+        }
+      }
+    }
+  }
+
+  @PreDestroy
+  public void shutdown() {
+    scheduler.shutdownNow();
+    executor.shutdownNow();
+  }
+}
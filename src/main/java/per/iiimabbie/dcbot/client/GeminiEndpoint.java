@@ -0,0 +1,198 @@
+package per.iiimabbie.dcbot.client;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import java.util.concurrent.atomic.AtomicInteger;
+import per.iiimabbie.dcbot.config.GeminiConfig;
+
+/**
+ * 路由池中的一個 Gemini 端點（一組 key + 模型）
+ * 各自有 RPM / TPM 配額、斷路器、進行中請求數和近期 429 的懲罰分數
+ *
+ * @author iiimabbie
+ */
+public class GeminiEndpoint {
+
+  // 由 gemini.api 建立的端點名稱，cachedContents 也建立在這個端點上
+  public static final String DEFAULT_NAME = "default";
+
+  // 429 懲罰分數的衰減時間常數
+  private static final double PENALTY_DECAY_NANOS = 30_000_000_000.0;
+
+  private final String name;
+  private final String url;
+  private final String streamUrl;
+  private final String key;
+  private final int weight;
+  private final int priority;
+
+  private final TokenBucket requestBucket;
+  private final TokenBucket tokenBucket;
+  private final GeminiCircuitBreaker circuitBreaker;
+  private final AtomicInteger inFlight = new AtomicInteger();
+
+  // 以下由 this 保護
+  private long cooldownUntil = System.nanoTime();
+  private double throttlePenalty;
+  private long lastThrottle;
+
+  private final Counter successCounter;
+  private final Counter errorCounter;
+  private final Counter rateLimitedCounter;
+
+  GeminiEndpoint(String name, String url, String streamUrl, String key, int weight, int priority,
+      int requestsPerMinute, int tokensPerMinute, GeminiConfig.CircuitBreaker breaker,
+      MeterRegistry meterRegistry) {
+    this.name = name;
+    this.url = url;
+    this.streamUrl = streamUrl != null && !streamUrl.isBlank()
+        ? streamUrl : url.replace(":generateContent", ":streamGenerateContent");
+    this.key = key;
+    this.weight = Math.max(1, weight);
+    this.priority = priority;
+    this.requestBucket = new TokenBucket(requestsPerMinute);
+    this.tokenBucket = new TokenBucket(tokensPerMinute);
+    this.circuitBreaker = new GeminiCircuitBreaker(breaker.getFailureThreshold(), breaker.getOpenDuration());
+
+    this.successCounter = counter(meterRegistry, "success");
+    this.errorCounter = counter(meterRegistry, "error");
+    this.rateLimitedCounter = counter(meterRegistry, "rate_limited");
+    Gauge.builder("dcbot.gemini.endpoint.inflight", inFlight, AtomicInteger::get)
+        .description("端點進行中的請求數")
+        .tag("endpoint", name)
+        .register(meterRegistry);
+    Gauge.builder("dcbot.gemini.ratelimit.requests.available", requestBucket, TokenBucket::getAvailable)
+        .description("目前剩餘的每分鐘請求配額")
+        .tag("endpoint", name)
+        .register(meterRegistry);
+    Gauge.builder("dcbot.gemini.ratelimit.tokens.available", tokenBucket, TokenBucket::getAvailable)
+        .description("目前剩餘的每分鐘 token 配額")
+        .tag("endpoint", name)
+        .register(meterRegistry);
+    Gauge.builder("dcbot.gemini.circuit.state", circuitBreaker, cb -> cb.getState().ordinal())
+        .description("斷路器狀態（0 關閉、1 開啟、2 半開）")
+        .tag("endpoint", name)
+        .register(meterRegistry);
+  }
+
+  private Counter counter(MeterRegistry meterRegistry, String result) {
+    return Counter.builder("dcbot.gemini.endpoint.requests")
+        .description("各端點的請求結果")
+        .tag("endpoint", name)
+        .tag("result", result)
+        .register(meterRegistry);
+  }
+
+  public String getName() {
+    return name;
+  }
+
+  public String getUrl() {
+    return url;
+  }
+
+  public String getStreamUrl() {
+    return streamUrl;
+  }
+
+  public String getKey() {
+    return key;
+  }
+
+  public boolean isDefault() {
+    return DEFAULT_NAME.equals(name);
+  }
+
+  int getPriority() {
+    return priority;
+  }
+
+  GeminiCircuitBreaker getCircuitBreaker() {
+    return circuitBreaker;
+  }
+
+  /**
+   * 取得 tokens 配額需要等待的時間，0 表示現在就可以送出
+   */
+  synchronized long waitNanos(long tokens, long now) {
+    long cooldown = Math.max(0, cooldownUntil - now);
+    return Math.max(cooldown, Math.max(requestBucket.waitNanos(1, now), tokenBucket.waitNanos(tokens, now)));
+  }
+
+  int getWeight() {
+    return weight;
+  }
+
+  /**
+   * 路由分數，越小越優先：送出這個請求後的進行中請求數加上近期 429 的懲罰，再除以權重
+   * 加 1 讓閒置時權重也有作用，否則所有閒置端點都是 0 分
+   */
+  synchronized double score(long now) {
+    return (inFlight.get() + 1 + decayedPenalty(now)) / weight;
+  }
+
+  synchronized void take(long tokens) {
+    requestBucket.take(1);
+    tokenBucket.take(tokens);
+    inFlight.incrementAndGet();
+  }
+
+  /**
+   * 請求結束，以實際用量修正預扣的 TPM（失敗或取消時 actualTokens 為 0，全部退還）
+   */
+  void release(long reservedTokens, long actualTokens) {
+    inFlight.decrementAndGet();
+    tokenBucket.adjust(actualTokens - reservedTokens);
+  }
+
+  void recordSuccess() {
+    successCounter.increment();
+  }
+
+  void recordError() {
+    errorCounter.increment();
+  }
+
+  /**
+   * 伺服器回應 429：暫停這個端點並清空請求配額
+   */
+  synchronized void throttle(long cooldownNanos, long now) {
+    rateLimitedCounter.increment();
+    cooldownUntil = Math.max(cooldownUntil, now + cooldownNanos);
+    throttlePenalty = decayedPenalty(now) + 1;
+    lastThrottle = now;
+    requestBucket.drain();
+  }
+
+  private double decayedPenalty(long now) {
+    if (throttlePenalty == 0) {
+      return 0;
+    }
+    return throttlePenalty * Math.exp(-(now - lastThrottle) / PENALTY_DECAY_NANOS);
+  }
+
+  Snapshot snapshot() {
+    return new Snapshot(name, priority, inFlight.get(), requestBucket.getAvailable(),
+        requestBucket.getCapacity(), tokenBucket.getAvailable(), tokenBucket.getCapacity(),
+        circuitBreaker.getState());
+  }
+
+  /**
+   * 端點狀態
+   *
+   * @param name              端點名稱
+   * @param priority          優先層級
+   * @param inFlight          進行中的請求數
+   * @param requestsAvailable 剩餘的每分鐘請求配額
+   * @param requestsPerMinute 每分鐘請求上限，0 表示不限制
+   * @param tokensAvailable   剩餘的每分鐘 token 配額
+   * @param tokensPerMinute   每分鐘 token 上限，0 表示不限制
+   * @param circuitState      斷路器狀態
+   */
+  public record Snapshot(String name, int priority, int inFlight, long requestsAvailable,
+      long requestsPerMinute, long tokensAvailable, long tokensPerMinute,
+      GeminiCircuitBreaker.State circuitState) {
+
+  }
+}
@@ -0,0 +1,192 @@
+package per.iiimabbie.dcbot.client;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParseException;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import java.io.IOException;
+import java.io.InputStream;
+import per.iiimabbie.dcbot.dto.gemini.GeminiResponse;
+
+/**
+ * Gemini 回應的串流解析器
+ * 直接以 JsonParser 逐 token 讀取，只取第一個候選回應的文字、finishReason 和 usageMetadata，
+ * 其餘欄位（safetyRatings、其他候選回應…）整段跳過，不建立中間的 String 或物件
+ *
+ * @author iiimabbie
+ */
+public final class GeminiResponseParser {
+
+  // JsonFactory 可跨執行緒共用
+  private static final JsonFactory JSON_FACTORY = new JsonFactory();
+
+  private GeminiResponseParser() {
+  }
+
+  /**
+   * 從回應串流解析（RestTemplate 傳輸層）
+   */
+  public static GeminiResponse parse(InputStream body) throws IOException {
+    try (JsonParser parser = JSON_FACTORY.createParser(body)) {
+      return parse(parser);
+    }
+  }
+
+  /**
+   * 從完整的回應內容解析（HttpClient 傳輸層、取樣記錄原始回應時）
+   */
+  public static GeminiResponse parse(byte[] body) throws IOException {
+    try (JsonParser parser = JSON_FACTORY.createParser(body)) {
+      return parse(parser);
+    }
+  }
+
+  /**
+   * 解析單一 SSE 事件的 JSON
+   */
+  public static GeminiResponse parse(String body) throws IOException {
+    try (JsonParser parser = JSON_FACTORY.createParser(body)) {
+      return parse(parser);
+    }
+  }
+
+  private static GeminiResponse parse(JsonParser parser) throws IOException {
+    expect(parser.nextToken(), JsonToken.START_OBJECT, parser);
+
+    FirstCandidate candidate = null;
+    GeminiResponse.UsageMetadata usage = null;
+    while (parser.nextToken() == JsonToken.FIELD_NAME) {
+      String field = parser.currentName();
+      JsonToken value = parser.nextToken();
+      if ("candidates".equals(field) && value == JsonToken.START_ARRAY) {
+        candidate = readCandidates(parser);
+      } else if ("usageMetadata".equals(field) && value == JsonToken.START_OBJECT) {
+        usage = readUsage(parser);
+      } else {
+        parser.skipChildren();
+      }
+    }
+
+    return candidate == null
+        ? GeminiResponse.of(null, null, usage)
+        : GeminiResponse.of(candidate.text, candidate.finishReason, usage);
+  }
+
+  /**
+   * 只讀第一個候選回應，之後的整段跳過
+   */
+  private static FirstCandidate readCandidates(JsonParser parser) throws IOException {
+    FirstCandidate first = null;
+    while (parser.nextToken() != JsonToken.END_ARRAY) {
+      if (first == null && parser.currentToken() == JsonToken.START_OBJECT) {
+        first = readCandidate(parser);
+      } else {
+        parser.skipChildren();
+      }
+    }
+    return first;
+  }
+
+  private static FirstCandidate readCandidate(JsonParser parser) throws IOException {
+    FirstCandidate candidate = new FirstCandidate();
+    while (parser.nextToken() == JsonToken.FIELD_NAME) {
+      String field = parser.currentName();
+      JsonToken value = parser.nextToken();
+      if ("content".equals(field) && value == JsonToken.START_OBJECT) {
+        candidate.text = readContent(parser);
+      } else if ("finishReason".equals(field) && value == JsonToken.VALUE_STRING) {
+        candidate.finishReason = parser.getText();
+      } else {
+        parser.skipChildren();
+      }
+    }
+    return candidate;
+  }
+
+  /**
+   * 串接所有文字 part；思考摘要（thought: true）不屬於回覆內容
+   */
+  private static String readContent(JsonParser parser) throws IOException {
+    String text = null;
+    StringBuilder joined = null;
+    while (parser.nextToken() == JsonToken.FIELD_NAME) {
+      String field = parser.currentName();
+      JsonToken value = parser.nextToken();
+      if (!"parts".equals(field) || value != JsonToken.START_ARRAY) {
+        parser.skipChildren();
+        continue;
+      }
+      while (parser.nextToken() != JsonToken.END_ARRAY) {
+        String part = parser.currentToken() == JsonToken.START_OBJECT ? readPart(parser) : skip(parser);
+        if (part == null) {
+          continue;
+        }
+        if (text == null) {
+          // 大部分回應只有一個 part，不需要另外的 StringBuilder
+          text = part;
+        } else {
+          if (joined == null) {
+            joined = new StringBuilder(text);
+          }
+          joined.append(part);
+        }
+      }
+    }
+    return joined != null ? joined.toString() : text;
+  }
+
+  private static String readPart(JsonParser parser) throws IOException {
+    String text = null;
+    boolean thought = false;
+    while (parser.nextToken() == JsonToken.FIELD_NAME) {
+      String field = parser.currentName();
+      JsonToken value = parser.nextToken();
+      if ("text".equals(field) && value == JsonToken.VALUE_STRING) {
+        text = parser.getText();
+      } else if ("thought".equals(field) && value == JsonToken.VALUE_TRUE) {
+        thought = true;
+      } else {
+        parser.skipChildren();
+      }
+    }
+    return thought ? null : text;
+  }
+
+  private static GeminiResponse.UsageMetadata readUsage(JsonParser parser) throws IOException {
+    GeminiResponse.UsageMetadata usage = new GeminiResponse.UsageMetadata();
+    while (parser.nextToken() == JsonToken.FIELD_NAME) {
+      String field = parser.currentName();
+      JsonToken value = parser.nextToken();
+      if (value != JsonToken.VALUE_NUMBER_INT) {
+        parser.skipChildren();
+        continue;
+      }
+      switch (field) {
+        case "promptTokenCount" -> usage.setPromptTokenCount(parser.getIntValue());
+        case "candidatesTokenCount" -> usage.setCandidatesTokenCount(parser.getIntValue());
+        case "totalTokenCount" -> usage.setTotalTokenCount(parser.getIntValue());
+        case "cachedContentTokenCount" -> usage.setCachedContentTokenCount(parser.getIntValue());
+        default -> {
+        }
+      }
+    }
+    return usage;
+  }
+
+  private static String skip(JsonParser parser) throws IOException {
+    parser.skipChildren();
+    return null;
+  }
+
+  private static void expect(JsonToken actual, JsonToken expected, JsonParser parser) throws IOException {
+    if (actual != expected) {
+      throw new JsonParseException(parser, "預期 " + expected + "，實際為 " + actual);
+    }
+  }
+
+  private static final class FirstCandidate {
+
+    private String text;
+    private String finishReason;
+  }
+}
@@ -0,0 +1,84 @@
+package per.iiimabbie.dcbot.client;
+
+import java.util.concurrent.Flow;
+import java.util.function.Consumer;
+import lombok.extern.slf4j.Slf4j;
+import per.iiimabbie.dcbot.dto.gemini.GeminiResponse;
+
+/**
+ * streamGenerateContent 的 SSE 行訂閱者
+ * 逐行解析 "data:" 事件，把文字片段交給 onChunk，並彙整成完整回應
+ *
+ * @author iiimabbie
+ */
+@Slf4j
+class GeminiSseSubscriber implements Flow.Subscriber<String> {
+
+  private static final String DATA_PREFIX = "data:";
+
+  private final Consumer<String> onChunk;
+  // 這次請求抽樣到要記錄原始回應
+  private final boolean logRaw;
+
+  private final StringBuilder text = new StringBuilder();
+  private String finishReason;
+  private GeminiResponse.UsageMetadata usageMetadata;
+
+  GeminiSseSubscriber(Consumer<String> onChunk, boolean logRaw) {
+    this.onChunk = onChunk;
+    this.logRaw = logRaw;
+  }
+
+  @Override
+  public void onSubscribe(Flow.Subscription subscription) {
+    subscription.request(Long.MAX_VALUE);
+  }
+
+  @Override
+  public void onNext(String line) {
+    if (!line.startsWith(DATA_PREFIX)) {
+      // 空行是事件分隔，其他欄位 (event:, id:) 用不到
+      return;
+    }
+
+    if (logRaw) {
+      log.info("Gemini API 原始串流片段: {}", line);
+    }
+    try {
+      GeminiResponse chunk = GeminiResponseParser.parse(line.substring(DATA_PREFIX.length()));
+
+      String chunkText = chunk.getFirstCandidateText();
+      if (chunkText != null && !chunkText.isEmpty()) {
+        text.append(chunkText);
+        onChunk.accept(chunkText);
+      }
+
+      if (chunk.getCandidates() != null && !chunk.getCandidates().isEmpty()
+          && chunk.getCandidates().getFirst().getFinishReason() != null) {
+        finishReason = chunk.getCandidates().getFirst().getFinishReason();
+      }
+      if (chunk.getUsageMetadata() != null) {
+        usageMetadata = chunk.getUsageMetadata();
+      }
+    } catch (Exception e) {
+      log.warn("無法解析 Gemini 串流片段: {}", e.getMessage());
+    }
+  }
+
+  @Override
+  public void onError(Throwable throwable) {
+    // 錯誤由 HttpClient 的 CompletableFuture 傳遞
+  }
+
+  @Override
+  public void onComplete() {
+    // 結果由 getResult 取得
+  }
+
+  /**
+   * 將所有片段彙整成一個 GeminiResponse
+   */
+  GeminiResponse getResult() {
+    return GeminiResponse.of(text.toString(), finishReason, usageMetadata);
+  }
+}
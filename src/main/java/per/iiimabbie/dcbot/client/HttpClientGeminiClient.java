@@ -0,0 +1,158 @@
+package per.iiimabbie.dcbot.client;
+
+import jakarta.annotation.PreDestroy;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.net.http.HttpResponse.BodySubscribers;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.Consumer;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+import per.iiimabbie.dcbot.config.GeminiConfig;
+import per.iiimabbie.dcbot.dto.gemini.GeminiResponse;
+import per.iiimabbie.dcbot.exception.BotException;
+import per.iiimabbie.dcbot.exception.GeminiApiException;
+import per.iiimabbie.dcbot.metrics.PipelineMetrics;
+
+/**
+ * 以 JDK HttpClient 實作的 Gemini 傳輸層
+ * HTTP/2 + keep-alive 連線池，整個請求過程不佔用呼叫端執行緒
+ *
+ * @author iiimabbie
+ */
+@Slf4j
+@Component
+@ConditionalOnProperty(prefix = "gemini", name = "transport", havingValue = "http-client")
+public class HttpClientGeminiClient implements GeminiClient {
+
+  private static final Duration CONNECT_TIMEOUT = Duration.ofSeconds(10);
+  private static final Duration REQUEST_TIMEOUT = Duration.ofMinutes(1);
+
+  private final ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+  private final HttpClient httpClient;
+  private final PipelineMetrics pipelineMetrics;
+  private final GeminiConfig.RawLog rawLog;
+
+  public HttpClientGeminiClient(PipelineMetrics pipelineMetrics, GeminiConfig geminiConfig) {
+    this.pipelineMetrics = pipelineMetrics;
+    this.rawLog = geminiConfig.getRawLog();
+    // 同一個 HttpClient 共用連線，避免每次回覆都重新 TLS 握手
+    this.httpClient = HttpClient.newBuilder()
+        .version(HttpClient.Version.HTTP_2)
+        .connectTimeout(CONNECT_TIMEOUT)
+        .executor(executor)
+        .build();
+  }
+
+  @Override
+  public CompletableFuture<GeminiResponse> generateContent(GeminiEndpoint endpoint, byte[] body) {
+    String url = endpoint.getUrl() + "?key=" + endpoint.getKey();
+    long start = System.nanoTime();
+    boolean logRaw = rawLog.sample();
+
+    HttpResponse.BodyHandler<GeminiResponse> handler = info -> {
+      if (info.statusCode() / 100 != 2) {
+        return errorSubscriber(info);
+      }
+      return BodySubscribers.mapping(BodySubscribers.ofByteArray(), bytes -> {
+        // 收完整個回應後才開始解析，之前都算 HTTP
+        pipelineMetrics.recordStage(PipelineMetrics.Stage.GEMINI_HTTP, start);
+        if (logRaw) {
+          log.info("Gemini API 原始回應: {}", new String(bytes, StandardCharsets.UTF_8));
+        }
+        return parse(bytes);
+      });
+    };
+
+    return send(url, body, handler);
+  }
+
+  @Override
+  public CompletableFuture<GeminiResponse> streamGenerateContent(GeminiEndpoint endpoint, byte[] body,
+      Consumer<String> onChunk) {
+    String url = endpoint.getStreamUrl() + "?alt=sse&key=" + endpoint.getKey();
+    long start = System.nanoTime();
+
+    HttpResponse.BodyHandler<GeminiResponse> handler = info -> {
+      if (info.statusCode() / 100 != 2) {
+        return errorSubscriber(info);
+      }
+      // lineSeparator 為 null 時同時支援 \n 與 \r\n；串流邊收邊解析，整段都算 HTTP
+      return BodySubscribers.fromLineSubscriber(
+          new GeminiSseSubscriber(onChunk, rawLog.sample()), subscriber -> {
+            pipelineMetrics.recordStage(PipelineMetrics.Stage.GEMINI_HTTP, start);
+            return subscriber.getResult();
+          },
+          StandardCharsets.UTF_8, null);
+    };
+
+    return send(url, body, handler);
+  }
+
+  private CompletableFuture<GeminiResponse> send(String url, byte[] body,
+      HttpResponse.BodyHandler<GeminiResponse> handler) {
+    HttpRequest request = HttpRequest.newBuilder(URI.create(url))
+        .timeout(REQUEST_TIMEOUT)
+        .header("Content-Type", "application/json")
+        .POST(HttpRequest.BodyPublishers.ofByteArray(body))
+        .build();
+
+    CompletableFuture<HttpResponse<GeminiResponse>> exchange = httpClient.sendAsync(request, handler);
+    CompletableFuture<GeminiResponse> result = exchange
+        .thenApply(HttpResponse::body)
+        .exceptionally(e -> {
+          throw translate(e);
+        });
+    // 呼叫端取消時（例如 hedged request 的落後者）一併中止 HTTP 交換
+    result.whenComplete((response, error) -> {
+      if (result.isCancelled()) {
+        exchange.cancel(true);
+      }
+    });
+    return result;
+  }
+
+  private GeminiResponse parse(byte[] body) {
+    try {
+      long start = System.nanoTime();
+      GeminiResponse response = GeminiResponseParser.parse(body);
+      pipelineMetrics.recordStage(PipelineMetrics.Stage.PARSE, start);
+      return response;
+    } catch (Exception e) {
+      throw BotException.geminiError("無法解析 Gemini 回應", e);
+    }
+  }
+
+  /**
+   * 非 2xx 回應：讀完錯誤內容後以 GeminiApiException 結束
+   */
+  private HttpResponse.BodySubscriber<GeminiResponse> errorSubscriber(HttpResponse.ResponseInfo info) {
+    String retryAfter = info.headers().firstValue("Retry-After").orElse(null);
+    return BodySubscribers.mapping(BodySubscribers.ofString(StandardCharsets.UTF_8), errorBody -> {
+      log.warn("Gemini API 回應錯誤 {}: {}", info.statusCode(), errorBody);
+      throw new GeminiApiException(info.statusCode(), errorBody, retryAfter);
+    });
+  }
+
+  private BotException translate(Throwable e) {
+    Throwable cause = e instanceof CompletionException && e.getCause() != null ? e.getCause() : e;
+    if (cause instanceof BotException botException) {
+      return botException;
+    }
+    log.error("調用 Gemini API 時發生網路錯誤", cause);
+    return BotException.networkError("網路連線問題", cause);
+  }
+
+  @PreDestroy
+  public void shutdown() {
+    executor.shutdown();
+  }
+}
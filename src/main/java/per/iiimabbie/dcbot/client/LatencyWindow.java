@@ -0,0 +1,45 @@
+package per.iiimabbie.dcbot.client;
+
+import java.util.Arrays;
+
+/**
+ * 最近 N 筆延遲的滑動視窗，用來計算 hedge 的自適應門檻
+ *
+ * @author iiimabbie
+ */
+class LatencyWindow {
+
+  private final long[] samples;
+  private int next;
+  private int size;
+
+  LatencyWindow(int capacity) {
+    this.samples = new long[capacity];
+  }
+
+  synchronized void record(long nanos) {
+    samples[next] = nanos;
+    next = (next + 1) % samples.length;
+    size = Math.min(size + 1, samples.length);
+  }
+
+  synchronized int size() {
+    return size;
+  }
+
+  /**
+   * 取得百分位數，沒有樣本時回傳 -1
+   */
+  long percentile(double percentile) {
+    long[] sorted;
+    synchronized (this) {
+      if (size == 0) {
+        return -1;
+      }
+      sorted = Arrays.copyOf(samples, size);
+    }
+    Arrays.sort(sorted);
+    int index = (int) Math.ceil(percentile * sorted.length) - 1;
+    return sorted[Math.max(0, Math.min(sorted.length - 1, index))];
+  }
+}
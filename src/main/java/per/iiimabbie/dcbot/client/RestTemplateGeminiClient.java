@@ -0,0 +1,113 @@
+package per.iiimabbie.dcbot.client;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Consumer;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Component;
+import org.springframework.web.client.HttpStatusCodeException;
+import org.springframework.web.client.RestTemplate;
+import per.iiimabbie.dcbot.config.GeminiConfig;
+import per.iiimabbie.dcbot.dto.gemini.GeminiResponse;
+import per.iiimabbie.dcbot.exception.BotException;
+import per.iiimabbie.dcbot.exception.GeminiApiException;
+import per.iiimabbie.dcbot.metrics.PipelineMetrics;
+
+/**
+ * 以 RestTemplate 實作的 Gemini 傳輸層（預設）
+ * 同步阻塞呼叫端執行緒，串流模式會等完整回應後一次送出
+ *
+ * @author iiimabbie
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+@ConditionalOnProperty(prefix = "gemini", name = "transport", havingValue = "rest", matchIfMissing = true)
+public class RestTemplateGeminiClient implements GeminiClient {
+
+  // 使用配置好的 RestTemplate, 需配合lombok.config
+  @Qualifier("defaultRestTemplate")
+  private final RestTemplate restTemplate;
+  private final PipelineMetrics pipelineMetrics;
+  private final GeminiConfig geminiConfig;
+
+  @Override
+  public CompletableFuture<GeminiResponse> generateContent(GeminiEndpoint endpoint, byte[] body) {
+    try {
+      return CompletableFuture.completedFuture(exchange(endpoint, body));
+    } catch (BotException e) {
+      return CompletableFuture.failedFuture(e);
+    }
+  }
+
+  @Override
+  public CompletableFuture<GeminiResponse> streamGenerateContent(GeminiEndpoint endpoint, byte[] body,
+      Consumer<String> onChunk) {
+    return generateContent(endpoint, body).thenApply(response -> {
+      String text = response.getFirstCandidateText();
+      if (text != null && !text.isEmpty()) {
+        onChunk.accept(text);
+      }
+      return response;
+    });
+  }
+
+  private GeminiResponse exchange(GeminiEndpoint endpoint, byte[] body) {
+    String url = endpoint.getUrl() + "?key=" + endpoint.getKey();
+
+    boolean logRaw = geminiConfig.getRawLog().sample();
+
+    try {
+      // 發送請求，回應直接從串流解析，不先讀成 String
+      long start = System.nanoTime();
+      return restTemplate.execute(url, HttpMethod.POST,
+          request -> {
+            request.getHeaders().setContentType(MediaType.APPLICATION_JSON);
+            request.getBody().write(body);
+          },
+          response -> {
+            // 收到回應標頭之前算 HTTP，之後邊讀邊解析都算 PARSE
+            pipelineMetrics.recordStage(PipelineMetrics.Stage.GEMINI_HTTP, start);
+            if (!response.getStatusCode().is2xxSuccessful()) {
+              throw new GeminiApiException(response.getStatusCode().value(),
+                  new String(response.getBody().readAllBytes(), StandardCharsets.UTF_8));
+            }
+
+            long parseStart = System.nanoTime();
+            GeminiResponse parsed;
+            try {
+              if (logRaw) {
+                // 抽樣到的請求才保留完整內容
+                byte[] raw = response.getBody().readAllBytes();
+                log.info("Gemini API 原始回應: {}", new String(raw, StandardCharsets.UTF_8));
+                parsed = GeminiResponseParser.parse(raw);
+              } else {
+                parsed = GeminiResponseParser.parse(response.getBody());
+              }
+            } catch (JsonProcessingException e) {
+              // 連線中斷等 IOException 交給 RestTemplate 轉成網路錯誤
+              throw BotException.geminiError("無法解析 Gemini 回應", e);
+            }
+            pipelineMetrics.recordStage(PipelineMetrics.Stage.PARSE, parseStart);
+            return parsed;
+          });
+
+    } catch (BotException e) {
+      // 重新拋出自己的異常
+      throw e;
+    } catch (HttpStatusCodeException e) {
+      log.warn("Gemini API 回應錯誤 {}: {}", e.getStatusCode().value(), e.getResponseBodyAsString());
+      String retryAfter = e.getResponseHeaders() == null ? null : e.getResponseHeaders().getFirst("Retry-After");
+      throw new GeminiApiException(e.getStatusCode().value(), e.getResponseBodyAsString(), retryAfter);
+    } catch (Exception e) {
+      log.error("調用 Gemini API 時發生網路錯誤", e);
+      throw BotException.networkError("網路連線問題", e);
+    }
+  }
+}
@@ -0,0 +1,90 @@
+package per.iiimabbie.dcbot.client;
+
+/**
+ * 每分鐘配額的 token bucket
+ * 以經過時間連續補充，允許事後調整（實際用量和預估不同時可以出現負數，之後的請求會等待補回）
+ *
+ * @author iiimabbie
+ */
+class TokenBucket {
+
+  private final long capacity;
+  private final double refillPerNano;
+
+  private double available;
+  private long lastRefill;
+
+  /**
+   * @param perMinute 每分鐘配額，0 表示不限制
+   */
+  TokenBucket(long perMinute) {
+    this.capacity = perMinute;
+    this.refillPerNano = perMinute / 60_000_000_000.0;
+    this.available = perMinute;
+    this.lastRefill = System.nanoTime();
+  }
+
+  boolean isUnlimited() {
+    return capacity <= 0;
+  }
+
+  long getCapacity() {
+    return capacity;
+  }
+
+  /**
+   * 取得 amount 需要等待的時間，0 表示現在就夠
+   */
+  synchronized long waitNanos(long amount, long now) {
+    if (isUnlimited()) {
+      return 0;
+    }
+    refill(now);
+    // 單次需求超過容量時以容量計算，避免永遠等不到
+    double needed = Math.min(amount, capacity);
+    if (available >= needed) {
+      return 0;
+    }
+    return (long) Math.ceil((needed - available) / refillPerNano);
+  }
+
+  synchronized void take(long amount) {
+    if (!isUnlimited()) {
+      available -= Math.min(amount, capacity);
+    }
+  }
+
+  /**
+   * 調整已扣除的量，正數為多扣，負數為退還
+   */
+  synchronized void adjust(long delta) {
+    if (!isUnlimited()) {
+      available = Math.min(capacity, available - delta);
+    }
+  }
+
+  /**
+   * 清空配額，用在伺服器回應 429 時
+   */
+  synchronized void drain() {
+    if (!isUnlimited()) {
+      available = Math.min(available, 0);
+    }
+  }
+
+  synchronized long getAvailable() {
+    if (isUnlimited()) {
+      return 0;
+    }
+    refill(System.nanoTime());
+    return (long) Math.max(0, available);
+  }
+
+  private void refill(long now) {
+    long elapsed = now - lastRefill;
+    if (elapsed > 0) {
+      available = Math.min(capacity, available + elapsed * refillPerNano);
+      lastRefill = now;
+    }
+  }
+}
@@ -79,7 +79,7 @@ public class HelpCommand implements SlashCommand {
         .addField("✨ 特色功能",
             """
                 • 智能對話 (由 Gemini AI 驅動)
-                • 能傳送約50則上文
+                • 會在 token 預算內帶入最近的上文
                 • 可愛的表情符號反應(但是還沒做)
                 • 支援討論串和群組聊天""",
             false)
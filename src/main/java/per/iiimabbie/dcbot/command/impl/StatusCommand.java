@@ -1,6 +1,11 @@
 package per.iiimabbie.dcbot.command.impl;
 
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
 import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
 import lombok.RequiredArgsConstructor;
 import net.dv8tion.jda.api.EmbedBuilder;
 import net.dv8tion.jda.api.JDA;
@@ -8,10 +13,14 @@ import net.dv8tion.jda.api.entities.MessageEmbed;
 import net.dv8tion.jda.api.events.interaction.command.SlashCommandInteractionEvent;
 import net.dv8tion.jda.api.interactions.components.buttons.Button;
 import org.springframework.stereotype.Component;
+import per.iiimabbie.dcbot.client.GeminiDispatcher;
+import per.iiimabbie.dcbot.client.GeminiEndpoint;
 import per.iiimabbie.dcbot.command.SlashCommand;
 import per.iiimabbie.dcbot.config.BotConfig;
 import per.iiimabbie.dcbot.enums.ColorEnums;
 import per.iiimabbie.dcbot.exception.BotException;
+import per.iiimabbie.dcbot.metrics.PipelineMetrics;
+import per.iiimabbie.dcbot.service.AiTaskExecutor;
 
 /**
  * Status 指令 - 顯示機器人狀態
@@ -21,9 +30,15 @@ import per.iiimabbie.dcbot.exception.BotException;
 public class StatusCommand implements SlashCommand {
 
   private final BotConfig botConfig;
+  private final GeminiDispatcher geminiDispatcher;
+  private final PipelineMetrics pipelineMetrics;
+  private final AiTaskExecutor aiTaskExecutor;
 
   // 記錄啟動時間
   private static final long START_TIME = System.currentTimeMillis();
+  // Gemini 端點狀態最多佔用的欄位數（整個 embed 有 6000 字上限）
+  private static final int GEMINI_MAX_FIELDS = 3;
+  private static final int OVERFLOW_RESERVE = 32;
 
   @Override
   public String getName() {
@@ -73,11 +88,47 @@ public class StatusCommand implements SlashCommand {
     String javaVersion = System.getProperty("java.version");
     String osName = System.getProperty("os.name");
 
+    // Gemini 各端點的配額與斷路器
+    List<String> gemini = new ArrayList<>();
+    for (GeminiEndpoint.Snapshot endpoint : geminiDispatcher.snapshot()) {
+      gemini.add(String.format("**%s** (p%d) 進行中: %d\n請求: %s\nToken: %s\n斷路器: %s\n",
+          endpoint.name(), endpoint.priority(), endpoint.inFlight(),
+          formatQuota(endpoint.requestsAvailable(), endpoint.requestsPerMinute()),
+          formatQuota(endpoint.tokensAvailable(), endpoint.tokensPerMinute()),
+          endpoint.circuitState().name()));
+    }
+
+    // 近幾分鐘的處理統計（由滑動視窗直接讀取）
+    PipelineMetrics.Dashboard dashboard = pipelineMetrics.dashboard();
+    long windowMinutes = dashboard.window().toMinutes();
+    String replies = dashboard.replies() == 0
+        ? "近 " + windowMinutes + " 分鐘沒有回覆"
+        : String.format("p50 / p95 / p99: %s / %s / %s\n每分鐘: %.1f 則",
+            formatMillis(dashboard.p50Millis()), formatMillis(dashboard.p95Millis()),
+            formatMillis(dashboard.p99Millis()), dashboard.repliesPerMinute());
+    String load = String.format("處理中: %d\n排隊中: %d\nGemini 錯誤率: %s（%d 次請求）\n今日 Token: %,d",
+        aiTaskExecutor.getActiveCount(), aiTaskExecutor.getQueueDepth(),
+        formatRate(dashboard.geminiErrorRate()), dashboard.geminiRequests(), dashboard.tokensToday());
+    String caches = String.format("歷史訊息: %s\n回應: %s\nSystem prompt: %s",
+        formatRate(dashboard.historyHitRate()), formatRate(dashboard.responseHitRate()),
+        formatRate(dashboard.promptCacheRate()));
+
+    // GC 與執行緒（JMX）
+    long gcCount = 0;
+    long gcMillis = 0;
+    for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) {
+      gcCount += Math.max(0, gc.getCollectionCount());
+      gcMillis += Math.max(0, gc.getCollectionTime());
+    }
+    ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+    String jvm = String.format("GC: %d 次，共 %s\n執行緒: %d（峰值 %d）",
+        gcCount, formatMillis(gcMillis), threads.getThreadCount(), threads.getPeakThreadCount());
+
     // Discord 連線資訊
     long gatewayPing = jda.getGatewayPing();
     int guildCount = jda.getGuilds().size();
 
-    return new EmbedBuilder()
+    EmbedBuilder embed = new EmbedBuilder()
         .setTitle("🤖 " + botConfig.getName() + " 的生存報告")
         .setDescription("機器人目前運行正常 ✧◝(⁰▿⁰)◜✧")
         .setColor(ColorEnums.GREEN.getColor())
@@ -101,11 +152,74 @@ public class StatusCommand implements SlashCommand {
         .addField("當前狀態",
             String.format("%s", jda.getStatus().name()), true)
 
+        // 處理統計
+        .addField("AI 回覆（近 " + windowMinutes + " 分鐘）", replies, true)
+        .addField("負載", load, true)
+        .addField("快取命中率", caches, true)
+        .addField("JVM", jvm, true);
+
+    // Gemini 配額與斷路器，端點多時分成多個欄位
+    List<String> geminiFields = geminiFields(gemini);
+    for (int i = 0; i < geminiFields.size(); i++) {
+      embed.addField(i == 0 ? "Gemini" : "Gemini（續）", geminiFields.get(i), true);
+    }
+
+    return embed
         .setFooter("最後更新", null)
         .setTimestamp(Instant.now())
         .build();
   }
 
+  /**
+   * 把各端點的狀態分進多個欄位，每個欄位不超過 Discord 的字數上限
+   * 最多 GEMINI_MAX_FIELDS 個欄位，放不下的端點只顯示數量
+   */
+  static List<String> geminiFields(List<String> endpoints) {
+    List<String> fields = new ArrayList<>();
+    StringBuilder field = new StringBuilder();
+    for (int i = 0; i < endpoints.size(); i++) {
+      String endpoint = endpoints.get(i);
+      boolean last = fields.size() == GEMINI_MAX_FIELDS - 1;
+      // 最後一個欄位保留空間給剩餘數量
+      int limit = last ? MessageEmbed.VALUE_MAX_LENGTH - OVERFLOW_RESERVE : MessageEmbed.VALUE_MAX_LENGTH;
+      if (field.length() + endpoint.length() > limit) {
+        if (last || field.isEmpty()) {
+          field.append(String.format("…還有 %d 個端點", endpoints.size() - i));
+          break;
+        }
+        fields.add(field.toString());
+        field.setLength(0);
+      }
+      field.append(endpoint);
+    }
+    fields.add(field.toString());
+    return fields;
+  }
+
+  /**
+   * 格式化每分鐘配額
+   */
+  private String formatQuota(long available, long perMinute) {
+    if (perMinute <= 0) {
+      return "不限";
+    }
+    return String.format("%d / %d 每分鐘", available, perMinute);
+  }
+
+  /**
+   * 格式化毫秒，一秒以上改用秒
+   */
+  private String formatMillis(long millis) {
+    return millis < 1000 ? millis + " ms" : String.format("%.1f s", millis / 1000.0);
+  }
+
+  /**
+   * 格式化比例，沒有資料時顯示 -
+   */
+  private String formatRate(Double rate) {
+    return rate == null ? "-" : String.format("%.1f%%", rate * 100);
+  }
+
   /**
    * 格式化運行時間
    */
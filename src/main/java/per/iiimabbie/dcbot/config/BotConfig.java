@@ -1,5 +1,8 @@
 package per.iiimabbie.dcbot.config;
 
+import java.time.Duration;
+import java.util.HashSet;
+import java.util.Set;
 import lombok.Data;
 import org.springframework.boot.context.properties.ConfigurationProperties;
 import org.springframework.context.annotation.Configuration;
@@ -14,10 +17,133 @@ public class BotConfig {
   private String systemPrompt;
   private String ownerId;
   private String scheduledChannelId;
+  private History history = new History();
+  private Reply reply = new Reply();
+  private AiExecutor aiExecutor = new AiExecutor();
+  private Router router = new Router();
+  private Coalesce coalesce = new Coalesce();
+  private Context context = new Context();
+  private Summary summary = new Summary();
+  private ResponseCache responseCache = new ResponseCache();
 
   @Data
   public static class Status {
 
     private String text;
   }
-}
\ No newline at end of file
+
+  /**
+   * 對話歷史快取設定
+   */
+  @Data
+  public static class History {
+
+    // 每個頻道保留的歷史訊息數量（實際送出多少由 context.token-budget 決定）
+    private int capacity = 100;
+    // 最多快取的頻道數量，超過時淘汰最久未使用的頻道
+    private int maxChannels = 200;
+  }
+
+  /**
+   * 回覆設定
+   */
+  @Data
+  public static class Reply {
+
+    // 串流回覆：先送出佔位訊息，再隨著 Gemini 串流逐步編輯
+    private boolean streaming = false;
+    private String placeholder = "💭 思考中...";
+    // 同一則訊息兩次編輯的最小間隔，避免撞到 Discord 編輯頻率限制
+    private Duration editInterval = Duration.ofMillis(1200);
+    // 單則訊息長度上限（Discord 上限 2000），超過時換到下一則訊息
+    private int maxLength = 1900;
+  }
+
+  /**
+   * AI 處理執行器設定
+   */
+  @Data
+  public static class AiExecutor {
+
+    // 全域同時處理的 AI 請求上限
+    private int globalConcurrency = 8;
+    // 單一伺服器（私訊則為單一頻道）同時處理的上限
+    private int perGuildConcurrency = 3;
+    // 等待中的請求上限，超過時直接拒絕
+    private int queueCapacity = 32;
+  }
+
+  /**
+   * 事件路由設定
+   */
+  @Data
+  public static class Router {
+
+    // 每個處理器等待中的事件上限，超過時丟棄
+    private int queueCapacity = 256;
+    // Slash Command 與按鈕的處理執行緒數（訊息與擲骰固定單執行緒，保持同一頻道的順序）
+    private int interactionThreads = 4;
+  }
+
+  /**
+   * 同頻道訊息合併設定
+   */
+  @Data
+  public static class Coalesce {
+
+    // 靜默多久後才送出，期間每來一則新訊息就重新計時；0 表示不合併
+    private Duration window = Duration.ZERO;
+    // 從第一則訊息起最多等待多久
+    private Duration maxWait = Duration.ofSeconds(8);
+    // 一批最多合併幾則訊息，達到時立即送出
+    private int maxMessages = 5;
+  }
+
+  /**
+   * 上下文視窗設定
+   */
+  @Data
+  public static class Context {
+
+    // 每次請求的輸入 token 預算（含 system prompt）
+    private int tokenBudget = 12000;
+    // 單則訊息最多佔用的 token，超過時截斷
+    private int maxMessageTokens = 1000;
+  }
+
+  /**
+   * 滾動摘要設定
+   */
+  @Data
+  public static class Summary {
+
+    // 啟用後，超出視窗的舊訊息會被整理成摘要放在 system prompt 之後
+    private boolean enabled = false;
+    // 啟用摘要時原始歷史訊息的 token 預算（取代 context.token-budget）
+    private int tokenBudget = 4000;
+    // 累積多少則未摘要的舊訊息才更新一次
+    private int minBatch = 10;
+    // 摘要最大輸出 token
+    private int maxOutputTokens = 512;
+    // 最多保存摘要的頻道數量
+    private int maxChannels = 200;
+  }
+
+  /**
+   * 重複問題的回應快取設定
+   */
+  @Data
+  public static class ResponseCache {
+
+    private boolean enabled = false;
+    // 啟用快取的伺服器 ID，未列出的伺服器和私訊都不使用快取
+    private Set<String> guilds = new HashSet<>();
+    // 最多快取的回應數量，超過時淘汰最久未使用的
+    private int maxEntries = 500;
+    private Duration ttl = Duration.ofHours(1);
+    // 近似問題的 trigram Jaccard 相似度門檻，1 表示只接受完全相同
+    private double similarity = 0.85;
+    // 上下文指紋包含的最近歷史訊息數量，0 表示不考慮上下文
+    private int contextTurns = 2;
+  }
+}
@@ -1,5 +1,9 @@
 package per.iiimabbie.dcbot.config;
 
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
 import lombok.Data;
 import org.springframework.boot.context.properties.ConfigurationProperties;
 import org.springframework.context.annotation.Configuration;
@@ -10,12 +14,161 @@ import org.springframework.context.annotation.Configuration;
 public class GeminiConfig {
 
   private Api api;
+  // 額外的 key / 模型，與 api 一起組成路由池
+  private List<Endpoint> endpoints = new ArrayList<>();
+  // 傳輸方式: rest (RestTemplate，同步) 或 http-client (JDK HttpClient，HTTP/2 非同步)
+  private String transport = "rest";
+  private Cache cache = new Cache();
+  private RateLimit rateLimit = new RateLimit();
+  private Retry retry = new Retry();
+  private CircuitBreaker circuitBreaker = new CircuitBreaker();
+  private Hedge hedge = new Hedge();
+  private RawLog rawLog = new RawLog();
 
   @Data
   public static class Api {
 
     private String url;
     private String key;
+    // streamGenerateContent 端點，未設定時由 url 推導
+    private String streamUrl;
+
+    /**
+     * 取得串流端點
+     */
+    public String resolveStreamUrl() {
+      if (streamUrl != null && !streamUrl.isBlank()) {
+        return streamUrl;
+      }
+      return url.replace(":generateContent", ":streamGenerateContent");
+    }
+
+    /**
+     * 取得 API 版本根路徑，例如 https://generativelanguage.googleapis.com/v1beta
+     * url 必須包含 /models/（啟用 cache 時由 ConfigValidationService 檢查）
+     */
+    public String resolveBaseUrl() {
+      return url.substring(0, url.indexOf("/models/"));
+    }
+
+    /**
+     * 由 url 推導模型名稱，例如 models/gemini-2.0-flash
+     */
+    public String resolveModel() {
+      int start = url.indexOf("/models/") + 1;
+      int end = url.indexOf(':', start);
+      return end < 0 ? url.substring(start) : url.substring(start, end);
+    }
+  }
+
+  /**
+   * 路由池中的一個端點
+   * url 或 key 未設定時沿用 api 的設定：只填 key 是同模型多 key，只填 url 是同 key 多模型
+   */
+  @Data
+  public static class Endpoint {
+
+    private String name;
+    private String url;
+    private String key;
+    private String streamUrl;
+    // 同一層內的分流權重
+    private int weight = 1;
+    // 數字越小越優先，優先的端點都飽和時才改用下一層（例如較便宜或較快的模型）
+    private int priority = 0;
+    // 此端點的配額，未設定時使用 rate-limit 的設定
+    private Integer requestsPerMinute;
+    private Integer tokensPerMinute;
+  }
+
+  /**
+   * system prompt 的 Gemini cachedContents 設定
+   */
+  @Data
+  public static class Cache {
+
+    // 啟用後 system prompt 只上傳一次，請求改為引用快取
+    private boolean enabled = false;
+    // 快取存活時間
+    private Duration ttl = Duration.ofHours(1);
+    // 剩餘時間少於此值時延長 TTL
+    private Duration refreshMargin = Duration.ofMinutes(10);
+    // 建立失敗（例如 prompt 太短不符合快取下限）後多久再試
+    private Duration retryDelay = Duration.ofMinutes(10);
+  }
+
+  /**
+   * 用戶端限流設定，依 API 方案的配額調整
+   */
+  @Data
+  public static class RateLimit {
+
+    // 每分鐘請求數上限，0 表示不限制
+    private int requestsPerMinute = 60;
+    // 每分鐘 token 數上限（輸入 + 輸出），0 表示不限制
+    private int tokensPerMinute = 1_000_000;
+    // 等待配額的最長時間，超過時直接回覆忙碌
+    private Duration maxWait = Duration.ofSeconds(30);
   }
 
+  /**
+   * 429 / 5xx / 網路錯誤的重試設定
+   */
+  @Data
+  public static class Retry {
+
+    // 含第一次在內的最多嘗試次數
+    private int maxAttempts = 3;
+    private Duration initialBackoff = Duration.ofSeconds(1);
+    // 單次等待上限；429 的 Retry-After 超過此值時不等這個端點，沒有其他端點可用就不再重試
+    private Duration maxBackoff = Duration.ofSeconds(20);
+  }
+
+  /**
+   * 斷路器設定
+   */
+  @Data
+  public static class CircuitBreaker {
+
+    // 連續失敗幾次後開啟斷路器
+    private int failureThreshold = 5;
+    // 開啟後多久放行一個試探請求
+    private Duration openDuration = Duration.ofSeconds(30);
+  }
+
+  /**
+   * Hedged request 設定（只用於非串流請求）
+   */
+  @Data
+  public static class Hedge {
+
+    private boolean enabled = false;
+    // 第一次嘗試超過近期延遲的這個百分位數還沒回應時，送出第二次嘗試
+    private double percentile = 0.9;
+    // 門檻的下限，避免延遲很低時幾乎每個請求都 hedge
+    private Duration minDelay = Duration.ofSeconds(2);
+    // 樣本不足時使用的門檻
+    private Duration initialDelay = Duration.ofSeconds(10);
+    // hedge 最多增加的負載百分比
+    private double budgetPercent = 10;
+  }
+
+  /**
+   * 原始回應記錄（除錯用）
+   * 開啟後只記錄抽樣到的請求，其餘請求直接串流解析不保留原始內容
+   */
+  @Data
+  public static class RawLog {
+
+    private boolean enabled = false;
+    // 抽樣比例 0 ~ 1
+    private double sampleRate = 0.01;
+
+    /**
+     * 這次請求是否要記錄原始回應
+     */
+    public boolean sample() {
+      return enabled && ThreadLocalRandom.current().nextDouble() < sampleRate;
+    }
+  }
 }
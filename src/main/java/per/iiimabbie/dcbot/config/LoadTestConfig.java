@@ -0,0 +1,59 @@
+package per.iiimabbie.dcbot.config;
+
+import java.time.Duration;
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * 離線負載測試設定（只在 loadtest profile 使用）
+ */
+@Data
+@Configuration
+@ConfigurationProperties(prefix = "loadtest")
+public class LoadTestConfig {
+
+  // 每秒送出的訊息數
+  private double rate = 5;
+  // 送出訊息的時間長度
+  private Duration duration = Duration.ofMinutes(1);
+  // 送完後等待處理完畢的上限
+  private Duration drainTimeout = Duration.ofSeconds(60);
+  // 模擬的伺服器與頻道數量（頻道平均分配到各伺服器）
+  private int guilds = 3;
+  private int channels = 12;
+  // 報告輸出位置，空白則只寫到 log
+  private String reportFile = "logs/loadtest-report.txt";
+  private MockGemini gemini = new MockGemini();
+  private MockDiscord discord = new MockDiscord();
+
+  /**
+   * 本機 Gemini 模擬伺服器
+   */
+  @Data
+  public static class MockGemini {
+
+    private int port = 18089;
+    // 延遲以對數常態分佈模擬，由中位數和 p99 決定形狀
+    private Duration latencyMedian = Duration.ofMillis(800);
+    private Duration latencyP99 = Duration.ofSeconds(4);
+    // 回應 503 的比例
+    private double errorRate = 0.01;
+    // 回應 429 的比例
+    private double rateLimitRate = 0;
+    // 串流回應切成幾段
+    private int streamChunks = 8;
+    // 每則回應的字數
+    private int responseLength = 400;
+  }
+
+  /**
+   * Discord 替身
+   */
+  @Data
+  public static class MockDiscord {
+
+    // 每個 REST 操作（送出、編輯、反應）的延遲
+    private Duration latency = Duration.ofMillis(60);
+  }
+}
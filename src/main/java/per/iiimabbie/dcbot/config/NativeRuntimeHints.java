@@ -0,0 +1,85 @@
+package per.iiimabbie.dcbot.config;
+
+import java.util.List;
+import net.dv8tion.jda.api.JDA;
+import net.dv8tion.jda.api.entities.Guild;
+import net.dv8tion.jda.api.entities.Mentions;
+import net.dv8tion.jda.api.entities.Message;
+import net.dv8tion.jda.api.entities.SelfUser;
+import net.dv8tion.jda.api.entities.User;
+import net.dv8tion.jda.api.entities.channel.unions.MessageChannelUnion;
+import net.dv8tion.jda.api.entities.emoji.ApplicationEmoji;
+import net.dv8tion.jda.api.requests.RestAction;
+import net.dv8tion.jda.api.requests.restaction.MessageCreateAction;
+import net.dv8tion.jda.api.requests.restaction.MessageEditAction;
+import org.springframework.aot.hint.BindingReflectionHintsRegistrar;
+import org.springframework.aot.hint.MemberCategory;
+import org.springframework.aot.hint.RuntimeHints;
+import org.springframework.aot.hint.RuntimeHintsRegistrar;
+import org.springframework.aot.hint.TypeReference;
+import per.iiimabbie.dcbot.dto.gemini.CachedContent;
+import per.iiimabbie.dcbot.dto.gemini.GeminiRequest;
+import per.iiimabbie.dcbot.dto.gemini.GeminiResponse;
+import per.iiimabbie.dcbot.logging.DiscordAppender;
+import per.iiimabbie.dcbot.logging.RingBufferAppender;
+import per.iiimabbie.dcbot.logging.SamplingTurboFilter;
+
+/**
+ * native image 需要的反射、資源與動態代理設定（JVM 執行時不會用到）
+ * 由 DcbotApplication 的 @ImportRuntimeHints 載入，AOT 處理時寫進 reflect-config 等檔案
+ *
+ * @author iiimabbie
+ */
+public class NativeRuntimeHints implements RuntimeHintsRegistrar {
+
+  // 負載測試的 Discord 替身用 JDK Proxy 實作這些介面
+  private static final List<Class<?>> LOADTEST_PROXIES = List.of(
+      JDA.class, SelfUser.class, User.class, Guild.class, ApplicationEmoji.class,
+      MessageChannelUnion.class, Message.class, Mentions.class,
+      RestAction.class, MessageCreateAction.class, MessageEditAction.class);
+
+  private final BindingReflectionHintsRegistrar bindingRegistrar = new BindingReflectionHintsRegistrar();
+
+  @Override
+  public void registerHints(RuntimeHints hints, ClassLoader classLoader) {
+    // Jackson 序列化的 Gemini DTO（Lombok 產生的 getter / setter / builder 都要保留）
+    for (Class<?> type : List.of(GeminiRequest.class, GeminiResponse.class, CachedContent.class)) {
+      registerBinding(hints, type);
+    }
+
+    // @ConfigurationProperties 綁定（含巢狀設定類）
+    for (Class<?> type : List.of(BotConfig.class, GeminiConfig.class, DiscordConfig.class,
+        LoadTestConfig.class)) {
+      registerBinding(hints, type);
+    }
+
+    // logback-spring.xml 以類別名稱建立、以 setter 設定的元件
+    for (Class<?> type : List.of(DiscordAppender.class, RingBufferAppender.class,
+        SamplingTurboFilter.class)) {
+      hints.reflection().registerType(type, MemberCategory.INVOKE_PUBLIC_CONSTRUCTORS,
+          MemberCategory.INVOKE_PUBLIC_METHODS);
+    }
+    // <flushInterval>2 seconds</flushInterval> 透過 Duration.valueOf 轉換
+    hints.reflection().registerType(ch.qos.logback.core.util.Duration.class,
+        MemberCategory.INVOKE_PUBLIC_METHODS);
+
+    // 以下兩項是依 JDA / OkHttp 原始碼推斷的，NativeSmokeIT 的 loadtest 不會建立 JDA，尚未在執行檔上驗證
+    // JDA 用 Class.forName 檢查是否有 SLF4J 2 的實作，找不到就改用內建 logger
+    hints.reflection().registerType(TypeReference.of("org.slf4j.spi.SLF4JServiceProvider"));
+    // OkHttp（JDA 的 REST 用）判斷網域時讀取的公開後綴表
+    hints.resources().registerPattern("okhttp3/internal/publicsuffix/publicsuffixes.gz");
+
+    for (Class<?> type : LOADTEST_PROXIES) {
+      hints.proxies().registerJdkProxy(type);
+      // 未實作的方法會呼叫介面的 default method
+      hints.reflection().registerType(type, MemberCategory.INVOKE_PUBLIC_METHODS);
+    }
+  }
+
+  private void registerBinding(RuntimeHints hints, Class<?> type) {
+    bindingRegistrar.registerReflectionHints(hints.reflection(), type);
+    for (Class<?> nested : type.getDeclaredClasses()) {
+      registerBinding(hints, nested);
+    }
+  }
+}
@@ -1,11 +1,12 @@
 package per.iiimabbie.dcbot.config;
 
+import java.net.http.HttpClient;
 import java.time.Duration;
 import org.springframework.boot.web.client.RestTemplateBuilder;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.http.client.ClientHttpRequestFactory;
-import org.springframework.http.client.SimpleClientHttpRequestFactory;
+import org.springframework.http.client.JdkClientHttpRequestFactory;
 import org.springframework.web.client.RestTemplate;
 
 /**
@@ -45,11 +46,12 @@ public class RestTemplateConfig {
    * 創建 ClientHttpRequestFactory
    */
   private ClientHttpRequestFactory createRequestFactory(Duration connectTimeout, Duration readTimeout) {
-    SimpleClientHttpRequestFactory factory = new SimpleClientHttpRequestFactory();
-
-    // SimpleClientHttpRequestFactory 使用 int 毫秒
-    factory.setConnectTimeout((int) connectTimeout.toMillis());
-    factory.setReadTimeout((int) readTimeout.toMillis());
+    // 使用 JDK HttpClient，支援 PATCH（SimpleClientHttpRequestFactory 不支援）
+    HttpClient httpClient = HttpClient.newBuilder()
+        .connectTimeout(connectTimeout)
+        .build();
+    JdkClientHttpRequestFactory factory = new JdkClientHttpRequestFactory(httpClient);
+    factory.setReadTimeout(readTimeout);
 
     return factory;
   }
@@ -0,0 +1,386 @@
+package per.iiimabbie.dcbot.dice;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.random.RandomGenerator;
+import per.iiimabbie.dcbot.exception.BotException;
+
+/**
+ * 擲骰算式
+ * <p>
+ * 支援的語法（大小寫皆可，群組之間以 + / - 連接，可夾空白）：
+ * <ul>
+ *   <li>{@code NdM}：N 顆 M 面骰，{@code d%} 等於 d100，第二組以後可省略 N</li>
+ *   <li>{@code khK} / {@code kK}、{@code klK}：保留最高 / 最低 K 顆</li>
+ *   <li>{@code dhK}、{@code dlK} / {@code dK}：去掉最高 / 最低 K 顆</li>
+ *   <li>{@code adv} / {@code dis}：優勢 / 劣勢，骰兩倍數量保留最高 / 最低的 N 顆</li>
+ *   <li>{@code !}：爆骰，骰出最大值時加骰</li>
+ *   <li>整數常數</li>
+ * </ul>
+ * 例如 {@code 4d6kh3+2}、{@code 1d20adv+5}、{@code 2d6!+1d4-1}。
+ * 掃描是單次走訪、不用 regex；訊息裡沒有「數字後接 d」時不會配置任何物件
+ *
+ * @author iiimabbie
+ */
+public final class DiceExpression {
+
+  // 單一算式的骰子總數上限（含優勢加倍，不含爆骰）
+  public static final int MAX_DICE = 100;
+  // 骰子面數上限
+  public static final int MAX_SIDES = 1000;
+  // 每顆骰子最多連續爆幾次
+  public static final int MAX_EXPLOSIONS = 20;
+  // 常數上限，搭配上面的限制確保總和不會溢位
+  public static final int MAX_CONSTANT = 1_000_000;
+
+  private final String text;
+  private final int end;
+  private final List<Term> terms;
+
+  private DiceExpression(String text, int end, List<Term> terms) {
+    this.text = text;
+    this.end = end;
+    this.terms = terms;
+  }
+
+  /**
+   * 訊息裡是否可能有擲骰（「數字 d 數字」或「數字 d %」），只掃描不解析
+   */
+  public static boolean containsDice(String content) {
+    return nextCandidate(content, 0) >= 0;
+  }
+
+  /**
+   * 在訊息中尋找第一個擲骰算式
+   *
+   * @param content 訊息原始內容
+   * @return 算式，沒有擲骰時回傳 null
+   * @throws BotException 骰子數量、面數或常數超過上限
+   */
+  public static DiceExpression find(String content) {
+    for (int i = nextCandidate(content, 0); i >= 0; i = nextCandidate(content, i + 1)) {
+      int start = i;
+      while (start > 0 && isDigit(content.charAt(start - 1))) {
+        start--;
+      }
+      DiceExpression expression = new Parser(content, start).parse();
+      if (expression != null) {
+        return expression;
+      }
+    }
+    return null;
+  }
+
+  /**
+   * 從 from 開始找下一個「數字後接 d」的位置（數字的位置），沒有時回傳 -1
+   */
+  private static int nextCandidate(String content, int from) {
+    int length = content.length();
+    // 至少要有「數字 d 數字」或「數字 d %」三個字元
+    for (int i = from; i < length - 2; i++) {
+      if (!isDigit(content.charAt(i))) {
+        continue;
+      }
+      char next = content.charAt(i + 1);
+      if (next != 'd' && next != 'D') {
+        continue;
+      }
+      char sides = content.charAt(i + 2);
+      if (isDigit(sides) || sides == '%') {
+        return i;
+      }
+    }
+    return -1;
+  }
+
+  /**
+   * 算式原文，例如 4d6kh3+2
+   */
+  public String getText() {
+    return text;
+  }
+
+  /**
+   * 算式在原始訊息中結束的位置，之後是說明文字
+   */
+  public int getEnd() {
+    return end;
+  }
+
+  /**
+   * 擲骰
+   *
+   * @param random 亂數來源，一般使用 ThreadLocalRandom.current()
+   * @return 總和與每顆骰子的明細
+   */
+  public DiceRoll roll(RandomGenerator random) {
+    long total = 0;
+    StringBuilder detail = new StringBuilder();
+    for (int i = 0; i < terms.size(); i++) {
+      Term term = terms.get(i);
+      long value = term.sides == 0 ? term.count : term.roll(random, detail, i > 0);
+      if (term.sides == 0) {
+        detail.append(term.negative ? '-' : (i > 0 ? "+" : "")).append(value);
+      }
+      total = term.negative ? Math.subtractExact(total, value) : Math.addExact(total, value);
+    }
+    return new DiceRoll(total, detail.toString());
+  }
+
+  /**
+   * 擲骰結果
+   *
+   * @param total  總和
+   * @param detail 明細，例如 {@code 15[6, 5, ~~2~~, 4]+2}
+   */
+  public record DiceRoll(long total, String detail) {
+
+  }
+
+  private static boolean isDigit(char c) {
+    return c >= '0' && c <= '9';
+  }
+
+  private enum Keep {
+    ALL, HIGHEST, LOWEST
+  }
+
+  /**
+   * 一組骰子或常數（sides 為 0 時 count 就是常數值）
+   */
+  private static final class Term {
+
+    private boolean negative;
+    private int count;
+    private int sides;
+    private Keep keep = Keep.ALL;
+    private int keepCount;
+    private boolean explode;
+
+    long roll(RandomGenerator random, StringBuilder detail, boolean joined) {
+      int[] rolls = new int[count];
+      boolean[] exploded = new boolean[count];
+      for (int i = 0; i < count; i++) {
+        int value = random.nextInt(1, sides + 1);
+        int total = value;
+        // d1 每次都是最大值，不爆骰
+        for (int n = 0; explode && sides > 1 && value == sides && n < MAX_EXPLOSIONS; n++) {
+          value = random.nextInt(1, sides + 1);
+          total += value;
+          exploded[i] = true;
+        }
+        rolls[i] = total;
+      }
+
+      boolean[] dropped = dropped(rolls);
+      long sum = 0;
+      for (int i = 0; i < count; i++) {
+        if (!dropped[i]) {
+          sum += rolls[i];
+        }
+      }
+
+      if (negative) {
+        detail.append('-');
+      } else if (joined) {
+        detail.append('+');
+      }
+      detail.append(sum).append('[');
+      for (int i = 0; i < count; i++) {
+        if (i > 0) {
+          detail.append(", ");
+        }
+        if (dropped[i]) {
+          detail.append("~~").append(rolls[i]).append("~~");
+        } else {
+          detail.append(rolls[i]).append(exploded[i] ? "!" : "");
+        }
+      }
+      detail.append(']');
+      return sum;
+    }
+
+    /**
+     * 依保留規則標出要去掉的骰子；同點數時先去掉較早骰出的
+     */
+    private boolean[] dropped(int[] rolls) {
+      boolean[] dropped = new boolean[rolls.length];
+      if (keep == Keep.ALL) {
+        return dropped;
+      }
+      int drop = rolls.length - Math.min(keepCount, rolls.length);
+      for (int n = 0; n < drop; n++) {
+        int target = -1;
+        for (int i = 0; i < rolls.length; i++) {
+          if (dropped[i]) {
+            continue;
+          }
+          if (target < 0 || (keep == Keep.HIGHEST ? rolls[i] < rolls[target] : rolls[i] > rolls[target])) {
+            target = i;
+          }
+        }
+        dropped[target] = true;
+      }
+      return dropped;
+    }
+  }
+
+  /**
+   * 從骰子群組的起點往後解析，遇到無法解析的字元就結束算式
+   */
+  private static final class Parser {
+
+    private final String content;
+    private final int start;
+    private int pos;
+    private int totalDice;
+
+    Parser(String content, int start) {
+      this.content = content;
+      this.start = start;
+      this.pos = start;
+    }
+
+    DiceExpression parse() {
+      List<Term> terms = new ArrayList<>(2);
+      Term first = term(false);
+      if (first == null || first.sides == 0) {
+        return null;
+      }
+      terms.add(first);
+
+      while (true) {
+        int mark = pos;
+        skipSpaces();
+        if (pos >= content.length() || (content.charAt(pos) != '+' && content.charAt(pos) != '-')) {
+          pos = mark;
+          break;
+        }
+        boolean negative = content.charAt(pos) == '-';
+        pos++;
+        skipSpaces();
+        Term term = term(true);
+        if (term == null) {
+          // 「1d20 - 先攻」這種 - 是說明文字的一部分
+          pos = mark;
+          break;
+        }
+        term.negative = negative;
+        terms.add(term);
+      }
+      return new DiceExpression(content.substring(start, pos), pos, terms);
+    }
+
+    /**
+     * 解析一組骰子或常數，無法解析時回傳 null 並還原位置
+     */
+    private Term term(boolean allowConstant) {
+      int mark = pos;
+      long count = number();
+      boolean hasCount = count >= 0;
+
+      if (pos < content.length() && (content.charAt(pos) == 'd' || content.charAt(pos) == 'D')) {
+        pos++;
+        long sides;
+        if (pos < content.length() && content.charAt(pos) == '%') {
+          pos++;
+          sides = 100;
+        } else {
+          sides = number();
+        }
+        if (sides > 0 && (!hasCount || count > 0)) {
+          if (count > MAX_DICE) {
+            throw tooManyDice();
+          }
+          if (sides > MAX_SIDES) {
+            throw BotException.invalidParameter("骰子最多 " + MAX_SIDES + " 面");
+          }
+          Term term = new Term();
+          term.count = hasCount ? (int) count : 1;
+          term.sides = (int) sides;
+          modifiers(term);
+          totalDice += term.count;
+          if (totalDice > MAX_DICE) {
+            throw tooManyDice();
+          }
+          return term;
+        }
+      } else if (hasCount && allowConstant) {
+        if (count > MAX_CONSTANT) {
+          throw BotException.invalidParameter("常數不能超過 " + MAX_CONSTANT);
+        }
+        Term term = new Term();
+        term.count = (int) count;
+        return term;
+      }
+
+      pos = mark;
+      return null;
+    }
+
+    private void modifiers(Term term) {
+      while (pos < content.length()) {
+        char c = Character.toLowerCase(content.charAt(pos));
+        int mark = pos;
+        if (c == '!') {
+          pos++;
+          term.explode = true;
+        } else if (content.regionMatches(true, pos, "adv", 0, 3)
+            || content.regionMatches(true, pos, "dis", 0, 3)) {
+          // 要在 d（去掉骰子）之前判斷，否則 dis 會被當成 d
+          term.keep = c == 'a' ? Keep.HIGHEST : Keep.LOWEST;
+          term.keepCount = term.count;
+          term.count *= 2;
+          pos += 3;
+        } else if (c == 'k' || c == 'd') {
+          pos++;
+          char direction = pos < content.length() ? Character.toLowerCase(content.charAt(pos)) : 0;
+          boolean high = c == 'k';
+          if (direction == 'h' || direction == 'l') {
+            pos++;
+            high = direction == 'h';
+          }
+          long n = number();
+          if (n < 0) {
+            pos = mark;
+            return;
+          }
+          n = Math.min(n, term.count);
+          // 去掉最低 n 顆等於保留最高 count - n 顆
+          if (c == 'k') {
+            term.keep = high ? Keep.HIGHEST : Keep.LOWEST;
+            term.keepCount = (int) n;
+          } else {
+            term.keep = high ? Keep.LOWEST : Keep.HIGHEST;
+            term.keepCount = term.count - (int) n;
+          }
+        } else {
+          return;
+        }
+      }
+    }
+
+    /**
+     * 讀一段數字，沒有數字時回傳 -1；超過 long 範圍時以 Long.MAX_VALUE 表示（之後會超過上限）
+     */
+    private long number() {
+      long value = -1;
+      while (pos < content.length() && isDigit(content.charAt(pos))) {
+        int digit = content.charAt(pos++) - '0';
+        value = value < 0 ? digit
+            : value > (Long.MAX_VALUE - digit) / 10 ? Long.MAX_VALUE : value * 10 + digit;
+      }
+      return value;
+    }
+
+    private BotException tooManyDice() {
+      return BotException.invalidParameter("一次最多擲 " + MAX_DICE + " 顆骰子");
+    }
+
+    private void skipSpaces() {
+      while (pos < content.length() && content.charAt(pos) == ' ') {
+        pos++;
+      }
+    }
+  }
+}
@@ -0,0 +1,56 @@
+package per.iiimabbie.dcbot.dto.gemini;
+
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import java.util.List;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Gemini cachedContents 資料模型
+ * 建立快取時作為請求，API 回傳時包含 name 和 expireTime
+ *
+ * @author iiimabbie
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@JsonInclude(JsonInclude.Include.NON_NULL)
+@JsonIgnoreProperties(ignoreUnknown = true)
+public class CachedContent {
+
+  // 由 API 產生，例如 cachedContents/abc123
+  @JsonProperty("name")
+  private String name;
+
+  // 例如 models/gemini-2.0-flash
+  @JsonProperty("model")
+  private String model;
+
+  @JsonProperty("contents")
+  private List<GeminiRequest.Content> contents;
+
+  // 存活時間，格式為秒數加 s，例如 3600s
+  @JsonProperty("ttl")
+  private String ttl;
+
+  // RFC 3339 格式的到期時間
+  @JsonProperty("expireTime")
+  private String expireTime;
+
+  @JsonProperty("usageMetadata")
+  private UsageMetadata usageMetadata;
+
+  @Data
+  @NoArgsConstructor
+  @JsonIgnoreProperties(ignoreUnknown = true)
+  public static class UsageMetadata {
+
+    @JsonProperty("totalTokenCount")
+    private Integer totalTokenCount;
+  }
+}
@@ -1,5 +1,6 @@
 package per.iiimabbie.dcbot.dto.gemini;
 
+import com.fasterxml.jackson.annotation.JsonInclude;
 import com.fasterxml.jackson.annotation.JsonProperty;
 import java.util.List;
 import lombok.AllArgsConstructor;
@@ -27,6 +28,11 @@ public class GeminiRequest {
   @JsonProperty("safetySettings")
   private List<SafetySetting> safetySettings;
 
+  // cachedContents 的名稱，例如 cachedContents/abc123，設定後 contents 接在快取內容之後
+  @JsonProperty("cachedContent")
+  @JsonInclude(JsonInclude.Include.NON_NULL)
+  private String cachedContent;
+
   @Data
   @Builder
   @NoArgsConstructor
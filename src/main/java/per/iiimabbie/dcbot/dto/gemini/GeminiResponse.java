@@ -72,6 +72,36 @@ public class GeminiResponse {
 
     @JsonProperty("totalTokenCount")
     private Integer totalTokenCount;
+
+    // 由 cachedContent 提供的輸入 token 數（已包含在 promptTokenCount 內）
+    @JsonProperty("cachedContentTokenCount")
+    private Integer cachedContentTokenCount;
+  }
+
+  /**
+   * 建立只有一個候選回應的 GeminiResponse（串流解析、SSE 彙整使用）
+   */
+  public static GeminiResponse of(String text, String finishReason, UsageMetadata usageMetadata) {
+    GeminiResponse response = new GeminiResponse();
+    response.setUsageMetadata(usageMetadata);
+    if (text == null && finishReason == null) {
+      return response;
+    }
+
+    Part part = new Part();
+    part.setText(text);
+
+    Content content = new Content();
+    content.setRole("model");
+    content.setParts(List.of(part));
+
+    Candidate candidate = new Candidate();
+    candidate.setContent(content);
+    candidate.setFinishReason(finishReason);
+    candidate.setIndex(0);
+
+    response.setCandidates(List.of(candidate));
+    return response;
   }
 
   /**
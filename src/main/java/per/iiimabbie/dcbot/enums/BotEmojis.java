@@ -9,6 +9,7 @@ public class BotEmojis {
     LOADING("loading"),
     SUCCESS("success"),
     ERROR("error"),
+    BUSY("busy"),
     GITHUB("github");
 
     private final String name;
@@ -31,6 +31,7 @@ public class BotException extends RuntimeException {
   public enum ErrorType {
     // AI 相關錯誤
     GEMINI_API_ERROR("我的大腦暫時短路了，請稍後再試試"),
+    GEMINI_BUSY("太多人在找我聊天了，稍等一下再試試"),
 
     // Discord API 相關錯誤
     DISCORD_API_ERROR("Discord 好像壞掉了呢害我拿不到資料T_T"),
@@ -72,6 +73,10 @@ public class BotException extends RuntimeException {
     return new BotException(ErrorType.GEMINI_API_ERROR, details, cause);
   }
 
+  public static BotException geminiBusy(String details) {
+    return new BotException(ErrorType.GEMINI_BUSY, details);
+  }
+
   public static BotException discordError(String details) {
     return new BotException(ErrorType.DISCORD_API_ERROR, details);
   }
@@ -88,6 +93,10 @@ public class BotException extends RuntimeException {
     return new BotException(ErrorType.NETWORK_ERROR, details, cause);
   }
 
+  public static BotException invalidParameter(String details) {
+    return new BotException(ErrorType.INVALID_PARAMETER, details);
+  }
+
   public static BotException permissionDenied() {
     return new BotException(ErrorType.PERMISSION_DENIED, ErrorType.PERMISSION_DENIED.getErrMessage());
   }
@@ -0,0 +1,51 @@
+package per.iiimabbie.dcbot.exception;
+
+import java.time.Duration;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import lombok.Getter;
+
+/**
+ * Gemini API 回應非 2xx
+ * 保留狀態碼、錯誤內容和建議的重試時間，讓呼叫端判斷是否可重試或需要降級
+ *
+ * @author iiimabbie
+ */
+@Getter
+public class GeminiApiException extends BotException {
+
+  // 429 回應內容中的 RetryInfo，例如 "retryDelay": "37s"
+  private static final Pattern RETRY_DELAY = Pattern.compile("\"retryDelay\"\\s*:\\s*\"(\\d+(?:\\.\\d+)?)s\"");
+
+  private final int statusCode;
+  private final String responseBody;
+  // 伺服器建議的重試時間，沒有提供時為 null
+  private final Duration retryAfter;
+
+  public GeminiApiException(int statusCode, String responseBody) {
+    this(statusCode, responseBody, null);
+  }
+
+  public GeminiApiException(int statusCode, String responseBody, String retryAfterHeader) {
+    super(ErrorType.GEMINI_API_ERROR, "Gemini API 回應錯誤: " + statusCode);
+    this.statusCode = statusCode;
+    this.responseBody = responseBody;
+    this.retryAfter = parseRetryAfter(retryAfterHeader, responseBody);
+  }
+
+  /**
+   * 先看 Retry-After 標頭（秒數），再看回應內容的 retryDelay
+   */
+  private static Duration parseRetryAfter(String header, String body) {
+    if (header != null && header.strip().matches("\\d+")) {
+      return Duration.ofSeconds(Long.parseLong(header.strip()));
+    }
+    if (body != null) {
+      Matcher matcher = RETRY_DELAY.matcher(body);
+      if (matcher.find()) {
+        return Duration.ofMillis((long) (Double.parseDouble(matcher.group(1)) * 1000));
+      }
+    }
+    return null;
+  }
+}
@@ -3,7 +3,6 @@ package per.iiimabbie.dcbot.listener;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import net.dv8tion.jda.api.events.interaction.component.ButtonInteractionEvent;
-import net.dv8tion.jda.api.hooks.ListenerAdapter;
 import net.dv8tion.jda.api.interactions.components.buttons.Button;
 import org.springframework.stereotype.Component;
 import per.iiimabbie.dcbot.command.impl.CommandsCommand;
@@ -11,18 +10,17 @@ import per.iiimabbie.dcbot.command.impl.StatusCommand;
 import per.iiimabbie.dcbot.exception.BotException;
 
 /**
- * 按鈕互動監聽器
+ * 按鈕互動處理器（由 EventRouter 分派）
  */
 @Slf4j
 @Component
 @RequiredArgsConstructor
-public class ButtonInteractionListener extends ListenerAdapter {
+public class ButtonInteractionListener {
 
   private final CommandsCommand commandsCommand;
   private final StatusCommand statusCommand;
 
-  @Override
-  public void onButtonInteraction(ButtonInteractionEvent event) {
+  public void handle(ButtonInteractionEvent event) {
     String buttonId = event.getComponentId();
     log.info("收到按鈕點擊: {} - 用戶: {}", buttonId, event.getUser().getName());
 
@@ -67,7 +65,8 @@ public class ButtonInteractionListener extends ListenerAdapter {
               .queue();
         } catch (Exception e) {
           log.error("重新整理狀態時發生錯誤", e);
-          event.reply("❌ 無法重新整理狀態資訊")
+          // 已經 deferEdit，只能透過 hook 回覆
+          event.getHook().sendMessage("❌ 無法重新整理狀態資訊")
               .setEphemeral(true)
               .queue();
         }
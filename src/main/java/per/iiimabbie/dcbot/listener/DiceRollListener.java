@@ -5,66 +5,61 @@ import lombok.extern.slf4j.Slf4j;
 import net.dv8tion.jda.api.entities.Message;
 import net.dv8tion.jda.api.entities.User;
 import net.dv8tion.jda.api.events.message.MessageReceivedEvent;
-import net.dv8tion.jda.api.hooks.ListenerAdapter;
 import org.springframework.stereotype.Component;
+import per.iiimabbie.dcbot.dice.DiceExpression;
+import per.iiimabbie.dcbot.exception.BotException;
+import per.iiimabbie.dcbot.metrics.PipelineMetrics;
 
-import java.util.Random;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
+import java.util.concurrent.ThreadLocalRandom;
 
 @Component
 @RequiredArgsConstructor
 @Slf4j
-public class DiceRollListener extends ListenerAdapter {
+public class DiceRollListener {
 
-    private final Random random = new Random();
-    private final Pattern dicePattern = Pattern.compile("(\\d+)[dD](\\d+)");
+    private final PipelineMetrics pipelineMetrics;
 
-    @Override
-    public void onMessageReceived(MessageReceivedEvent event) {
-        if (event.getAuthor().isBot()) return;
-        
+    /**
+     * 處理含有擲骰的訊息（EventRouter 已排除 bot 並確認有「數字 d 數字」）
+     */
+    public void handle(MessageReceivedEvent event) {
         Message message = event.getMessage();
         String content = message.getContentRaw();
         
-        // 檢查消息內容是否包含xdo格式
-        Matcher matcher = dicePattern.matcher(content);
-        if (matcher.find()) {
-            try {
-                int min = Integer.parseInt(matcher.group(1));
-                int max = Integer.parseInt(matcher.group(2));
-                
-                if (min > 0 && max >= min) {
-                    int result = generateRandomNumber(min, max);
-                    
-                    User author = event.getAuthor();
-                    String mention = author.getAsMention();
-                    String nickname = event.getMember() != null ? event.getMember().getEffectiveName() : author.getName();
-                    
-                    // 提取用戶在骰子後面的說明文字
-                    String description = content.substring(matcher.end()).trim();
-
-                    String response = String.format("%s\n%sd%s： %s\n%d[%d] = %d", 
-                        mention, min, max, description, result, result, result);
-                    
-                    message.reply(response).queue();
-                    log.info("已回應用戶 {} 的骰子請求：{}", nickname, content);
-                }
-            } catch (NumberFormatException e) {
-                log.error("解析骰子參數時出錯", e);
-            }
+        DiceExpression expression;
+        try {
+            expression = DiceExpression.find(content);
+        } catch (BotException e) {
+            // 骰子數量或面數超過上限
+            pipelineMetrics.recordError(e);
+            message.reply("❌ " + e.getMessage()).queue();
+            return;
         }
-    }
-    
-    /**
-     * 生成 min 到 max 之間的隨機數字
-     */
-    private int generateRandomNumber(int min, int max) {
-        if (min == 1 && max == 100) {
-            // 1d100 特殊處理
-            return random.nextInt(100) + 1;
-        } else {
-            return random.nextInt(max - min + 1) + min;
+        if (expression == null) return;
+
+        long startNanos = pipelineMetrics.begin(PipelineMetrics.Pipeline.DICE);
+        try {
+            DiceExpression.DiceRoll roll = expression.roll(ThreadLocalRandom.current());
+
+            User author = event.getAuthor();
+            String nickname = event.getMember() != null ? event.getMember().getEffectiveName() : author.getName();
+
+            // 提取用戶在骰子後面的說明文字
+            String description = content.substring(expression.getEnd()).trim();
+
+            String response = new StringBuilder(64)
+                .append(author.getAsMention()).append('\n')
+                .append(expression.getText()).append("： ").append(description).append('\n')
+                .append(roll.detail()).append(" = ").append(roll.total())
+                .toString();
+
+            long sendStart = System.nanoTime();
+            message.reply(response).queue(
+                sent -> pipelineMetrics.recordStage(PipelineMetrics.Stage.DISCORD_SEND, sendStart),
+                error -> pipelineMetrics.recordError(BotException.discordError("回應骰子結果失敗", error)));
+            log.info("已回應用戶 {} 的骰子請求：{}", nickname, content);
+        } finally {
+            pipelineMetrics.end(PipelineMetrics.Pipeline.DICE, startNanos);
         }
     }
-}
\ No newline at end of file
+}
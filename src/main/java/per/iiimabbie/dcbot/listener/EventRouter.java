@@ -0,0 +1,194 @@
+package per.iiimabbie.dcbot.listener;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Predicate;
+import lombok.extern.slf4j.Slf4j;
+import net.dv8tion.jda.api.entities.Message;
+import net.dv8tion.jda.api.entities.channel.ChannelType;
+import net.dv8tion.jda.api.events.interaction.command.SlashCommandInteractionEvent;
+import net.dv8tion.jda.api.events.interaction.component.ButtonInteractionEvent;
+import net.dv8tion.jda.api.events.message.MessageBulkDeleteEvent;
+import net.dv8tion.jda.api.events.message.MessageDeleteEvent;
+import net.dv8tion.jda.api.events.message.MessageReceivedEvent;
+import net.dv8tion.jda.api.events.message.MessageUpdateEvent;
+import net.dv8tion.jda.api.hooks.ListenerAdapter;
+import org.springframework.stereotype.Component;
+import per.iiimabbie.dcbot.config.BotConfig;
+import per.iiimabbie.dcbot.dice.DiceExpression;
+
+/**
+ * 唯一註冊到 JDA 的監聽器
+ * 每個事件只在 JDA 事件執行緒上分類一次，實際處理交給各處理器自己的執行器，
+ * 慢的處理器不會卡住 gateway；佇列滿時丟棄並計數
+ *
+ * @author iiimabbie
+ */
+@Slf4j
+@Component
+public class EventRouter extends ListenerAdapter {
+
+  private static final String BUSY_MESSAGE = "❌ 機器人忙碌中，請稍後再試";
+
+  // 需要 AI 回覆的訊息：私訊、討論串、@ bot，由便宜到昂貴排列並短路求值
+  private static final Predicate<MessageReceivedEvent> DIRECT_MESSAGE = event -> !event.isFromGuild();
+  private static final Predicate<MessageReceivedEvent> IN_THREAD = event ->
+      event.getChannelType() == ChannelType.GUILD_PUBLIC_THREAD
+          || event.getChannelType() == ChannelType.GUILD_PRIVATE_THREAD;
+  // 任何提及（<@id>、<@&role>、@everyone）都含有 @，沒有時不必解析 mentions
+  private static final Predicate<MessageReceivedEvent> MENTIONS_BOT = event ->
+      event.getMessage().getContentRaw().indexOf('@') >= 0
+          && event.getMessage().getMentions().isMentioned(event.getJDA().getSelfUser());
+  private static final Predicate<MessageReceivedEvent> CHAT = DIRECT_MESSAGE.or(IN_THREAD).or(MENTIONS_BOT);
+  private static final Predicate<MessageReceivedEvent> DICE = event ->
+      DiceExpression.containsDice(event.getMessage().getContentRaw());
+
+  private final MessageListener messageListener;
+  private final DiceRollListener diceRollListener;
+  private final SlashCommandListener slashCommandListener;
+  private final ButtonInteractionListener buttonInteractionListener;
+
+  // 訊息類處理器單執行緒，保持同一頻道的處理順序
+  private final Route chat;
+  private final Route dice;
+  private final Route command;
+  private final Route button;
+
+  public EventRouter(MessageListener messageListener, DiceRollListener diceRollListener,
+      SlashCommandListener slashCommandListener, ButtonInteractionListener buttonInteractionListener,
+      BotConfig botConfig, MeterRegistry meterRegistry) {
+    this.messageListener = messageListener;
+    this.diceRollListener = diceRollListener;
+    this.slashCommandListener = slashCommandListener;
+    this.buttonInteractionListener = buttonInteractionListener;
+
+    BotConfig.Router config = botConfig.getRouter();
+    this.chat = new Route("chat", 1, config.getQueueCapacity(), meterRegistry);
+    this.dice = new Route("dice", 1, config.getQueueCapacity(), meterRegistry);
+    this.command = new Route("command", config.getInteractionThreads(), config.getQueueCapacity(), meterRegistry);
+    this.button = new Route("button", config.getInteractionThreads(), config.getQueueCapacity(), meterRegistry);
+  }
+
+  @Override
+  public void onMessageReceived(MessageReceivedEvent event) {
+    // 快取在事件執行緒上寫入，順序和 Discord 一致，處理器讀到的歷史一定包含這則訊息
+    Message message = event.getMessage();
+    messageListener.record(message);
+
+    // 忽略所有bot（包括自己）
+    if (event.getAuthor().isBot()) {
+      return;
+    }
+    // 同一則訊息可能同時 @ bot 又擲骰，兩邊都要處理
+    if (CHAT.test(event)) {
+      chat.dispatch(() -> messageListener.handle(event));
+    }
+    if (DICE.test(event)) {
+      dice.dispatch(() -> diceRollListener.handle(event));
+    }
+  }
+
+  @Override
+  public void onMessageUpdate(MessageUpdateEvent event) {
+    messageListener.onMessageUpdate(event);
+  }
+
+  @Override
+  public void onMessageDelete(MessageDeleteEvent event) {
+    messageListener.onMessageDelete(event);
+  }
+
+  @Override
+  public void onMessageBulkDelete(MessageBulkDeleteEvent event) {
+    messageListener.onMessageBulkDelete(event);
+  }
+
+  @Override
+  public void onSlashCommandInteraction(SlashCommandInteractionEvent event) {
+    if (!command.dispatch(() -> slashCommandListener.handle(event))) {
+      event.reply(BUSY_MESSAGE).setEphemeral(true).queue();
+    }
+  }
+
+  @Override
+  public void onButtonInteraction(ButtonInteractionEvent event) {
+    if (!button.dispatch(() -> buttonInteractionListener.handle(event))) {
+      event.reply(BUSY_MESSAGE).setEphemeral(true).queue();
+    }
+  }
+
+  @PreDestroy
+  public void shutdown() {
+    chat.executor.shutdownNow();
+    dice.executor.shutdownNow();
+    command.executor.shutdownNow();
+    button.executor.shutdownNow();
+  }
+
+  /**
+   * 單一處理器的執行器與指標
+   */
+  private static final class Route {
+
+    private final String name;
+    private final ThreadPoolExecutor executor;
+    private final Timer dispatchTimer;
+    private final Timer handleTimer;
+    private final Counter droppedCounter;
+
+    Route(String name, int threads, int queueCapacity, MeterRegistry meterRegistry) {
+      this.name = name;
+      this.executor = new ThreadPoolExecutor(threads, threads, 0, TimeUnit.MILLISECONDS,
+          new ArrayBlockingQueue<>(queueCapacity), Thread.ofVirtual().name("router-" + name + "-", 0).factory(),
+          new ThreadPoolExecutor.AbortPolicy());
+      this.dispatchTimer = Timer.builder("dcbot.router.dispatch")
+          .tag("handler", name)
+          .description("事件從 gateway 收到到處理器開始執行的時間")
+          .register(meterRegistry);
+      this.handleTimer = Timer.builder("dcbot.router.handle")
+          .tag("handler", name)
+          .description("處理器在自己的執行器上執行的時間")
+          .register(meterRegistry);
+      this.droppedCounter = Counter.builder("dcbot.router.dropped")
+          .tag("handler", name)
+          .description("因處理器佇列已滿而丟棄的事件")
+          .register(meterRegistry);
+      Gauge.builder("dcbot.router.queue", executor, e -> e.getQueue().size())
+          .tag("handler", name)
+          .description("等待處理器執行的事件數")
+          .register(meterRegistry);
+    }
+
+    /**
+     * 交給處理器執行，佇列已滿時回傳 false
+     */
+    boolean dispatch(Runnable handler) {
+      long received = System.nanoTime();
+      try {
+        executor.execute(() -> {
+          long start = System.nanoTime();
+          dispatchTimer.record(start - received, TimeUnit.NANOSECONDS);
+          try {
+            handler.run();
+          } catch (Exception e) {
+            log.error("事件處理器 {} 發生未預期的錯誤", name, e);
+          } finally {
+            handleTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+          }
+        });
+        return true;
+      } catch (RejectedExecutionException e) {
+        droppedCounter.increment();
+        log.warn("事件處理器 {} 佇列已滿，丟棄事件", name);
+        return false;
+      }
+    }
+  }
+}
@@ -1,68 +1,81 @@
 package per.iiimabbie.dcbot.listener;
 
+import java.util.List;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import net.dv8tion.jda.api.entities.Message;
-import net.dv8tion.jda.api.entities.channel.ChannelType;
+import net.dv8tion.jda.api.entities.channel.middleman.MessageChannel;
 import net.dv8tion.jda.api.entities.emoji.Emoji;
+import net.dv8tion.jda.api.events.message.MessageBulkDeleteEvent;
+import net.dv8tion.jda.api.events.message.MessageDeleteEvent;
 import net.dv8tion.jda.api.events.message.MessageReceivedEvent;
-import net.dv8tion.jda.api.hooks.ListenerAdapter;
+import net.dv8tion.jda.api.events.message.MessageUpdateEvent;
 import org.springframework.stereotype.Component;
+import per.iiimabbie.dcbot.config.BotConfig;
 import per.iiimabbie.dcbot.enums.BotEmojis.Tool;
 import per.iiimabbie.dcbot.exception.BotException;
+import per.iiimabbie.dcbot.logging.LogMarkers;
+import per.iiimabbie.dcbot.metrics.PipelineMetrics;
+import per.iiimabbie.dcbot.metrics.StartupMetrics;
+import per.iiimabbie.dcbot.service.AiTaskExecutor;
+import per.iiimabbie.dcbot.service.ConversationCache;
 import per.iiimabbie.dcbot.service.EmojiManager;
 import per.iiimabbie.dcbot.service.GeminiService;
+import per.iiimabbie.dcbot.service.MessageCoalescer;
+import per.iiimabbie.dcbot.service.StreamingReplyService;
 
 @Slf4j
 @Component
 @RequiredArgsConstructor
-public class MessageListener extends ListenerAdapter {
+public class MessageListener {
 
   private final EmojiManager emojiManager;
   private final GeminiService geminiService;
+  private final ConversationCache conversationCache;
+  private final StreamingReplyService streamingReplyService;
+  private final AiTaskExecutor aiTaskExecutor;
+  private final MessageCoalescer messageCoalescer;
+  private final BotConfig botConfig;
+  private final PipelineMetrics pipelineMetrics;
+  private final StartupMetrics startupMetrics;
 
-  @Override
-  public void onMessageReceived(MessageReceivedEvent event) {
-    // 忽略所有bot（包括自己）
-    if (event.getAuthor().isBot()) {
-      return;
-    }
-    // 檢查是否需要處理這個訊息
-    if (!shouldProcessMessage(event)) {
-      return;
-    }
+  // 合併回覆時每則引用的最大長度
+  private static final int QUOTE_MAX_LENGTH = 60;
 
-    // 處理訊息的完整流程
-    processMessageWithReactions(event);
+  /**
+   * 所有訊息（包括 bot 自己的回覆）都要寫入對話快取
+   * 由 EventRouter 在事件執行緒上依序呼叫，確保快取順序和 Discord 一致
+   */
+  public void record(Message message) {
+    conversationCache.record(message);
   }
 
   /**
-   * 判斷是否需要處理這個訊息
-   * 條件：
-   * 1. 直接 @ bot
-   * 2. 在討論串中且bot有參與過
-   * 3. 私訊
+   * 處理需要 AI 回覆的訊息（@ bot、私訊、討論串，由 EventRouter 判斷）
    */
-  private boolean shouldProcessMessage(MessageReceivedEvent event) {
+  public void handle(MessageReceivedEvent event) {
+    processMessageWithReactions(event);
+  }
 
-    // 私訊直接處理
-    if (!event.isFromGuild()) {
-      return true;
-    }
+  public void onMessageUpdate(MessageUpdateEvent event) {
+    conversationCache.update(event.getMessage());
+  }
 
-    // 檢查是否 @ bot
-    if (event.getMessage().getMentions().isMentioned(event.getJDA().getSelfUser())) {
-      return true;
-    }
+  public void onMessageDelete(MessageDeleteEvent event) {
+    conversationCache.remove(event.getChannel().getIdLong(), event.getMessageIdLong());
+    messageCoalescer.cancel(event.getChannel().getIdLong(), event.getMessageIdLong());
+  }
 
-    // 如果在討論串中，直接處理（bot能收到訊息就代表它在這個討論串裡）
-    return event.getChannel().getType() == ChannelType.GUILD_PUBLIC_THREAD ||
-        event.getChannel().getType() == ChannelType.GUILD_PRIVATE_THREAD;
+  public void onMessageBulkDelete(MessageBulkDeleteEvent event) {
+    conversationCache.removeAll(event.getChannel().getIdLong(), event.getMessageIds());
   }
 
   /**
-   * 完整的訊息處理流程：反應 -> 打字中 -> 處理 -> 回覆 -> 清除反應
+   * 完整的訊息處理流程：反應 -> (合併) -> 打字中 -> 處理 -> 回覆 -> 清除反應
    */
   private void processMessageWithReactions(MessageReceivedEvent event) {
 
@@ -76,8 +89,9 @@ public class MessageListener extends ListenerAdapter {
     String username = event.getAuthor().getName();
     String channelName = event.getChannel().getName();
 
-    log.info("處理訊息 - 用戶: {}, 頻道: {}, 內容: {}",
-        username, channelName, userMessage.getContentDisplay());
+    // 內容要解析 mention，等真的輸出時才計算
+    log.info(LogMarkers.MESSAGE, "處理訊息 - 用戶: {}, 頻道: {}, 內容: {}",
+        username, channelName, LogMarkers.lazy(userMessage::getContentDisplay));
 
     // 步驟1: 先對用戶訊息按個 emoji 表示收到了
     String loadingEmoji = emojiManager.getToolEmoji(Tool.LOADING);
@@ -85,39 +99,164 @@ public class MessageListener extends ListenerAdapter {
       userMessage.addReaction(Emoji.fromFormatted(loadingEmoji)).queue();
     }
 
-    // 步驟2: 顯示打字中狀態
-    event.getChannel().sendTyping().queue();
-
-    // 步驟3: 異步處理 Gemini API
-    CompletableFuture.supplyAsync(() -> {
-      try {
-        return geminiService.processMessage(event.getChannel(), event.getMessage());
-      } catch (BotException e) {
-        // 記錄具體錯誤，但返回用戶友好的訊息
-        log.error("AI 處理失敗 - 錯誤類型: {}, 訊息: {}",
-            e.getErrorType(), e.getMessage(), e);
-        return e.getErrorType().getErrMessage(); // 統一使用 enum 的訊息
-      } catch (Exception e) {
-        // 未預期的錯誤
-        log.error("處理訊息時發生未知錯誤", e);
-        return BotException.ErrorType.UNKNOWN_ERROR.getErrMessage(); // 統一使用 enum
-      }
-    }).thenAccept(response -> {
-      // 步驟4: 發送回覆
-      event.getChannel().sendMessage(response).queue(
-          sentMessage -> {
-            // 步驟5: 回覆成功後清除處理中的反應
-            if (!loadingEmoji.isEmpty()) {
-              userMessage.removeReaction(Emoji.fromFormatted(loadingEmoji)).queue();
+    // 步驟2: 同頻道短時間內的訊息合併成一批
+    if (messageCoalescer.isEnabled()) {
+      messageCoalescer.submit(userMessage, this::processBurst);
+    } else {
+      processBurst(List.of(userMessage));
+    }
+  }
+
+  /**
+   * 處理一批訊息（未啟用合併時只有一則）
+   */
+  private void processBurst(List<Message> burst) {
+    Message lastMessage = burst.getLast();
+    MessageChannel channel = lastMessage.getChannel();
+    String loadingEmoji = emojiManager.getToolEmoji(Tool.LOADING);
+    String quote = buildQuote(burst);
+
+    // 步驟3: 顯示打字中狀態
+    channel.sendTyping().queue();
+
+    // 步驟4: 交給 AI 執行器異步處理 Gemini API
+    long startNanos = pipelineMetrics.begin(PipelineMetrics.Pipeline.CHAT);
+    long scopeId = lastMessage.isFromGuild() ? lastMessage.getGuild().getIdLong() : channel.getIdLong();
+    if (botConfig.getReply().isStreaming()) {
+      streamReply(burst, quote, scopeId, loadingEmoji, startNanos);
+      return;
+    }
+
+    aiTaskExecutor.submit(scopeId, () -> geminiService.processMessagesAsync(channel, burst, null))
+        .whenComplete((response, error) -> {
+          if (isRejected(error)) {
+            pipelineMetrics.end(PipelineMetrics.Pipeline.CHAT, startNanos);
+            busyReaction(burst, loadingEmoji);
+            return;
+          }
+          String reply = quote + (error == null ? response : toUserMessage(error));
+
+          // 步驟5: 發送回覆（加上引用後可能超過單則上限，分成多則）
+          long sendStart = System.nanoTime();
+          sendPages(channel, reply).whenComplete((ignored, sendError) -> {
+            if (sendError == null) {
+              pipelineMetrics.recordStage(PipelineMetrics.Stage.DISCORD_SEND, sendStart);
+              pipelineMetrics.end(PipelineMetrics.Pipeline.CHAT, startNanos);
+              startupMetrics.markReply();
+              // 步驟6: 回覆成功後清除處理中的反應
+              clearLoading(burst, loadingEmoji);
+            } else {
+              log.error("發送回覆失敗", sendError);
+              pipelineMetrics.recordError(BotException.discordError("發送回覆失敗", sendError));
+              pipelineMetrics.end(PipelineMetrics.Pipeline.CHAT, startNanos);
+              // 發送失敗時也要清除反應並顯示錯誤
+              burst.forEach(message -> errorReaction(message, loadingEmoji));
             }
-          },
-          error -> {
-            log.error("發送回覆失敗", error);
-            // 發送失敗時也要清除反應並顯示錯誤
-            errorReaction(userMessage, loadingEmoji);
+          });
+        });
+  }
+
+  /**
+   * 依序送出回覆的每一頁，任何一頁失敗（包括 JDA 直接拋出的驗證錯誤）都以失敗結束
+   */
+  private CompletableFuture<Void> sendPages(MessageChannel channel, String reply) {
+    CompletableFuture<Void> chain = CompletableFuture.completedFuture(null);
+    try {
+      for (String page : StreamingReplyService.split(reply, botConfig.getReply().getMaxLength())) {
+        chain = chain.thenCompose(v -> channel.sendMessage(page).submit().thenAccept(sent -> { }));
+      }
+    } catch (RuntimeException e) {
+      return CompletableFuture.failedFuture(e);
+    }
+    return chain;
+  }
+
+  /**
+   * 串流回覆：先送佔位訊息，隨著 Gemini 串流逐步編輯
+   */
+  private void streamReply(List<Message> burst, String quote, long scopeId, String loadingEmoji,
+      long startNanos) {
+    MessageChannel channel = burst.getLast().getChannel();
+    AtomicBoolean failed = new AtomicBoolean();
+
+    aiTaskExecutor.submit(scopeId, () -> {
+          // 取得執行許可後才送出佔位訊息
+          StreamingReplyService.StreamingReply reply = streamingReplyService.start(channel, startNanos);
+          if (!quote.isEmpty()) {
+            reply.append(quote);
+          }
+          return geminiService.processMessagesAsync(channel, burst, reply::onChunk)
+              .exceptionally(error -> {
+                failed.set(true);
+                return toUserMessage(error);
+              })
+              .thenCompose(response -> reply.complete(quote + response));
+        })
+        .whenComplete((ignored, error) -> {
+          pipelineMetrics.end(PipelineMetrics.Pipeline.CHAT, startNanos);
+          if (isRejected(error)) {
+            busyReaction(burst, loadingEmoji);
+          } else if (error != null) {
+            log.error("發送串流回覆失敗", error);
+            pipelineMetrics.recordError(BotException.discordError("發送串流回覆失敗", error));
+            burst.forEach(message -> errorReaction(message, loadingEmoji));
+          } else if (failed.get()) {
+            // 錯誤訊息已顯示在回覆中
+            burst.forEach(message -> errorReaction(message, loadingEmoji));
+          } else {
+            startupMetrics.markReply();
+            clearLoading(burst, loadingEmoji);
           }
-      );
-    });
+        });
+  }
+
+  /**
+   * 合併多則訊息時，在回覆前引用每一則訊息
+   */
+  private String buildQuote(List<Message> burst) {
+    if (burst.size() < 2) {
+      return "";
+    }
+    StringBuilder quote = new StringBuilder();
+    for (Message message : burst) {
+      String content = message.getContentDisplay().replace('\n', ' ').trim();
+      if (content.length() > QUOTE_MAX_LENGTH) {
+        content = content.substring(0, QUOTE_MAX_LENGTH) + "…";
+      }
+      quote.append("> **").append(message.getAuthor().getName()).append("**: ")
+          .append(content).append('\n');
+    }
+    return quote.append('\n').toString();
+  }
+
+  private void clearLoading(List<Message> burst, String loadingEmoji) {
+    if (!loadingEmoji.isEmpty()) {
+      burst.forEach(message -> message.removeReaction(Emoji.fromFormatted(loadingEmoji)).queue());
+    }
+  }
+
+  private boolean isRejected(Throwable error) {
+    Throwable cause = error instanceof CompletionException && error.getCause() != null
+        ? error.getCause() : error;
+    return cause instanceof RejectedExecutionException;
+  }
+
+  /**
+   * 將處理失敗轉成用戶友好的訊息
+   */
+  private String toUserMessage(Throwable error) {
+    Throwable cause = error instanceof CompletionException && error.getCause() != null
+        ? error.getCause() : error;
+    pipelineMetrics.recordError(cause);
+    if (cause instanceof BotException e) {
+      // 記錄具體錯誤，但返回用戶友好的訊息
+      log.error("AI 處理失敗 - 錯誤類型: {}, 訊息: {}",
+          e.getErrorType(), e.getMessage(), e);
+      return e.getErrorType().getErrMessage(); // 統一使用 enum 的訊息
+    }
+    // 未預期的錯誤
+    log.error("處理訊息時發生未知錯誤", cause);
+    return BotException.ErrorType.UNKNOWN_ERROR.getErrMessage(); // 統一使用 enum
   }
 
   /**
@@ -137,4 +276,16 @@ public class MessageListener extends ListenerAdapter {
       message.addReaction(Emoji.fromUnicode("💀")).queue();
     }
   }
-}
\ No newline at end of file
+
+  /**
+   * 忙碌反應處理
+   * 佇列已滿時移除 loading emoji，添加忙碌 emoji
+   */
+  private void busyReaction(List<Message> burst, String loadingEmoji) {
+    clearLoading(burst, loadingEmoji);
+
+    String busyEmoji = emojiManager.getToolEmoji(Tool.BUSY);
+    Emoji emoji = busyEmoji.isEmpty() ? Emoji.fromUnicode("⏳") : Emoji.fromFormatted(busyEmoji);
+    burst.forEach(message -> message.addReaction(emoji).queue());
+  }
+}
@@ -3,33 +3,35 @@ package per.iiimabbie.dcbot.listener;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import net.dv8tion.jda.api.events.interaction.command.SlashCommandInteractionEvent;
-import net.dv8tion.jda.api.hooks.ListenerAdapter;
 import org.springframework.stereotype.Component;
 import per.iiimabbie.dcbot.command.SlashCommand;
 import per.iiimabbie.dcbot.exception.BotException;
+import per.iiimabbie.dcbot.metrics.PipelineMetrics;
 import per.iiimabbie.dcbot.service.CommandManager;
 
 /**
- * Slash Command 事件監聽器
+ * Slash Command 事件處理器（由 EventRouter 分派）
  */
 @Slf4j
 @Component
 @RequiredArgsConstructor
-public class SlashCommandListener extends ListenerAdapter {
+public class SlashCommandListener {
 
   private final CommandManager commandManager;
+  private final PipelineMetrics pipelineMetrics;
 
-  @Override
-  public void onSlashCommandInteraction(SlashCommandInteractionEvent event) {
+  public void handle(SlashCommandInteractionEvent event) {
     String commandName = event.getName();
 
     log.info("收到 Slash Command: {} - 用戶: {}", commandName, event.getUser().getName());
 
     SlashCommand command = commandManager.getCommand(commandName);
     if (command != null) {
+      long startNanos = pipelineMetrics.begin(PipelineMetrics.Pipeline.COMMAND);
       try {
         command.execute(event);
       } catch (BotException e) {
+        pipelineMetrics.recordError(e);
         log.error("執行指令 {} 失敗 - 錯誤類型: {}, 訊息: {}",
             commandName, e.getErrorType(), e.getMessage(), e);
 
@@ -39,6 +41,7 @@ public class SlashCommandListener extends ListenerAdapter {
               .queue();
         }
       } catch (Exception e) {
+        pipelineMetrics.recordError(e);
         log.error("執行指令 {} 時發生未知錯誤", commandName, e);
 
         if (!event.isAcknowledged()) {
@@ -46,8 +49,11 @@ public class SlashCommandListener extends ListenerAdapter {
               .setEphemeral(true)
               .queue();
         }
+      } finally {
+        pipelineMetrics.end(PipelineMetrics.Pipeline.COMMAND, startNanos);
       }
     } else {
+      pipelineMetrics.recordError(new BotException(BotException.ErrorType.COMMAND_NOT_FOUND, commandName));
       log.warn("未找到指令: {}", commandName);
       event.reply("❌ 未知的指令")
           .setEphemeral(true)
@@ -0,0 +1,350 @@
+package per.iiimabbie.dcbot.loadtest;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+import net.dv8tion.jda.api.JDA;
+import net.dv8tion.jda.api.entities.Guild;
+import net.dv8tion.jda.api.entities.Mentions;
+import net.dv8tion.jda.api.entities.Message;
+import net.dv8tion.jda.api.entities.SelfUser;
+import net.dv8tion.jda.api.entities.User;
+import net.dv8tion.jda.api.entities.channel.ChannelType;
+import net.dv8tion.jda.api.entities.channel.unions.MessageChannelUnion;
+import net.dv8tion.jda.api.entities.emoji.ApplicationEmoji;
+import net.dv8tion.jda.api.entities.emoji.Emoji;
+import net.dv8tion.jda.api.events.message.MessageReceivedEvent;
+import net.dv8tion.jda.api.events.message.MessageUpdateEvent;
+import net.dv8tion.jda.api.requests.RestAction;
+import per.iiimabbie.dcbot.enums.BotEmojis;
+import per.iiimabbie.dcbot.listener.EventRouter;
+
+/**
+ * Discord 的替身
+ * 以動態代理實作訊息處理會用到的 JDA 介面，REST 操作延遲固定時間後在本機完成；
+ * 送出的回覆會像 gateway 一樣再送回 EventRouter，並記錄每則用戶訊息何時處理完
+ *
+ * @author iiimabbie
+ */
+class FakeDiscord {
+
+  private static final long SELF_ID = 1_000_000_000_000_000_000L;
+
+  private final EventRouter eventRouter;
+  private final long latencyMillis;
+  private final ScheduledExecutorService scheduler = Executors.newScheduledThreadPool(2,
+      Thread.ofPlatform().name("fake-discord-", 0).daemon().factory());
+
+  // snowflake 只需要遞增，ConversationCache 以此排序
+  private final AtomicLong ids = new AtomicLong(SELF_ID + 1_000_000);
+  private final Map<Long, Tracked> tracked = new ConcurrentHashMap<>();
+  private final AtomicLong sentMessages = new AtomicLong();
+  private final AtomicLong editedMessages = new AtomicLong();
+
+  private final SelfUser self;
+  private final JDA jda;
+  private final List<User> users = new ArrayList<>();
+
+  FakeDiscord(EventRouter eventRouter, Duration latency, int userCount) {
+    this.eventRouter = eventRouter;
+    this.latencyMillis = latency.toMillis();
+    this.self = stub(SelfUser.class, (method, args) -> switch (method.getName()) {
+      case "getIdLong" -> SELF_ID;
+      case "getName", "getGlobalName", "getEffectiveName" -> "loadtest-bot";
+      case "isBot" -> true;
+      case "isSystem" -> false;
+      default -> unsupported(method);
+    });
+    this.jda = stub(JDA.class, (method, args) -> switch (method.getName()) {
+      case "getSelfUser" -> self;
+      case "getGatewayPing" -> 0L;
+      case "getStatus" -> JDA.Status.CONNECTED;
+      default -> unsupported(method);
+    });
+    for (int i = 0; i < userCount; i++) {
+      users.add(user(SELF_ID + 1 + i, "user" + i));
+    }
+  }
+
+  JDA getJda() {
+    return jda;
+  }
+
+  /**
+   * 建立 loading / error / busy 的 Application Emoji，讓反應流程和正式環境一樣
+   */
+  List<ApplicationEmoji> toolEmojis() {
+    List<ApplicationEmoji> emojis = new ArrayList<>();
+    for (BotEmojis.Tool tool : BotEmojis.Tool.values()) {
+      long id = ids.incrementAndGet();
+      String name = tool.getName();
+      emojis.add(stub(ApplicationEmoji.class, (method, args) -> switch (method.getName()) {
+        case "getName" -> name;
+        case "getIdLong" -> id;
+        case "isAnimated" -> false;
+        case "getFormatted" -> "<:" + name + ":" + id + ">";
+        default -> unsupported(method);
+      }));
+    }
+    return emojis;
+  }
+
+  Guild guild(long id) {
+    return stub(Guild.class, (method, args) -> switch (method.getName()) {
+      case "getIdLong" -> id;
+      case "getName" -> "guild-" + id;
+      default -> unsupported(method);
+    });
+  }
+
+  MessageChannelUnion channel(long id, Guild guild) {
+    String name = "channel-" + id;
+    MessageChannelUnion[] holder = new MessageChannelUnion[1];
+    holder[0] = stub(MessageChannelUnion.class, (method, args) -> switch (method.getName()) {
+      case "getIdLong" -> id;
+      case "getName" -> name;
+      case "getType" -> ChannelType.TEXT;
+      case "getGuild" -> guild;
+      case "getJDA" -> jda;
+      case "sendTyping" -> action(method.getReturnType(), () -> null);
+      case "sendMessage" -> action(method.getReturnType(), () -> {
+        sentMessages.incrementAndGet();
+        Message reply = message(ids.incrementAndGet(), self, args[0].toString(), holder[0], guild);
+        eventRouter.onMessageReceived(new MessageReceivedEvent(jda, 0, reply));
+        return reply;
+      });
+      default -> unsupported(method);
+    });
+    return holder[0];
+  }
+
+  /**
+   * 建立一則用戶訊息（@bot）並開始追蹤
+   */
+  MessageReceivedEvent receive(MessageChannelUnion channel, Guild guild, int userIndex, String content) {
+    long id = ids.incrementAndGet();
+    User author = users.get(userIndex % users.size());
+    tracked.put(id, new Tracked(System.nanoTime()));
+    Message message = message(id, author, "<@" + SELF_ID + "> " + content, channel, guild);
+    return new MessageReceivedEvent(jda, 0, message);
+  }
+
+  private Message message(long id, User author, String initialContent, MessageChannelUnion channel,
+      Guild guild) {
+    String[] content = {initialContent};
+    Mentions mentions = stub(Mentions.class, (method, args) -> switch (method.getName()) {
+      case "isMentioned" -> true;
+      default -> unsupported(method);
+    });
+    Message[] holder = new Message[1];
+    holder[0] = stub(Message.class, (method, args) -> switch (method.getName()) {
+      case "getIdLong" -> id;
+      case "getAuthor" -> author;
+      case "getContentRaw", "getContentDisplay", "getContentStripped" -> content[0];
+      case "getMentions" -> mentions;
+      case "getChannel" -> channel;
+      case "getChannelIdLong" -> channel.getIdLong();
+      case "getChannelType" -> ChannelType.TEXT;
+      case "isFromGuild" -> true;
+      case "getGuild" -> guild;
+      case "getGuildIdLong" -> guild.getIdLong();
+      case "getJDA" -> jda;
+      case "isWebhookMessage", "isEdited", "isPinned", "isTTS" -> false;
+      case "addReaction" -> action(method.getReturnType(), () -> {
+        onReaction(id, (Emoji) args[0], true);
+        return null;
+      });
+      case "removeReaction" -> action(method.getReturnType(), () -> {
+        onReaction(id, (Emoji) args[0], false);
+        return null;
+      });
+      case "editMessage" -> action(method.getReturnType(), () -> {
+        editedMessages.incrementAndGet();
+        content[0] = args[0].toString();
+        eventRouter.onMessageUpdate(new MessageUpdateEvent(jda, 0, holder[0]));
+        return holder[0];
+      });
+      default -> unsupported(method);
+    });
+    return holder[0];
+  }
+
+  /**
+   * 移除 loading 代表處理完成；之後補上的 error / busy 反應決定結果
+   */
+  private void onReaction(long messageId, Emoji emoji, boolean added) {
+    Tracked state = tracked.get(messageId);
+    if (state == null) {
+      return;
+    }
+    String name = emoji.getName();
+    if (!added && BotEmojis.Tool.LOADING.getName().equals(name)) {
+      state.finish(System.nanoTime());
+    } else if (added && (BotEmojis.Tool.BUSY.getName().equals(name) || "⏳".equals(name))) {
+      state.outcome = Outcome.BUSY;
+    } else if (added && (BotEmojis.Tool.ERROR.getName().equals(name) || "💀".equals(name))) {
+      state.outcome = Outcome.ERROR;
+    }
+  }
+
+  Map<Long, Tracked> getTracked() {
+    return tracked;
+  }
+
+  long outstanding() {
+    return tracked.values().stream().filter(state -> state.finishedAt == 0).count();
+  }
+
+  long getSentMessages() {
+    return sentMessages.get();
+  }
+
+  long getEditedMessages() {
+    return editedMessages.get();
+  }
+
+  void shutdown() {
+    scheduler.shutdownNow();
+  }
+
+  /**
+   * 以固定延遲在本機完成的 RestAction；queue / submit / complete 以外的方法都回傳自己（鏈式設定）
+   */
+  @SuppressWarnings("unchecked")
+  private Object action(Class<?> type, Supplier<Object> result) {
+    if (!RestAction.class.isAssignableFrom(type)) {
+      throw new UnsupportedOperationException("不是 RestAction: " + type.getName());
+    }
+    return stub(type, (method, args) -> switch (method.getName()) {
+      case "queue" -> {
+        Consumer<Object> success = args != null && args.length > 0 ? (Consumer<Object>) args[0] : null;
+        Consumer<Throwable> failure = args != null && args.length > 1 ? (Consumer<Throwable>) args[1] : null;
+        scheduler.schedule(() -> {
+          try {
+            Object value = result.get();
+            if (success != null) {
+              success.accept(value);
+            }
+          } catch (Throwable e) {
+            if (failure != null) {
+              failure.accept(e);
+            }
+          }
+        }, latencyMillis, TimeUnit.MILLISECONDS);
+        yield null;
+      }
+      case "submit" -> {
+        CompletableFuture<Object> future = new CompletableFuture<>();
+        scheduler.schedule(() -> {
+          try {
+            future.complete(result.get());
+          } catch (Throwable e) {
+            future.completeExceptionally(e);
+          }
+        }, latencyMillis, TimeUnit.MILLISECONDS);
+        yield future;
+      }
+      case "complete" -> {
+        Thread.sleep(latencyMillis);
+        yield result.get();
+      }
+      case "getJDA" -> jda;
+      default -> method.getReturnType().isAssignableFrom(type) ? null : unsupported(method);
+    });
+  }
+
+  private User user(long id, String name) {
+    return stub(User.class, (method, args) -> switch (method.getName()) {
+      case "getIdLong" -> id;
+      case "getName", "getGlobalName", "getEffectiveName" -> name;
+      case "isBot", "isSystem" -> false;
+      default -> unsupported(method);
+    });
+  }
+
+  private static Object unsupported(Method method) {
+    throw new UnsupportedOperationException("負載測試替身未實作: "
+        + method.getDeclaringClass().getSimpleName() + "." + method.getName());
+  }
+
+  @FunctionalInterface
+  private interface Handler {
+
+    Object invoke(Method method, Object[] args) throws Throwable;
+  }
+
+  /**
+   * 建立介面代理：Object 方法以 identity 處理；handler 未處理的 default 方法交給介面本身的實作
+   */
+  @SuppressWarnings("unchecked")
+  private static <T> T stub(Class<T> type, Handler handler) {
+    InvocationHandler invocationHandler = (proxy, method, args) -> {
+      switch (method.getName()) {
+        case "hashCode" -> {
+          if (method.getParameterCount() == 0) {
+            return System.identityHashCode(proxy);
+          }
+        }
+        case "equals" -> {
+          if (method.getParameterCount() == 1) {
+            return proxy == args[0];
+          }
+        }
+        case "toString" -> {
+          if (method.getParameterCount() == 0) {
+            return type.getSimpleName() + "@loadtest";
+          }
+        }
+        default -> {
+        }
+      }
+      try {
+        Object value = handler.invoke(method, args);
+        // 鏈式方法（setXxx、addCheck...）回傳自己
+        return value == null && method.getReturnType().isInstance(proxy) ? proxy : value;
+      } catch (UnsupportedOperationException e) {
+        if (method.isDefault()) {
+          return InvocationHandler.invokeDefault(proxy, method, args);
+        }
+        throw e;
+      }
+    };
+    return (T) Proxy.newProxyInstance(type.getClassLoader(), new Class<?>[]{type}, invocationHandler);
+  }
+
+  enum Outcome {
+    OK, ERROR, BUSY
+  }
+
+  /**
+   * 單則用戶訊息的處理狀態
+   */
+  static final class Tracked {
+
+    final long sentAt;
+    volatile long finishedAt;
+    volatile Outcome outcome = Outcome.OK;
+
+    Tracked(long sentAt) {
+      this.sentAt = sentAt;
+    }
+
+    void finish(long now) {
+      if (finishedAt == 0) {
+        finishedAt = now;
+      }
+    }
+  }
+}
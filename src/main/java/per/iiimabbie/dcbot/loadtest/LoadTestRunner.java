@@ -0,0 +1,283 @@
+package per.iiimabbie.dcbot.loadtest;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import java.io.IOException;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.lang.management.ThreadMXBean;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import net.dv8tion.jda.api.entities.Guild;
+import net.dv8tion.jda.api.entities.channel.unions.MessageChannelUnion;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.boot.SpringApplication;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.context.annotation.Profile;
+import org.springframework.stereotype.Component;
+import per.iiimabbie.dcbot.client.GeminiDispatcher;
+import per.iiimabbie.dcbot.client.GeminiEndpoint;
+import per.iiimabbie.dcbot.config.LoadTestConfig;
+import per.iiimabbie.dcbot.listener.EventRouter;
+import per.iiimabbie.dcbot.metrics.StartupMetrics;
+import per.iiimabbie.dcbot.service.AiTaskExecutor;
+import per.iiimabbie.dcbot.service.ConversationCache;
+import per.iiimabbie.dcbot.service.EmojiManager;
+
+/**
+ * 離線負載測試
+ * 以固定速率（open-loop，不等前一則處理完）把合成的訊息事件送進 EventRouter，
+ * Gemini 和 Discord 都是本機替身；結束後輸出吞吐量、延遲分佈、執行緒與記憶體、佇列堆積
+ * <p>
+ * 執行：mvn spring-boot:run -Dspring-boot.run.profiles=loadtest -Dspring-boot.run.arguments=--loadtest.rate=20
+ *
+ * @author iiimabbie
+ */
+@Slf4j
+@Component
+@Profile("loadtest")
+@RequiredArgsConstructor
+public class LoadTestRunner implements ApplicationRunner {
+
+  private static final Duration SAMPLE_INTERVAL = Duration.ofMillis(250);
+  private static final String[] PROMPTS = {
+      "今天晚餐吃什麼好", "幫我想一個團名", "解釋一下什麼是 virtual thread", "講個笑話",
+      "這週末要不要開團", "推薦一部電影", "翻譯：good morning", "幫我擲骰子決定要不要睡覺"
+  };
+
+  private final LoadTestConfig config;
+  private final EventRouter eventRouter;
+  private final EmojiManager emojiManager;
+  private final ConversationCache conversationCache;
+  private final AiTaskExecutor aiTaskExecutor;
+  private final GeminiDispatcher geminiDispatcher;
+  private final MockGeminiServer mockGemini;
+  private final MeterRegistry meterRegistry;
+  private final StartupMetrics startupMetrics;
+  private final ConfigurableApplicationContext context;
+
+  @Override
+  public void run(ApplicationArguments args) throws Exception {
+    FakeDiscord discord = new FakeDiscord(eventRouter, config.getDiscord().getLatency(),
+        Math.max(1, config.getChannels() * 4));
+    emojiManager.replaceCache(discord.toolEmojis());
+
+    // 建立頻道並預先放入空的歷史快取，避免走 REST 回補
+    List<Guild> guilds = new ArrayList<>();
+    for (int i = 0; i < Math.max(1, config.getGuilds()); i++) {
+      guilds.add(discord.guild(10_000 + i));
+    }
+    List<MessageChannelUnion> channels = new ArrayList<>();
+    for (int i = 0; i < Math.max(1, config.getChannels()); i++) {
+      MessageChannelUnion channel = discord.channel(20_000 + i, guilds.get(i % guilds.size()));
+      conversationCache.prime(channel.getIdLong());
+      channels.add(channel);
+    }
+
+    long total = (long) (config.getRate() * config.getDuration().toMillis() / 1000);
+    long intervalNanos = (long) (1_000_000_000L / config.getRate());
+    log.info("負載測試開始: {} 則/秒，共 {} 則，{} 個伺服器 / {} 個頻道",
+        config.getRate(), total, guilds.size(), channels.size());
+
+    Samples samples = new Samples();
+    GcTotals gcBefore = GcTotals.now();
+    ScheduledExecutorService sampler = Executors.newSingleThreadScheduledExecutor(
+        Thread.ofPlatform().name("loadtest-sampler").daemon().factory());
+    sampler.scheduleAtFixedRate(() -> samples.take(discord), 0, SAMPLE_INTERVAL.toMillis(),
+        TimeUnit.MILLISECONDS);
+
+    // 和 JDA 一樣由單一事件執行緒依序呼叫 listener
+    long[] dispatchLag = new long[(int) total];
+    long start = System.nanoTime();
+    Thread gateway = Thread.ofPlatform().name("loadtest-gateway").start(() -> {
+      for (int i = 0; i < total; i++) {
+        long scheduled = start + i * intervalNanos;
+        long wait;
+        while ((wait = scheduled - System.nanoTime()) > 0) {
+          LockSupport.parkNanos(wait);
+        }
+        dispatchLag[i] = System.nanoTime() - scheduled;
+        int channel = ThreadLocalRandom.current().nextInt(channels.size());
+        MessageChannelUnion target = channels.get(channel);
+        try {
+          eventRouter.onMessageReceived(discord.receive(target, guilds.get(channel % guilds.size()),
+              ThreadLocalRandom.current().nextInt(Integer.MAX_VALUE),
+              PROMPTS[ThreadLocalRandom.current().nextInt(PROMPTS.length)]));
+        } catch (Exception e) {
+          log.error("送出事件失敗", e);
+        }
+      }
+    });
+    gateway.join();
+    long sendEnd = System.nanoTime();
+
+    // 等待處理完畢
+    long deadline = sendEnd + config.getDrainTimeout().toNanos();
+    while (discord.outstanding() > 0 && System.nanoTime() < deadline) {
+      Thread.sleep(100);
+    }
+    long end = System.nanoTime();
+    sampler.shutdownNow();
+    samples.take(discord);
+
+    String report = report(discord, samples, dispatchLag, start, sendEnd, end, gcBefore);
+    log.info("負載測試結果\n{}", report);
+    if (config.getReportFile() != null && !config.getReportFile().isBlank()) {
+      writeReport(Path.of(config.getReportFile()), report);
+    }
+    discord.shutdown();
+
+    int exitCode = SpringApplication.exit(context);
+    System.exit(exitCode);
+  }
+
+  private String report(FakeDiscord discord, Samples samples, long[] dispatchLag, long start,
+      long sendEnd, long end, GcTotals gcBefore) {
+    List<FakeDiscord.Tracked> all = new ArrayList<>(discord.getTracked().values());
+    long[] latencies = all.stream()
+        .filter(state -> state.finishedAt != 0)
+        .mapToLong(state -> state.finishedAt - state.sentAt)
+        .sorted()
+        .toArray();
+    long ok = all.stream().filter(s -> s.finishedAt != 0 && s.outcome == FakeDiscord.Outcome.OK).count();
+    long errors = all.stream().filter(s -> s.outcome == FakeDiscord.Outcome.ERROR).count();
+    long busy = all.stream().filter(s -> s.outcome == FakeDiscord.Outcome.BUSY).count();
+    long lastFinish = all.stream().mapToLong(s -> s.finishedAt).max().orElse(start);
+    double sendSeconds = (sendEnd - start) / 1e9;
+    double runSeconds = Math.max(1, lastFinish - start) / 1e9;
+    Arrays.sort(dispatchLag);
+    GcTotals gcAfter = GcTotals.now();
+
+    StringBuilder out = new StringBuilder();
+    out.append(String.format("設定: %.1f 則/秒 x %s，Gemini 延遲 p50 %d ms / p99 %d ms，錯誤率 %.1f%%，Discord 延遲 %d ms%n",
+        config.getRate(), config.getDuration(), config.getGemini().getLatencyMedian().toMillis(),
+        config.getGemini().getLatencyP99().toMillis(), config.getGemini().getErrorRate() * 100,
+        config.getDiscord().getLatency().toMillis()));
+    out.append(String.format("送出: %d 則（實際 %.1f 則/秒），事件派送延遲 p99 %s，最大 %s%n",
+        all.size(), all.size() / sendSeconds, millis(percentile(dispatchLag, 0.99)),
+        millis(dispatchLag.length == 0 ? 0 : dispatchLag[dispatchLag.length - 1])));
+    out.append(String.format("完成: %d 則（%.1f 則/秒），正常 %d，錯誤 %d，忙碌拒絕 %d，未完成 %d，總耗時 %.1f 秒%n",
+        latencies.length, latencies.length / runSeconds, ok, errors, busy, all.size() - latencies.length,
+        (end - start) / 1e9));
+    out.append(String.format("端到端延遲: p50 %s / p90 %s / p95 %s / p99 %s / 最大 %s%n",
+        millis(percentile(latencies, 0.5)), millis(percentile(latencies, 0.9)),
+        millis(percentile(latencies, 0.95)), millis(percentile(latencies, 0.99)),
+        millis(latencies.length == 0 ? 0 : latencies[latencies.length - 1])));
+    out.append(String.format("Gemini 替身: %d 次請求，503 %d 次，429 %d 次，同時處理最多 %d，請求內容共 %,d bytes%n",
+        mockGemini.getRequests(), mockGemini.getErrors(), mockGemini.getRateLimited(),
+        mockGemini.getMaxInFlight(), mockGemini.getRequestBytes()));
+    out.append(String.format("Discord 替身: 送出 %d 則，編輯 %d 次%n",
+        discord.getSentMessages(), discord.getEditedMessages()));
+    out.append(String.format("佇列: AI 等待最多 %d，AI 處理中最多 %d，Gemini 進行中最多 %d，未完成訊息最多 %d%n",
+        samples.maxAiQueue, samples.maxAiActive, samples.maxDispatcherInFlight, samples.maxOutstanding));
+    out.append(String.format("JVM: heap 最多 %d MB，平台執行緒最多 %d，GC %d 次共 %d ms%n",
+        samples.maxHeapBytes / (1024 * 1024), samples.maxThreads,
+        gcAfter.count - gcBefore.count, gcAfter.millis - gcBefore.millis));
+    out.append(String.format("啟動: JVM 啟動後 %d ms 送出第一則回覆%n", startupMetrics.getFirstReplyMillis()));
+
+    Timer queueWait = meterRegistry.find("dcbot.ai.queue.wait").timer();
+    if (queueWait != null && queueWait.count() > 0) {
+      out.append(String.format("AI 佇列等待: 平均 %.1f ms，最大 %.1f ms%n",
+          queueWait.mean(TimeUnit.MILLISECONDS), queueWait.max(TimeUnit.MILLISECONDS)));
+    }
+    for (Timer timer : meterRegistry.find("dcbot.router.dispatch").timers()) {
+      if (timer.count() > 0) {
+        out.append(String.format("路由 %s 分派等待: 平均 %.2f ms，最大 %.2f ms（%d 次）%n", timer.getId().getTag("handler"),
+            timer.mean(TimeUnit.MILLISECONDS), timer.max(TimeUnit.MILLISECONDS), timer.count()));
+      }
+    }
+    out.append("各階段（平均 / 最大）:\n");
+    for (Timer timer : meterRegistry.find("dcbot.pipeline.stage").timers()) {
+      if (timer.count() > 0) {
+        out.append(String.format("  %-14s %8.2f ms / %8.2f ms（%d 次）%n", timer.getId().getTag("stage"),
+            timer.mean(TimeUnit.MILLISECONDS), timer.max(TimeUnit.MILLISECONDS), timer.count()));
+      }
+    }
+    for (Counter counter : meterRegistry.find("dcbot.errors").counters()) {
+      if (counter.count() > 0) {
+        out.append(String.format("錯誤 %s: %.0f 次%n", counter.getId().getTag("type"), counter.count()));
+      }
+    }
+    return out.toString();
+  }
+
+  private void writeReport(Path path, String report) {
+    try {
+      if (path.getParent() != null) {
+        Files.createDirectories(path.getParent());
+      }
+      Files.writeString(path, report, StandardCharsets.UTF_8);
+      log.info("報告已寫入 {}", path.toAbsolutePath());
+    } catch (IOException e) {
+      log.warn("無法寫入報告 {}: {}", path, e.getMessage());
+    }
+  }
+
+  private static long percentile(long[] sorted, double p) {
+    if (sorted.length == 0) {
+      return 0;
+    }
+    int index = (int) Math.ceil(p * sorted.length) - 1;
+    return sorted[Math.max(0, Math.min(sorted.length - 1, index))];
+  }
+
+  private static String millis(long nanos) {
+    return nanos < 1_000_000_000L ? String.format("%.1f ms", nanos / 1e6) : String.format("%.2f s", nanos / 1e9);
+  }
+
+  /**
+   * 定期取樣的最大值（只由取樣執行緒寫入）
+   */
+  private class Samples {
+
+    private final MemoryMXBean memory = ManagementFactory.getMemoryMXBean();
+    private final ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+    private volatile long maxHeapBytes;
+    private volatile int maxThreads;
+    private volatile int maxAiQueue;
+    private volatile int maxAiActive;
+    private volatile int maxDispatcherInFlight;
+    private volatile long maxOutstanding;
+
+    void take(FakeDiscord discord) {
+      maxHeapBytes = Math.max(maxHeapBytes, memory.getHeapMemoryUsage().getUsed());
+      maxThreads = Math.max(maxThreads, threads.getThreadCount());
+      maxAiQueue = Math.max(maxAiQueue, aiTaskExecutor.getQueueDepth());
+      maxAiActive = Math.max(maxAiActive, aiTaskExecutor.getActiveCount());
+      int inFlight = 0;
+      for (GeminiEndpoint.Snapshot endpoint : geminiDispatcher.snapshot()) {
+        inFlight += endpoint.inFlight();
+      }
+      maxDispatcherInFlight = Math.max(maxDispatcherInFlight, inFlight);
+      maxOutstanding = Math.max(maxOutstanding, discord.outstanding());
+    }
+  }
+
+  private record GcTotals(long count, long millis) {
+
+    static GcTotals now() {
+      long count = 0;
+      long millis = 0;
+      for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) {
+        count += Math.max(0, gc.getCollectionCount());
+        millis += Math.max(0, gc.getCollectionTime());
+      }
+      return new GcTotals(count, millis);
+    }
+  }
+}
@@ -0,0 +1,188 @@
+package per.iiimabbie.dcbot.loadtest;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.annotation.Profile;
+import org.springframework.stereotype.Component;
+import per.iiimabbie.dcbot.config.LoadTestConfig;
+
+/**
+ * 本機的 Gemini API 替身
+ * 只監聽 127.0.0.1，依設定的延遲分佈、錯誤率回應 generateContent 和 streamGenerateContent（SSE）
+ *
+ * @author iiimabbie
+ */
+@Slf4j
+@Component
+@Profile("loadtest")
+public class MockGeminiServer {
+
+  // 常態分佈的 99 百分位
+  private static final double Z_99 = 2.3263;
+  private static final String FILLER = "好的，我來幫你整理一下重點。這個問題可以分成幾個部分來看，首先是規則，再來是實際的例子。";
+
+  private final LoadTestConfig.MockGemini config;
+  private final ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+  private final String text;
+  private final double mu;
+  private final double sigma;
+  private HttpServer server;
+
+  private final AtomicInteger inFlight = new AtomicInteger();
+  private final AtomicInteger maxInFlight = new AtomicInteger();
+  private final AtomicLong requests = new AtomicLong();
+  private final AtomicLong errors = new AtomicLong();
+  private final AtomicLong rateLimited = new AtomicLong();
+  private final AtomicLong requestBytes = new AtomicLong();
+
+  public MockGeminiServer(LoadTestConfig loadTestConfig) {
+    this.config = loadTestConfig.getGemini();
+    StringBuilder builder = new StringBuilder();
+    while (builder.length() < config.getResponseLength()) {
+      builder.append(FILLER);
+    }
+    this.text = builder.substring(0, config.getResponseLength());
+    this.mu = Math.log(config.getLatencyMedian().toNanos());
+    this.sigma = Math.max(0, Math.log((double) config.getLatencyP99().toNanos()
+        / config.getLatencyMedian().toNanos()) / Z_99);
+  }
+
+  @PostConstruct
+  public void start() throws IOException {
+    server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), config.getPort()), 1024);
+    server.setExecutor(executor);
+    server.createContext("/", this::handle);
+    server.start();
+    log.info("Gemini 模擬伺服器已啟動: http://127.0.0.1:{}", config.getPort());
+  }
+
+  private void handle(HttpExchange exchange) throws IOException {
+    int current = inFlight.incrementAndGet();
+    maxInFlight.accumulateAndGet(current, Math::max);
+    requests.incrementAndGet();
+    try (exchange) {
+      try (InputStream body = exchange.getRequestBody()) {
+        requestBytes.addAndGet(body.readAllBytes().length);
+      }
+      String path = exchange.getRequestURI().getPath();
+      if (!path.endsWith(":generateContent") && !path.endsWith(":streamGenerateContent")) {
+        send(exchange, 404, "{\"error\":{\"code\":404,\"message\":\"not found\",\"status\":\"NOT_FOUND\"}}");
+        return;
+      }
+
+      long latency = sampleLatency();
+      double roll = ThreadLocalRandom.current().nextDouble();
+      if (roll < config.getErrorRate()) {
+        errors.incrementAndGet();
+        Thread.sleep(latency / 2_000_000);
+        send(exchange, 503, "{\"error\":{\"code\":503,\"message\":\"The model is overloaded.\",\"status\":\"UNAVAILABLE\"}}");
+      } else if (roll < config.getErrorRate() + config.getRateLimitRate()) {
+        rateLimited.incrementAndGet();
+        send(exchange, 429, "{\"error\":{\"code\":429,\"message\":\"Resource exhausted.\",\"status\":\"RESOURCE_EXHAUSTED\","
+            + "\"details\":[{\"@type\":\"type.googleapis.com/google.rpc.RetryInfo\",\"retryDelay\":\"1s\"}]}}");
+      } else if (path.endsWith(":streamGenerateContent")) {
+        stream(exchange, latency);
+      } else {
+        Thread.sleep(latency / 1_000_000);
+        send(exchange, 200, response(text, true));
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    } finally {
+      inFlight.decrementAndGet();
+    }
+  }
+
+  /**
+   * 第一段在延遲的一半後送出，其餘平均分佈在剩下的時間
+   */
+  private void stream(HttpExchange exchange, long latencyNanos) throws IOException, InterruptedException {
+    exchange.getResponseHeaders().set("Content-Type", "text/event-stream");
+    exchange.sendResponseHeaders(200, 0);
+    int chunks = Math.max(1, config.getStreamChunks());
+    int size = (text.length() + chunks - 1) / chunks;
+    long firstDelay = latencyNanos / 2;
+    long interval = (latencyNanos - firstDelay) / chunks;
+    OutputStream out = exchange.getResponseBody();
+    Thread.sleep(firstDelay / 1_000_000);
+    for (int i = 0; i < chunks; i++) {
+      String part = text.substring(Math.min(text.length(), i * size), Math.min(text.length(), (i + 1) * size));
+      out.write(("data: " + response(part, i == chunks - 1) + "\r\n\r\n").getBytes(StandardCharsets.UTF_8));
+      out.flush();
+      if (i < chunks - 1) {
+        Thread.sleep(interval / 1_000_000);
+      }
+    }
+  }
+
+  private String response(String content, boolean last) {
+    StringBuilder json = new StringBuilder("{\"candidates\":[{\"content\":{\"parts\":[{\"text\":\"")
+        .append(content).append("\"}],\"role\":\"model\"}");
+    if (last) {
+      json.append(",\"finishReason\":\"STOP\"");
+    }
+    json.append(",\"index\":0}]");
+    if (last) {
+      json.append(",\"usageMetadata\":{\"promptTokenCount\":1200,\"candidatesTokenCount\":")
+          .append(text.length()).append(",\"totalTokenCount\":").append(1200 + text.length()).append('}');
+    }
+    return json.append(",\"modelVersion\":\"mock\"}").toString();
+  }
+
+  private void send(HttpExchange exchange, int status, String body) throws IOException {
+    byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+    exchange.getResponseHeaders().set("Content-Type", "application/json; charset=UTF-8");
+    exchange.sendResponseHeaders(status, bytes.length);
+    exchange.getResponseBody().write(bytes);
+  }
+
+  private long sampleLatency() {
+    return (long) Math.exp(mu + sigma * ThreadLocalRandom.current().nextGaussian());
+  }
+
+  public int getInFlight() {
+    return inFlight.get();
+  }
+
+  public int getMaxInFlight() {
+    return maxInFlight.get();
+  }
+
+  public long getRequests() {
+    return requests.get();
+  }
+
+  public long getErrors() {
+    return errors.get();
+  }
+
+  public long getRateLimited() {
+    return rateLimited.get();
+  }
+
+  public long getRequestBytes() {
+    return requestBytes.get();
+  }
+
+  @PreDestroy
+  public void stop() {
+    if (server != null) {
+      server.stop(0);
+    }
+    executor.shutdownNow();
+  }
+}
@@ -1,107 +1,337 @@
 package per.iiimabbie.dcbot.logging;
 
+import ch.qos.logback.classic.Level;
 import ch.qos.logback.classic.spi.ILoggingEvent;
 import ch.qos.logback.core.AppenderBase;
+import ch.qos.logback.core.util.Duration;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Instant;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
 import java.util.concurrent.BlockingQueue;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
-import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 import lombok.Setter;
-import org.springframework.http.HttpEntity;
-import org.springframework.http.HttpHeaders;
-import org.springframework.http.MediaType;
-import org.springframework.web.client.RestTemplate;
 
+/**
+ * 把 ERROR 日誌送到 Discord webhook
+ * 事件先進有界佇列（滿了就丟棄並計數），由背景執行緒每次最多打包 10 個 embed，
+ * 湊滿或等待超過 flushInterval 時送出；遵守 Discord 的 rate limit 標頭，stop() 時送完剩下的事件
+ * 相同的錯誤（見 {@link ErrorAggregator}）只送第一次，之後每 summaryInterval 彙整成一筆「×N」
+ */
 @Setter
 public class DiscordAppender extends AppenderBase<ILoggingEvent> {
 
+  // Discord 單則訊息最多 10 個 embed，全部 embed 的文字合計最多 6000 字
+  private static final int MAX_EMBEDS = 10;
+  private static final int MAX_DESCRIPTION = 500;
+  private static final int MAX_RATE_LIMIT_RETRIES = 3;
+  private static final long MAX_RATE_LIMIT_WAIT_MILLIS = 60_000;
+
   private String webhookUrl;
   private String level = "ERROR"; // 只記錄 ERROR 以上
-  private RestTemplate restTemplate = new RestTemplate();
-  private BlockingQueue<ILoggingEvent> eventQueue = new LinkedBlockingQueue<>();
-  private ExecutorService executor = Executors.newSingleThreadExecutor();
+  // 等待送出的事件上限
+  private int queueSize = 1000;
+  // 每次送出的 embed 數（1 ~ 10）
+  private int batchSize = MAX_EMBEDS;
+  // 第一個事件進佇列後最多等多久就送出
+  private Duration flushInterval = Duration.buildBySeconds(2);
+  // stop() 時最多花多久送完剩下的事件
+  private Duration drainTimeout = Duration.buildBySeconds(5);
+  // 是否聚合重複的錯誤
+  private boolean aggregate = true;
+  // 重複錯誤的彙整間隔
+  private Duration summaryInterval = Duration.buildBySeconds(60);
+  // 指紋表大小
+  private int fingerprintCapacity = 256;
+
+  private final ObjectMapper objectMapper = new ObjectMapper();
+  private final AtomicLong dropped = new AtomicLong();
+  private BlockingQueue<ILoggingEvent> eventQueue;
+  private ErrorAggregator aggregator;
+  private HttpClient httpClient;
+  private Thread worker;
+  private volatile boolean draining;
+  private long drainDeadline;
+  // 下一次可以送出的時間（依 rate limit 標頭），只由 worker 存取
+  private long nextSendAt;
 
   @Override
   public void start() {
+    if (webhookUrl == null || webhookUrl.trim().isEmpty() || !webhookUrl.startsWith("http")) {
+      // 沒有設定 webhook 時不啟動送出執行緒，append 直接略過
+      addWarn("Discord webhook URL 未設置或無效，不送出 Discord 日誌");
+      super.start();
+      return;
+    }
+    eventQueue = new ArrayBlockingQueue<>(Math.max(1, queueSize));
+    aggregator = aggregate ? new ErrorAggregator(fingerprintCapacity) : null;
+    httpClient = HttpClient.newBuilder()
+        .connectTimeout(java.time.Duration.ofSeconds(10))
+        .build();
     super.start();
-    // 啟動異步處理線程，避免阻塞主程序
-    executor.submit(this::processEvents);
+    // 異步處理線程，避免阻塞主程序
+    worker = Thread.ofPlatform().name("discord-log-appender").daemon().start(this::processEvents);
   }
 
   @Override
   protected void append(ILoggingEvent event) {
     // 只處理指定級別以上的日誌
-    if (event.getLevel().isGreaterOrEqual(ch.qos.logback.classic.Level.toLevel(level))) {
-        boolean offered = eventQueue.offer(event);
-        if (!offered) {
-          // 隊列已滿時的處理策略
-          System.err.println("Discord log 隊列已滿，事件已丟棄：" + event.getFormattedMessage());
-        }
+    if (worker == null || !event.getLevel().isGreaterOrEqual(Level.toLevel(level))) {
+      return;
+    }
+    // 之後在其他執行緒格式化，先固定訊息內容
+    event.prepareForDeferredProcessing();
+    if (aggregator != null && !aggregator.record(event, System.nanoTime())) {
+      // 重複的錯誤只計數，等彙整時一起送
+      return;
+    }
+    if (!eventQueue.offer(event)) {
+      // 隊列已滿時丟棄，下一批送出時附上丟棄數量
+      dropped.incrementAndGet();
     }
   }
 
   private void processEvents() {
-    while (!Thread.currentThread().isInterrupted()) {
+    List<Map<String, Object>> batch = new ArrayList<>(MAX_EMBEDS);
+    // 等待送出的彙整 embed
+    Deque<Map<String, Object>> summaries = new ArrayDeque<>();
+    int limit = Math.max(1, Math.min(batchSize, MAX_EMBEDS));
+    long summaryNanos = TimeUnit.MILLISECONDS.toNanos(summaryInterval.getMilliseconds());
+    long nextSummaryAt = System.nanoTime() + summaryNanos;
+    boolean finalSummary = false;
+    while (true) {
       try {
-        ILoggingEvent event = eventQueue.take();
-        sendToDiscord(event);
+        long now = System.nanoTime();
+        if (aggregator != null && (now >= nextSummaryAt || draining && !finalSummary)) {
+          for (ErrorAggregator.Summary summary : aggregator.summarize(now, summaryNanos)) {
+            summaries.add(buildSummaryEmbed(summary));
+          }
+          nextSummaryAt = now + summaryNanos;
+          finalSummary = draining;
+        }
+        while (batch.size() < limit && !summaries.isEmpty()) {
+          batch.add(summaries.poll());
+        }
+
+        if (draining) {
+          // stop()：把剩下的事件送完（有時間上限）
+          fill(batch, limit);
+          if (batch.isEmpty() || System.nanoTime() > drainDeadline) {
+            return;
+          }
+        } else if (!batch.isEmpty()) {
+          // 已經有彙整要送，順便帶上佇列裡的事件
+          fill(batch, limit);
+        } else {
+          long wait = aggregator == null ? TimeUnit.SECONDS.toNanos(1)
+              : Math.min(TimeUnit.SECONDS.toNanos(1), nextSummaryAt - now);
+          ILoggingEvent first = eventQueue.poll(Math.max(1, wait), TimeUnit.NANOSECONDS);
+          if (first == null) {
+            continue;
+          }
+          batch.add(buildEmbed(first));
+          // 湊滿一批或等到 flushInterval 為止
+          long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(flushInterval.getMilliseconds());
+          while (batch.size() < limit && !draining) {
+            long remaining = deadline - System.nanoTime();
+            ILoggingEvent next = remaining > 0 ? eventQueue.poll(remaining, TimeUnit.NANOSECONDS) : null;
+            if (next == null) {
+              break;
+            }
+            batch.add(buildEmbed(next));
+          }
+        }
+        send(batch);
+        batch.clear();
       } catch (InterruptedException e) {
         Thread.currentThread().interrupt();
-        break;
+        return;
       }
     }
   }
 
-  private void sendToDiscord(ILoggingEvent event) {
+  /**
+   * 不等待，把佇列裡現有的事件補進這一批
+   */
+  private void fill(List<Map<String, Object>> batch, int limit) {
+    ILoggingEvent event;
+    while (batch.size() < limit && (event = eventQueue.poll()) != null) {
+      batch.add(buildEmbed(event));
+    }
+  }
+
+  /**
+   * 送出一批事件，沒有送達時把丟棄數量加回去，由下一批回報
+   */
+  private void send(List<Map<String, Object>> batch) throws InterruptedException {
+    long droppedCount = dropped.getAndSet(0);
+    boolean delivered = false;
     try {
-      // 檢查 webhookUrl 是否有效
-      if (webhookUrl == null || webhookUrl.trim().isEmpty() || !webhookUrl.startsWith("http")) {
-        // 避免重複輸出無意義的錯誤
-        if (webhookUrl == null || webhookUrl.trim().isEmpty()) {
-          System.err.println("Discord webhook URL 未設置，跳過日誌發送");
-        } else {
-          System.err.println("無效的 Discord webhook URL: " + webhookUrl);
-        }
-        return;
+      delivered = post(batch, droppedCount);
+    } finally {
+      if (!delivered && droppedCount > 0) {
+        dropped.addAndGet(droppedCount);
       }
-      
-      Map<String, Object> payload = new HashMap<>();
+    }
+  }
 
-      // Discord Embed 格式
-      Map<String, Object> embed = new HashMap<>();
-      embed.put("title", "🚨 Bot 錯誤警報");
-      embed.put("description", String.format("```\n%s\n```", event.getFormattedMessage()));
-      embed.put("color", getColorByLevel(event.getLevel().toString()));
-      embed.put("timestamp", java.time.Instant.ofEpochMilli(event.getTimeStamp()).toString());
+  /**
+   * 送出一批事件，遇到 429 時依 retry_after 等待後重送
+   *
+   * @return 是否成功送達
+   */
+  private boolean post(List<Map<String, Object>> batch, long droppedCount) throws InterruptedException {
+    byte[] body;
+    try {
+      body = objectMapper.writeValueAsBytes(buildPayload(batch, droppedCount));
+    } catch (Exception e) {
+      System.err.println("建立 Discord 日誌內容失敗: " + e.getMessage());
+      return false;
+    }
+    HttpRequest request = HttpRequest.newBuilder(URI.create(webhookUrl))
+        .timeout(java.time.Duration.ofSeconds(10))
+        .header("Content-Type", "application/json")
+        .POST(HttpRequest.BodyPublishers.ofByteArray(body))
+        .build();
 
-      // 添加額外資訊
-      Map<String, Object> field1 = new HashMap<>();
-      field1.put("name", "級別");
-      field1.put("value", event.getLevel().toString());
-      field1.put("inline", true);
+    for (int attempt = 0; attempt <= MAX_RATE_LIMIT_RETRIES; attempt++) {
+      waitForRateLimit();
+      HttpResponse<String> response;
+      try {
+        response = httpClient.send(request, HttpResponse.BodyHandlers.ofString());
+      } catch (InterruptedException e) {
+        throw e;
+      } catch (Exception e) {
+        // 避免無限循環，不要用 logger
+        System.err.println("發送 Discord 日誌失敗: " + e.getMessage());
+        return false;
+      }
 
-      Map<String, Object> field2 = new HashMap<>();
-      field2.put("name", "Logger");
-      field2.put("value", event.getLoggerName());
-      field2.put("inline", true);
+      updateRateLimit(response);
+      if (response.statusCode() != 429) {
+        if (response.statusCode() / 100 != 2) {
+          System.err.println("發送 Discord 日誌失敗 " + response.statusCode() + ": " + response.body());
+          return false;
+        }
+        return true;
+      }
+      // 被限流：依 retry_after（秒）等待後重送同一批
+      nextSendAt = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(retryAfterMillis(response));
+    }
+    System.err.println("Discord 日誌持續被限流，丟棄 " + batch.size() + " 筆");
+    return false;
+  }
 
-      embed.put("fields", java.util.List.of(field1, field2));
+  private void waitForRateLimit() throws InterruptedException {
+    long wait = nextSendAt - System.nanoTime();
+    if (draining) {
+      // 收尾時不能等超過期限
+      wait = Math.min(wait, drainDeadline - System.nanoTime());
+    }
+    if (wait > 0) {
+      TimeUnit.NANOSECONDS.sleep(wait);
+    }
+  }
 
-      payload.put("embeds", java.util.List.of(embed));
+  /**
+   * X-RateLimit-Remaining 為 0 時，等 X-RateLimit-Reset-After 秒再送下一批
+   */
+  private void updateRateLimit(HttpResponse<?> response) {
+    String remaining = response.headers().firstValue("X-RateLimit-Remaining").orElse(null);
+    String resetAfter = response.headers().firstValue("X-RateLimit-Reset-After").orElse(null);
+    if ("0".equals(remaining) && resetAfter != null) {
+      nextSendAt = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(seconds(resetAfter));
+    }
+  }
 
-      HttpHeaders headers = new HttpHeaders();
-      headers.setContentType(MediaType.APPLICATION_JSON);
+  private long retryAfterMillis(HttpResponse<String> response) {
+    try {
+      JsonNode retryAfter = objectMapper.readTree(response.body()).get("retry_after");
+      if (retryAfter != null && retryAfter.isNumber()) {
+        return Math.min(MAX_RATE_LIMIT_WAIT_MILLIS, (long) (retryAfter.asDouble() * 1000));
+      }
+    } catch (Exception e) {
+      // 內容不是 JSON 時改用標頭
+    }
+    return response.headers().firstValue("Retry-After").map(this::seconds).orElse(1000L);
+  }
 
-      HttpEntity<Map<String, Object>> request = new HttpEntity<>(payload, headers);
-      restTemplate.postForEntity(webhookUrl, request, String.class);
+  private long seconds(String value) {
+    try {
+      return Math.min(MAX_RATE_LIMIT_WAIT_MILLIS, (long) (Double.parseDouble(value) * 1000));
+    } catch (NumberFormatException e) {
+      return 1000;
+    }
+  }
 
-    } catch (Exception e) {
-      // 避免無限循環，不要用 logger
-      System.err.println("發送 Discord 日誌失敗: " + e.getMessage());
-      e.printStackTrace(); // 打印堆疊追蹤以提供更多調試信息
+  /**
+   * 建立 webhook 的 embed 內容（單一事件）
+   */
+  public Map<String, Object> buildPayload(ILoggingEvent event) {
+    return buildPayload(List.of(buildEmbed(event)), 0);
+  }
+
+  /**
+   * 建立 webhook 的內容
+   *
+   * @param dropped 因佇列已滿而丟棄、還沒回報的事件數
+   */
+  private Map<String, Object> buildPayload(List<Map<String, Object>> embeds, long dropped) {
+    Map<String, Object> payload = new HashMap<>();
+    payload.put("embeds", embeds);
+    if (dropped > 0) {
+      payload.put("content", "⚠️ 日誌佇列已滿，已丟棄 " + dropped + " 筆");
+    }
+    return payload;
+  }
+
+  private Map<String, Object> buildEmbed(ILoggingEvent event) {
+    // Discord Embed 格式
+    Map<String, Object> embed = new HashMap<>();
+    String message = event.getFormattedMessage();
+    if (message.length() > MAX_DESCRIPTION) {
+      message = message.substring(0, MAX_DESCRIPTION) + "…";
     }
+    embed.put("title", "🚨 Bot 錯誤警報");
+    embed.put("description", "```\n" + message + "\n```");
+    embed.put("color", getColorByLevel(event.getLevel().toString()));
+    embed.put("timestamp", Instant.ofEpochMilli(event.getTimeStamp()).toString());
+
+    // 添加額外資訊
+    Map<String, Object> field1 = new HashMap<>();
+    field1.put("name", "級別");
+    field1.put("value", event.getLevel().toString());
+    field1.put("inline", true);
+
+    Map<String, Object> field2 = new HashMap<>();
+    field2.put("name", "Logger");
+    field2.put("value", event.getLoggerName());
+    field2.put("inline", true);
+
+    embed.put("fields", List.of(field1, field2));
+    return embed;
+  }
+
+  /**
+   * 重複錯誤的彙整：沿用第一次出現的內容，標題改成次數
+   */
+  private Map<String, Object> buildSummaryEmbed(ErrorAggregator.Summary summary) {
+    Map<String, Object> embed = buildEmbed(summary.sample());
+    long seconds = Math.max(1, TimeUnit.NANOSECONDS.toSeconds(summary.windowNanos()));
+    embed.put("title", "🔁 重複錯誤 ×" + summary.repeats() + "（近 " + seconds + " 秒）");
+    embed.put("timestamp", Instant.now().toString());
+    return embed;
   }
 
   private int getColorByLevel(String level) {
@@ -115,7 +345,23 @@ public class DiscordAppender extends AppenderBase<ILoggingEvent> {
 
   @Override
   public void stop() {
-    executor.shutdown();
+    if (!isStarted()) {
+      return;
+    }
     super.stop();
+    if (worker == null) {
+      return;
+    }
+    // 停止接收新事件，送完佇列裡剩下的
+    drainDeadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(drainTimeout.getMilliseconds());
+    draining = true;
+    try {
+      worker.join(drainTimeout.getMilliseconds() + 1000);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+    if (worker.isAlive()) {
+      worker.interrupt();
+    }
   }
-}
\ No newline at end of file
+}
@@ -0,0 +1,129 @@
+package per.iiimabbie.dcbot.logging;
+
+import ch.qos.logback.classic.spi.ILoggingEvent;
+import ch.qos.logback.classic.spi.IThrowableProxy;
+import ch.qos.logback.classic.spi.StackTraceElementProxy;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * 錯誤指紋表：以 logger、訊息樣板、例外類型和最上層 stack frame 當指紋
+ * 同一指紋第一次出現時照常送出，之後的重複只計數，由 summarize() 定期彙整成一筆
+ * 固定大小的開放定址表，只用 CAS，不上鎖；表滿時不聚合，直接送出
+ */
+final class ErrorAggregator {
+
+  // 線性探測的最大次數，超過就當作表滿
+  private static final int MAX_PROBES = 8;
+  // 已移出表的項目，計數設成負數讓其他執行緒看得出來
+  private static final long RETIRED = Long.MIN_VALUE;
+
+  private final AtomicReferenceArray<Entry> slots;
+  private final int mask;
+
+  ErrorAggregator(int capacity) {
+    int size = Integer.highestOneBit(Math.max(2, capacity - 1)) << 1;
+    this.slots = new AtomicReferenceArray<>(size);
+    this.mask = size - 1;
+  }
+
+  /**
+   * 記錄一個事件
+   *
+   * @return true 表示要立即送出（第一次出現或表已滿）
+   */
+  boolean record(ILoggingEvent event, long now) {
+    String key = fingerprint(event);
+    int hash = key.hashCode();
+    hash ^= hash >>> 16;
+    int probe = 0;
+    while (probe < MAX_PROBES) {
+      int index = (hash + probe) & mask;
+      Entry entry = slots.get(index);
+      if (entry == null) {
+        if (slots.compareAndSet(index, null, new Entry(key, event, now))) {
+          return true;
+        }
+        continue; // 被搶先放入，重讀同一格
+      }
+      if (!entry.key.equals(key)) {
+        probe++;
+        continue;
+      }
+      if (entry.repeats.incrementAndGet() > 0) {
+        entry.lastSeen = now;
+        return false;
+      }
+      // 剛好被移出，換成新的項目
+      if (slots.compareAndSet(index, entry, new Entry(key, event, now))) {
+        return true;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * 取出上次彙整之後有重複的指紋，並移除閒置超過 idleNanos 的項目（只由送出執行緒呼叫）
+   */
+  List<Summary> summarize(long now, long idleNanos) {
+    List<Summary> summaries = new ArrayList<>();
+    for (int i = 0; i < slots.length(); i++) {
+      Entry entry = slots.get(i);
+      if (entry == null) {
+        continue;
+      }
+      long repeats = entry.repeats.getAndSet(0);
+      if (repeats > 0) {
+        summaries.add(new Summary(entry.sample, repeats, now - entry.windowStart));
+        entry.windowStart = now;
+      } else if (now - entry.lastSeen >= idleNanos && entry.repeats.compareAndSet(0, RETIRED)) {
+        slots.compareAndSet(i, entry, null);
+      }
+    }
+    return summaries;
+  }
+
+  static String fingerprint(ILoggingEvent event) {
+    StringBuilder key = new StringBuilder(256)
+        .append(event.getLoggerName()).append('|')
+        .append(event.getMessage());
+    IThrowableProxy throwable = event.getThrowableProxy();
+    if (throwable != null) {
+      key.append('|').append(throwable.getClassName());
+      StackTraceElementProxy[] frames = throwable.getStackTraceElementProxyArray();
+      if (frames != null && frames.length > 0) {
+        key.append('|').append(frames[0].getStackTraceElement());
+      }
+    }
+    return key.toString();
+  }
+
+  /**
+   * 一個指紋在彙整區間內的重複次數
+   *
+   * @param sample 第一次出現的事件
+   * @param windowNanos 彙整區間長度
+   */
+  record Summary(ILoggingEvent sample, long repeats, long windowNanos) {
+
+  }
+
+  private static final class Entry {
+
+    final String key;
+    final ILoggingEvent sample;
+    final AtomicLong repeats = new AtomicLong();
+    volatile long lastSeen;
+    // 只由送出執行緒更新
+    long windowStart;
+
+    Entry(String key, ILoggingEvent sample, long now) {
+      this.key = key;
+      this.sample = sample;
+      this.lastSeen = now;
+      this.windowStart = now;
+    }
+  }
+}
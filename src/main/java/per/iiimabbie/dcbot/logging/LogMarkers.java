@@ -0,0 +1,38 @@
+package per.iiimabbie.dcbot.logging;
+
+import java.util.function.Supplier;
+import org.slf4j.Marker;
+import org.slf4j.MarkerFactory;
+
+/**
+ * 熱路徑日誌的分類（由 {@link SamplingTurboFilter} 依分類抽樣）和延遲計算的參數
+ */
+public final class LogMarkers {
+
+  // 每則處理的訊息
+  public static final Marker MESSAGE = MarkerFactory.getMarker("message");
+  // 每則 Gemini 回覆全文
+  public static final Marker GEMINI_REPLY = MarkerFactory.getMarker("gemini-reply");
+  // 每次 Gemini 請求 JSON
+  public static final Marker GEMINI_REQUEST = MarkerFactory.getMarker("gemini-request");
+
+  private LogMarkers() {
+  }
+
+  /**
+   * 延遲計算的日誌參數：真的輸出時才呼叫 supplier（通常在非同步 appender 的執行緒），結果只算一次
+   */
+  public static Object lazy(Supplier<?> supplier) {
+    return new Object() {
+      private String value;
+
+      @Override
+      public String toString() {
+        if (value == null) {
+          value = String.valueOf(supplier.get());
+        }
+        return value;
+      }
+    };
+  }
+}
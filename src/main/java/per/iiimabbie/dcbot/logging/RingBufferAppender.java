@@ -0,0 +1,203 @@
+package per.iiimabbie.dcbot.logging;
+
+import ch.qos.logback.classic.Level;
+import ch.qos.logback.classic.spi.ILoggingEvent;
+import ch.qos.logback.core.Appender;
+import ch.qos.logback.core.UnsynchronizedAppenderBase;
+import ch.qos.logback.core.spi.AppenderAttachable;
+import ch.qos.logback.core.spi.AppenderAttachableImpl;
+import ch.qos.logback.core.util.Duration;
+import java.util.Iterator;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.locks.LockSupport;
+import lombok.Setter;
+
+/**
+ * 非同步 appender：呼叫端只把事件放進固定大小的環形緩衝區（CAS，不上鎖），
+ * 格式化和寫檔都在背景執行緒交給底下的 appender 處理
+ * 緩衝區滿時 INFO 以下直接丟棄並計數，WARN 以上稍等空位
+ */
+@Setter
+public class RingBufferAppender extends UnsynchronizedAppenderBase<ILoggingEvent>
+    implements AppenderAttachable<ILoggingEvent> {
+
+  // 緩衝區大小（會進位到 2 的次方）
+  private int bufferSize = 8192;
+  // stop() 時最多花多久寫完緩衝區
+  private Duration maxFlushTime = Duration.buildBySeconds(5);
+  // 預設在背景執行緒才格式化訊息；參數可能被呼叫端修改時改成 true
+  private boolean formatOnCaller = false;
+
+  private final AppenderAttachableImpl<ILoggingEvent> appenders = new AppenderAttachableImpl<>();
+  private final AtomicLong tail = new AtomicLong();
+  private final AtomicLong dropped = new AtomicLong();
+  private AtomicReferenceArray<ILoggingEvent> events;
+  // 每格的序號：等於寫入位置代表可寫，等於寫入位置 + 1 代表可讀（Vyukov 有界佇列）
+  private AtomicLongArray sequences;
+  private int mask;
+  // 只由背景執行緒修改
+  private long head;
+  private Thread worker;
+  private volatile boolean parked;
+
+  @Override
+  public void start() {
+    if (!appenders.iteratorForAppenders().hasNext()) {
+      addError("沒有設定 appender-ref");
+      return;
+    }
+    int size = Integer.highestOneBit(Math.max(2, bufferSize - 1)) << 1;
+    events = new AtomicReferenceArray<>(size);
+    sequences = new AtomicLongArray(size);
+    for (int i = 0; i < size; i++) {
+      sequences.set(i, i);
+    }
+    mask = size - 1;
+    super.start();
+    worker = Thread.ofPlatform().name("async-log-appender").daemon().start(this::processEvents);
+  }
+
+  @Override
+  protected void append(ILoggingEvent event) {
+    // 先固定跟呼叫執行緒有關的欄位，訊息留給背景執行緒格式化
+    event.getThreadName();
+    event.getMDCPropertyMap();
+    if (formatOnCaller) {
+      event.prepareForDeferredProcessing();
+    }
+    boolean important = event.getLevel().isGreaterOrEqual(Level.WARN);
+    while (!offer(event)) {
+      if (!important || !isStarted() || Thread.currentThread() == worker) {
+        dropped.incrementAndGet();
+        return;
+      }
+      LockSupport.parkNanos(TimeUnit.MICROSECONDS.toNanos(100));
+    }
+    if (parked) {
+      LockSupport.unpark(worker);
+    }
+  }
+
+  private boolean offer(ILoggingEvent event) {
+    long position = tail.get();
+    while (true) {
+      int index = (int) position & mask;
+      long diff = sequences.get(index) - position;
+      if (diff == 0) {
+        if (tail.compareAndSet(position, position + 1)) {
+          events.lazySet(index, event);
+          sequences.set(index, position + 1);
+          return true;
+        }
+        position = tail.get();
+      } else if (diff < 0) {
+        return false; // 已滿
+      } else {
+        position = tail.get();
+      }
+    }
+  }
+
+  private ILoggingEvent poll() {
+    int index = (int) head & mask;
+    if (sequences.get(index) != head + 1) {
+      return null;
+    }
+    ILoggingEvent event = events.get(index);
+    events.lazySet(index, null);
+    sequences.set(index, head + mask + 1);
+    head++;
+    return event;
+  }
+
+  private void processEvents() {
+    while (isStarted()) {
+      ILoggingEvent event = poll();
+      if (event != null) {
+        appenders.appendLoopOnAppenders(event);
+        continue;
+      }
+      reportDropped();
+      // 沒有事件時休眠，寫入端看到 parked 會喚醒
+      parked = true;
+      if (!isEmpty()) {
+        parked = false;
+        continue;
+      }
+      LockSupport.parkNanos(this, TimeUnit.MILLISECONDS.toNanos(100));
+      parked = false;
+    }
+
+    // stop()：寫完緩衝區剩下的事件（有時間上限）
+    long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(maxFlushTime.getMilliseconds());
+    ILoggingEvent event;
+    while (System.nanoTime() < deadline && (event = poll()) != null) {
+      appenders.appendLoopOnAppenders(event);
+    }
+    reportDropped();
+    appenders.detachAndStopAllAppenders();
+  }
+
+  private boolean isEmpty() {
+    return sequences.get((int) head & mask) != head + 1;
+  }
+
+  private void reportDropped() {
+    long count = dropped.getAndSet(0);
+    if (count > 0) {
+      addWarn("日誌緩衝區已滿，丟棄 " + count + " 筆");
+    }
+  }
+
+  @Override
+  public void stop() {
+    if (!isStarted()) {
+      return;
+    }
+    super.stop();
+    LockSupport.unpark(worker);
+    try {
+      worker.join(maxFlushTime.getMilliseconds() + 1000);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+  }
+
+  @Override
+  public void addAppender(Appender<ILoggingEvent> newAppender) {
+    appenders.addAppender(newAppender);
+  }
+
+  @Override
+  public Iterator<Appender<ILoggingEvent>> iteratorForAppenders() {
+    return appenders.iteratorForAppenders();
+  }
+
+  @Override
+  public Appender<ILoggingEvent> getAppender(String name) {
+    return appenders.getAppender(name);
+  }
+
+  @Override
+  public boolean isAttached(Appender<ILoggingEvent> appender) {
+    return appenders.isAttached(appender);
+  }
+
+  @Override
+  public void detachAndStopAllAppenders() {
+    appenders.detachAndStopAllAppenders();
+  }
+
+  @Override
+  public boolean detachAppender(Appender<ILoggingEvent> appender) {
+    return appenders.detachAppender(appender);
+  }
+
+  @Override
+  public boolean detachAppender(String name) {
+    return appenders.detachAppender(name);
+  }
+}
@@ -0,0 +1,56 @@
+package per.iiimabbie.dcbot.logging;
+
+import ch.qos.logback.classic.Level;
+import ch.qos.logback.classic.Logger;
+import ch.qos.logback.classic.turbo.TurboFilter;
+import ch.qos.logback.core.spi.FilterReply;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+import lombok.Setter;
+import org.slf4j.Marker;
+
+/**
+ * 依 marker 分類抽樣 INFO 以下的日誌，例如 {@code message=0.1,gemini-reply=0.05}
+ * 在建立事件之前就決定，被略過的日誌不會格式化也不會配置物件；WARN 以上一律保留
+ */
+@Setter
+public class SamplingTurboFilter extends TurboFilter {
+
+  // 分類=比例，以逗號分隔
+  private String rates = "";
+
+  private Map<String, Double> rateByMarker = Map.of();
+
+  @Override
+  public void start() {
+    Map<String, Double> parsed = new HashMap<>();
+    for (String entry : rates.split(",")) {
+      if (entry.isBlank()) {
+        continue;
+      }
+      String[] pair = entry.split("=", 2);
+      try {
+        double rate = Double.parseDouble(pair[1].trim());
+        parsed.put(pair[0].trim(), Math.max(0, Math.min(1, rate)));
+      } catch (RuntimeException e) {
+        addError("無效的抽樣設定: " + entry);
+      }
+    }
+    rateByMarker = Map.copyOf(parsed);
+    super.start();
+  }
+
+  @Override
+  public FilterReply decide(Marker marker, Logger logger, Level level, String format,
+      Object[] params, Throwable t) {
+    if (marker == null || level == null || level.isGreaterOrEqual(Level.WARN)) {
+      return FilterReply.NEUTRAL;
+    }
+    Double rate = rateByMarker.get(marker.getName());
+    if (rate == null || rate >= 1) {
+      return FilterReply.NEUTRAL;
+    }
+    return ThreadLocalRandom.current().nextDouble() < rate ? FilterReply.NEUTRAL : FilterReply.DENY;
+  }
+}
@@ -0,0 +1,53 @@
+package per.iiimabbie.dcbot.metrics;
+
+import java.util.concurrent.CompletableFuture;
+import lombok.RequiredArgsConstructor;
+import net.dv8tion.jda.api.JDA;
+import org.springframework.boot.actuate.health.Health;
+import org.springframework.boot.actuate.health.HealthIndicator;
+import org.springframework.context.annotation.Profile;
+import org.springframework.stereotype.Component;
+import per.iiimabbie.dcbot.service.DiscordService;
+
+/**
+ * Discord 連線狀態（/actuator/health 的 discord）
+ * 登入中或斷線重連時為 OUT_OF_SERVICE，登入失敗為 DOWN
+ *
+ * @author iiimabbie
+ */
+@Profile("!loadtest")
+@Component
+@RequiredArgsConstructor
+public class DiscordHealthIndicator implements HealthIndicator {
+
+  private final DiscordService discordService;
+  private final StartupMetrics startupMetrics;
+
+  @Override
+  public Health health() {
+    CompletableFuture<JDA> ready = discordService.getReady();
+    JDA jda = discordService.getJda();
+    Health.Builder builder;
+    if (ready.isCompletedExceptionally()) {
+      builder = Health.down(ready.exceptionNow());
+    } else if (!ready.isDone()) {
+      builder = Health.outOfService().withDetail("phase", "登入中");
+    } else if (jda.getStatus() != JDA.Status.CONNECTED) {
+      builder = Health.outOfService().withDetail("phase", "重新連線中");
+    } else {
+      builder = Health.up()
+          .withDetail("gatewayPing", jda.getGatewayPing())
+          .withDetail("guilds", jda.getGuilds().size());
+    }
+    if (jda != null) {
+      builder.withDetail("status", jda.getStatus().name());
+    }
+    if (startupMetrics.getGatewayReadyMillis() >= 0) {
+      builder.withDetail("gatewayReadyMillis", startupMetrics.getGatewayReadyMillis());
+    }
+    if (startupMetrics.getFirstReplyMillis() >= 0) {
+      builder.withDetail("firstReplyMillis", startupMetrics.getFirstReplyMillis());
+    }
+    return builder.build();
+  }
+}
@@ -0,0 +1,284 @@
+package per.iiimabbie.dcbot.metrics;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import org.springframework.stereotype.Component;
+import per.iiimabbie.dcbot.dto.gemini.GeminiResponse;
+import per.iiimabbie.dcbot.exception.BotException;
+
+/**
+ * 訊息處理流程的指標
+ * 各階段耗時、各錯誤類型次數、Gemini token 用量分佈與進行中的請求數。
+ * 另外在程序內保留最近幾分鐘的滑動視窗統計，供 /status 直接讀取
+ *
+ * @author iiimabbie
+ */
+@Component
+public class PipelineMetrics {
+
+  /**
+   * 處理階段
+   */
+  public enum Stage {
+    HISTORY_FETCH("history_fetch"),
+    CONTEXT_BUILD("context_build"),
+    SERIALIZATION("serialization"),
+    GEMINI_HTTP("gemini_http"),
+    PARSE("parse"),
+    DISCORD_SEND("discord_send");
+
+    private final String tag;
+
+    Stage(String tag) {
+      this.tag = tag;
+    }
+  }
+
+  /**
+   * 事件來源
+   */
+  public enum Pipeline {
+    CHAT("chat"),
+    COMMAND("command"),
+    DICE("dice");
+
+    private final String tag;
+
+    Pipeline(String tag) {
+      this.tag = tag;
+    }
+  }
+
+  /**
+   * 有命中率統計的快取
+   */
+  public enum Cache {
+    HISTORY,
+    RESPONSE
+  }
+
+  // /status 顯示的滑動視窗
+  private static final Duration WINDOW = Duration.ofMinutes(5);
+  private static final int WINDOW_SLOTS = 30;
+
+  private final Map<Stage, Timer> stageTimers = new EnumMap<>(Stage.class);
+  private final Map<Pipeline, Timer> pipelineTimers = new EnumMap<>(Pipeline.class);
+  private final Map<Pipeline, AtomicInteger> inFlight = new EnumMap<>(Pipeline.class);
+  private final Map<BotException.ErrorType, Counter> errorCounters = new EnumMap<>(BotException.ErrorType.class);
+
+  private final DistributionSummary promptTokens;
+  private final DistributionSummary candidateTokens;
+  private final DistributionSummary cachedTokens;
+  private final DistributionSummary totalTokens;
+
+  // 滑動視窗統計（毫秒）
+  private final Map<Pipeline, RollingHistogram> recentLatency = new EnumMap<>(Pipeline.class);
+  private final RollingCounter recentGeminiRequests = new RollingCounter(WINDOW, WINDOW_SLOTS);
+  private final RollingCounter recentGeminiErrors = new RollingCounter(WINDOW, WINDOW_SLOTS);
+  private final Map<Cache, RollingCounter> recentCacheLookups = new EnumMap<>(Cache.class);
+  private final Map<Cache, RollingCounter> recentCacheHits = new EnumMap<>(Cache.class);
+  private final RollingCounter recentPromptTokens = new RollingCounter(WINDOW, WINDOW_SLOTS);
+  private final RollingCounter recentCachedTokens = new RollingCounter(WINDOW, WINDOW_SLOTS);
+
+  // 今天（系統時區）用掉的 token
+  private final AtomicLong tokensToday = new AtomicLong();
+  private final AtomicLong today = new AtomicLong(LocalDate.now().toEpochDay());
+
+  public PipelineMetrics(MeterRegistry meterRegistry) {
+    for (Stage stage : Stage.values()) {
+      stageTimers.put(stage, Timer.builder("dcbot.pipeline.stage")
+          .description("訊息處理各階段的耗時")
+          .tag("stage", stage.tag)
+          .publishPercentileHistogram()
+          .register(meterRegistry));
+    }
+    for (Pipeline pipeline : Pipeline.values()) {
+      pipelineTimers.put(pipeline, Timer.builder("dcbot.pipeline.latency")
+          .description("從收到事件到處理完成的總耗時")
+          .tag("pipeline", pipeline.tag)
+          .publishPercentileHistogram()
+          .register(meterRegistry));
+      recentLatency.put(pipeline, new RollingHistogram(WINDOW, WINDOW_SLOTS));
+      AtomicInteger counter = new AtomicInteger();
+      inFlight.put(pipeline, counter);
+      Gauge.builder("dcbot.pipeline.inflight", counter, AtomicInteger::get)
+          .description("處理中的事件數")
+          .tag("pipeline", pipeline.tag)
+          .register(meterRegistry);
+    }
+    for (BotException.ErrorType type : BotException.ErrorType.values()) {
+      errorCounters.put(type, Counter.builder("dcbot.errors")
+          .description("各錯誤類型的發生次數")
+          .tag("type", type.name())
+          .register(meterRegistry));
+    }
+
+    for (Cache cache : Cache.values()) {
+      recentCacheLookups.put(cache, new RollingCounter(WINDOW, WINDOW_SLOTS));
+      recentCacheHits.put(cache, new RollingCounter(WINDOW, WINDOW_SLOTS));
+    }
+
+    this.promptTokens = tokenSummary(meterRegistry, "prompt");
+    this.candidateTokens = tokenSummary(meterRegistry, "candidates");
+    this.cachedTokens = tokenSummary(meterRegistry, "cached");
+    this.totalTokens = tokenSummary(meterRegistry, "total");
+  }
+
+  private static DistributionSummary tokenSummary(MeterRegistry meterRegistry, String kind) {
+    return DistributionSummary.builder("dcbot.gemini.tokens")
+        .description("每次 Gemini 回應的 token 用量")
+        .baseUnit("tokens")
+        .tag("kind", kind)
+        .publishPercentileHistogram()
+        .register(meterRegistry);
+  }
+
+  /**
+   * 記錄一個階段的耗時
+   *
+   * @param startNanos 階段開始時的 System.nanoTime()
+   */
+  public void recordStage(Stage stage, long startNanos) {
+    stageTimers.get(stage).record(System.nanoTime() - startNanos, TimeUnit.NANOSECONDS);
+  }
+
+  /**
+   * 開始處理一個事件
+   *
+   * @return 開始時間，處理結束時傳給 {@link #end}
+   */
+  public long begin(Pipeline pipeline) {
+    inFlight.get(pipeline).incrementAndGet();
+    return System.nanoTime();
+  }
+
+  /**
+   * 事件處理結束（成功或失敗都要呼叫）
+   */
+  public void end(Pipeline pipeline, long startNanos) {
+    long elapsed = System.nanoTime() - startNanos;
+    inFlight.get(pipeline).decrementAndGet();
+    pipelineTimers.get(pipeline).record(elapsed, TimeUnit.NANOSECONDS);
+    recentLatency.get(pipeline).record(TimeUnit.NANOSECONDS.toMillis(elapsed));
+  }
+
+  /**
+   * 記錄一次 Gemini 請求（含重試）的結果
+   */
+  public void recordGeminiResult(Throwable error) {
+    recentGeminiRequests.increment();
+    if (error != null) {
+      recentGeminiErrors.increment();
+    }
+  }
+
+  /**
+   * 記錄一次快取查詢
+   */
+  public void recordCacheLookup(Cache cache, boolean hit) {
+    recentCacheLookups.get(cache).increment();
+    if (hit) {
+      recentCacheHits.get(cache).increment();
+    }
+  }
+
+  /**
+   * 記錄一次錯誤，非 BotException 視為 UNKNOWN_ERROR
+   */
+  public void recordError(Throwable error) {
+    Throwable cause = error instanceof CompletionException && error.getCause() != null ? error.getCause() : error;
+    BotException.ErrorType type = cause instanceof BotException botException
+        ? botException.getErrorType() : BotException.ErrorType.UNKNOWN_ERROR;
+    errorCounters.get(type).increment();
+  }
+
+  /**
+   * 記錄 Gemini 回應的 token 用量
+   */
+  public void recordUsage(GeminiResponse.UsageMetadata usage) {
+    if (usage == null) {
+      return;
+    }
+    record(promptTokens, usage.getPromptTokenCount());
+    record(candidateTokens, usage.getCandidatesTokenCount());
+    record(cachedTokens, usage.getCachedContentTokenCount());
+    record(totalTokens, usage.getTotalTokenCount());
+
+    if (usage.getPromptTokenCount() != null) {
+      recentPromptTokens.add(usage.getPromptTokenCount());
+    }
+    if (usage.getCachedContentTokenCount() != null) {
+      recentCachedTokens.add(usage.getCachedContentTokenCount());
+    }
+    if (usage.getTotalTokenCount() != null) {
+      long day = LocalDate.now().toEpochDay();
+      long seen = today.get();
+      if (seen != day && today.compareAndSet(seen, day)) {
+        tokensToday.set(0);
+      }
+      tokensToday.addAndGet(usage.getTotalTokenCount());
+    }
+  }
+
+  /**
+   * 取得滑動視窗內的統計，只讀取計數器，不做額外計算
+   */
+  public Dashboard dashboard() {
+    RollingHistogram.Snapshot chat = recentLatency.get(Pipeline.CHAT).snapshot();
+    double minutes = WINDOW.toSeconds() / 60.0;
+    long requests = recentGeminiRequests.sum();
+    return new Dashboard(WINDOW, chat.getCount(), chat.percentile(0.5), chat.percentile(0.95),
+        chat.percentile(0.99), chat.getCount() / minutes,
+        requests, ratio(recentGeminiErrors.sum(), requests),
+        LocalDate.now().toEpochDay() == today.get() ? tokensToday.get() : 0,
+        ratio(recentCacheHits.get(Cache.HISTORY).sum(), recentCacheLookups.get(Cache.HISTORY).sum()),
+        ratio(recentCacheHits.get(Cache.RESPONSE).sum(), recentCacheLookups.get(Cache.RESPONSE).sum()),
+        ratio(recentCachedTokens.sum(), recentPromptTokens.sum()));
+  }
+
+  /**
+   * 分母為 0 時回傳 null
+   */
+  private static Double ratio(long numerator, long denominator) {
+    return denominator == 0 ? null : (double) numerator / denominator;
+  }
+
+  /**
+   * 滑動視窗統計
+   *
+   * @param window             視窗長度
+   * @param replies            視窗內完成的 AI 回覆數
+   * @param p50Millis          AI 回覆延遲 p50（毫秒）
+   * @param p95Millis          AI 回覆延遲 p95（毫秒）
+   * @param p99Millis          AI 回覆延遲 p99（毫秒）
+   * @param repliesPerMinute   平均每分鐘 AI 回覆數
+   * @param geminiRequests     視窗內的 Gemini 請求數
+   * @param geminiErrorRate    Gemini 錯誤率，沒有請求時為 null
+   * @param tokensToday        今天用掉的 token
+   * @param historyHitRate     歷史訊息快取命中率，沒有查詢時為 null
+   * @param responseHitRate    回應快取命中率，沒有查詢時為 null
+   * @param promptCacheRate    輸入 token 中由 cachedContent 提供的比例，沒有請求時為 null
+   */
+  public record Dashboard(Duration window, long replies, long p50Millis, long p95Millis, long p99Millis,
+      double repliesPerMinute, long geminiRequests, Double geminiErrorRate, long tokensToday,
+      Double historyHitRate, Double responseHitRate, Double promptCacheRate) {
+
+  }
+
+  private static void record(DistributionSummary summary, Integer value) {
+    if (value != null) {
+      summary.record(value);
+    }
+  }
+}
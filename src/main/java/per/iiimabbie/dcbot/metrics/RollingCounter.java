@@ -0,0 +1,63 @@
+package per.iiimabbie.dcbot.metrics;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 無鎖的滑動視窗計數器，分槽方式與 {@link RollingHistogram} 相同
+ *
+ * @author iiimabbie
+ */
+public class RollingCounter {
+
+  private final long slotNanos;
+  private final AtomicLong[] epochs;
+  private final AtomicLong[] counts;
+
+  public RollingCounter(Duration window, int slotCount) {
+    this.slotNanos = window.toNanos() / slotCount;
+    this.epochs = new AtomicLong[slotCount];
+    this.counts = new AtomicLong[slotCount];
+    for (int i = 0; i < slotCount; i++) {
+      epochs[i] = new AtomicLong(Long.MIN_VALUE);
+      counts[i] = new AtomicLong();
+    }
+  }
+
+  public void increment() {
+    add(1);
+  }
+
+  public void add(long amount) {
+    add(amount, System.nanoTime());
+  }
+
+  void add(long amount, long nowNanos) {
+    long epoch = Math.floorDiv(nowNanos, slotNanos);
+    int index = (int) Math.floorMod(epoch, (long) epochs.length);
+    long seen = epochs[index].get();
+    if (seen < epoch && epochs[index].compareAndSet(seen, epoch)) {
+      counts[index].set(0);
+    }
+    counts[index].addAndGet(amount);
+  }
+
+  /**
+   * 視窗內的總和
+   */
+  public long sum() {
+    return sum(System.nanoTime());
+  }
+
+  long sum(long nowNanos) {
+    long epoch = Math.floorDiv(nowNanos, slotNanos);
+    long total = 0;
+    for (int i = 0; i < epochs.length; i++) {
+      long slotEpoch = epochs[i].get();
+      if (slotEpoch <= epoch && epoch - slotEpoch < epochs.length) {
+        total += counts[i].get();
+      }
+    }
+    return total;
+  }
+}
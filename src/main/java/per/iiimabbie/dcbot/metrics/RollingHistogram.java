@@ -0,0 +1,156 @@
+package per.iiimabbie.dcbot.metrics;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * 無鎖的滑動視窗直方圖
+ * 視窗切成固定長度的時間槽，每個槽是一組對數線性的 bucket（每個 2 的次方再分 8 格，相對誤差約 12.5%）。
+ * 記錄只有幾個 CAS / getAndIncrement，查詢時才把視窗內的槽加總；槽輪替的瞬間可能遺失少量樣本
+ *
+ * @author iiimabbie
+ */
+public class RollingHistogram {
+
+  // 每個 2 的次方分成 2^SUB_BITS 格
+  private static final int SUB_BITS = 3;
+  private static final int SUB_COUNT = 1 << SUB_BITS;
+  private static final int BUCKET_COUNT = (64 - SUB_BITS + 1) * SUB_COUNT;
+
+  private final long slotNanos;
+  private final Slot[] slots;
+
+  /**
+   * @param window    視窗長度
+   * @param slotCount 視窗切成幾個槽，越多越平滑
+   */
+  public RollingHistogram(Duration window, int slotCount) {
+    this.slotNanos = window.toNanos() / slotCount;
+    this.slots = new Slot[slotCount];
+    for (int i = 0; i < slotCount; i++) {
+      slots[i] = new Slot();
+    }
+  }
+
+  public Duration getWindow() {
+    return Duration.ofNanos(slotNanos * slots.length);
+  }
+
+  /**
+   * 記錄一個非負的值
+   */
+  public void record(long value) {
+    record(value, System.nanoTime());
+  }
+
+  void record(long value, long nowNanos) {
+    Slot slot = current(nowNanos);
+    slot.buckets.getAndIncrement(bucketOf(Math.max(0, value)));
+  }
+
+  /**
+   * 取得視窗內的統計
+   */
+  public Snapshot snapshot() {
+    return snapshot(System.nanoTime());
+  }
+
+  Snapshot snapshot(long nowNanos) {
+    long epoch = Math.floorDiv(nowNanos, slotNanos);
+    long[] merged = new long[BUCKET_COUNT];
+    long count = 0;
+    for (Slot slot : slots) {
+      long slotEpoch = slot.epoch.get();
+      if (slotEpoch > epoch || epoch - slotEpoch >= slots.length) {
+        continue;
+      }
+      for (int i = 0; i < BUCKET_COUNT; i++) {
+        long n = slot.buckets.get(i);
+        merged[i] += n;
+        count += n;
+      }
+    }
+    return new Snapshot(count, merged);
+  }
+
+  private Slot current(long nowNanos) {
+    long epoch = Math.floorDiv(nowNanos, slotNanos);
+    Slot slot = slots[(int) Math.floorMod(epoch, (long) slots.length)];
+    long seen = slot.epoch.get();
+    if (seen < epoch && slot.epoch.compareAndSet(seen, epoch)) {
+      // 搶到輪替的執行緒負責清空舊資料
+      for (int i = 0; i < BUCKET_COUNT; i++) {
+        slot.buckets.set(i, 0);
+      }
+    }
+    return slot;
+  }
+
+  static int bucketOf(long value) {
+    if (value < SUB_COUNT) {
+      return (int) value;
+    }
+    int exponent = 63 - Long.numberOfLeadingZeros(value);
+    int sub = (int) (value >>> (exponent - SUB_BITS)) & (SUB_COUNT - 1);
+    return (exponent - SUB_BITS + 1) * SUB_COUNT + sub;
+  }
+
+  /**
+   * bucket 的上界（含）
+   */
+  static long upperBound(int bucket) {
+    if (bucket < SUB_COUNT) {
+      return bucket;
+    }
+    int exponent = bucket / SUB_COUNT + SUB_BITS - 1;
+    int sub = bucket % SUB_COUNT;
+    long lower = (long) (SUB_COUNT + sub) << (exponent - SUB_BITS);
+    long width = 1L << (exponent - SUB_BITS);
+    return lower + width - 1 < 0 ? Long.MAX_VALUE : lower + width - 1;
+  }
+
+  private static final class Slot {
+
+    private final AtomicLong epoch = new AtomicLong(Long.MIN_VALUE);
+    private final AtomicLongArray buckets = new AtomicLongArray(BUCKET_COUNT);
+  }
+
+  /**
+   * 視窗內的統計結果
+   */
+  public static final class Snapshot {
+
+    private final long count;
+    private final long[] buckets;
+
+    private Snapshot(long count, long[] buckets) {
+      this.count = count;
+      this.buckets = buckets;
+    }
+
+    public long getCount() {
+      return count;
+    }
+
+    /**
+     * 百分位數（bucket 上界），沒有樣本時回傳 0
+     *
+     * @param percentile 0 ~ 1
+     */
+    public long percentile(double percentile) {
+      if (count == 0) {
+        return 0;
+      }
+      long rank = Math.max(1, (long) Math.ceil(percentile * count));
+      long seen = 0;
+      for (int i = 0; i < buckets.length; i++) {
+        seen += buckets[i];
+        if (seen >= rank) {
+          return upperBound(i);
+        }
+      }
+      return upperBound(buckets.length - 1);
+    }
+  }
+}
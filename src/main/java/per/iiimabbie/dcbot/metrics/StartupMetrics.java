@@ -0,0 +1,76 @@
+package per.iiimabbie.dcbot.metrics;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.TimeGauge;
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+
+/**
+ * 啟動時間的指標：從 JVM 啟動到 Discord gateway 就緒、到送出第一則回覆各花多久
+ * 尚未發生時為 NaN
+ *
+ * @author iiimabbie
+ */
+@Slf4j
+@Component
+public class StartupMetrics {
+
+  private final AtomicLong gatewayReadyMillis = new AtomicLong(-1);
+  private final AtomicLong firstReplyMillis = new AtomicLong(-1);
+
+  public StartupMetrics(MeterRegistry meterRegistry) {
+    TimeGauge.builder("dcbot.startup.gateway.ready", gatewayReadyMillis, TimeUnit.MILLISECONDS,
+            StartupMetrics::valueOrNaN)
+        .description("從 JVM 啟動到 Discord gateway 就緒的時間")
+        .register(meterRegistry);
+    TimeGauge.builder("dcbot.startup.first.reply", firstReplyMillis, TimeUnit.MILLISECONDS,
+            StartupMetrics::valueOrNaN)
+        .description("從 JVM 啟動到送出第一則回覆的時間")
+        .register(meterRegistry);
+  }
+
+  /**
+   * Discord gateway 就緒（只記錄第一次）
+   */
+  public void markGatewayReady() {
+    long uptime = ManagementFactory.getRuntimeMXBean().getUptime();
+    if (gatewayReadyMillis.compareAndSet(-1, uptime)) {
+      log.info("啟動後 {} ms Discord gateway 就緒", uptime);
+    }
+  }
+
+  /**
+   * 送出回覆（只記錄第一次）
+   */
+  public void markReply() {
+    if (firstReplyMillis.get() >= 0) {
+      return;
+    }
+    long uptime = ManagementFactory.getRuntimeMXBean().getUptime();
+    if (firstReplyMillis.compareAndSet(-1, uptime)) {
+      log.info("啟動後 {} ms 送出第一則回覆", uptime);
+    }
+  }
+
+  /**
+   * Discord gateway 就緒的時間（毫秒），尚未就緒時為 -1
+   */
+  public long getGatewayReadyMillis() {
+    return gatewayReadyMillis.get();
+  }
+
+  /**
+   * 第一則回覆的時間（毫秒），尚未回覆時為 -1
+   */
+  public long getFirstReplyMillis() {
+    return firstReplyMillis.get();
+  }
+
+  private static double valueOrNaN(AtomicLong millis) {
+    long value = millis.get();
+    return value < 0 ? Double.NaN : value;
+  }
+}
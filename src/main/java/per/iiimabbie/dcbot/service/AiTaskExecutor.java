@@ -0,0 +1,174 @@
+package per.iiimabbie.dcbot.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+import per.iiimabbie.dcbot.config.BotConfig;
+
+/**
+ * AI 處理專用執行器
+ * 以 virtual thread 執行，限制全域與單一伺服器的同時處理數量，等待佇列滿時直接拒絕
+ *
+ * @author iiimabbie
+ */
+@Slf4j
+@Service
+public class AiTaskExecutor {
+
+  private final BotConfig.AiExecutor config;
+  private final ExecutorService executor = Executors.newThreadPerTaskExecutor(
+      Thread.ofVirtual().name("ai-worker-", 0).factory());
+  private final Semaphore globalPermits;
+  // 只保留有工作在等待或處理中的範圍，最後一個工作結束時移除，私訊頻道再多也不會一直累積
+  private final Map<Long, ScopePermits> scopePermits = new ConcurrentHashMap<>();
+
+  private final AtomicInteger queued = new AtomicInteger();
+  private final AtomicInteger active = new AtomicInteger();
+  private final Timer waitTimer;
+  private final Counter rejectedCounter;
+
+  public AiTaskExecutor(BotConfig botConfig, MeterRegistry meterRegistry) {
+    this.config = botConfig.getAiExecutor();
+    this.globalPermits = new Semaphore(config.getGlobalConcurrency(), true);
+
+    meterRegistry.gauge("dcbot.ai.queue.depth", queued);
+    meterRegistry.gauge("dcbot.ai.active", active);
+    this.waitTimer = Timer.builder("dcbot.ai.queue.wait")
+        .description("AI 請求在佇列中等待的時間")
+        .register(meterRegistry);
+    this.rejectedCounter = Counter.builder("dcbot.ai.rejected")
+        .description("因佇列已滿而被拒絕的 AI 請求")
+        .register(meterRegistry);
+  }
+
+  /**
+   * 提交 AI 工作
+   * 許可會一直持有到 task 回傳的 CompletableFuture 結束
+   *
+   * @param scopeId 限流範圍：伺服器 ID，私訊則用頻道 ID
+   * @param task    實際工作
+   * @return 工作結果，佇列已滿時以 RejectedExecutionException 結束
+   */
+  public <T> CompletableFuture<T> submit(long scopeId, Supplier<CompletableFuture<T>> task) {
+    if (queued.incrementAndGet() > config.getQueueCapacity()) {
+      queued.decrementAndGet();
+      rejectedCounter.increment();
+      log.warn("AI 處理佇列已滿，拒絕請求 (scope: {})", scopeId);
+      return CompletableFuture.failedFuture(new RejectedExecutionException("AI 處理佇列已滿"));
+    }
+
+    long enqueuedAt = System.nanoTime();
+    CompletableFuture<T> result = new CompletableFuture<>();
+    executor.execute(() -> {
+      Semaphore scope = enterScope(scopeId);
+      try {
+        scope.acquire();
+        try {
+          globalPermits.acquire();
+        } catch (InterruptedException e) {
+          scope.release();
+          throw e;
+        }
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        leaveScope(scopeId);
+        queued.decrementAndGet();
+        result.completeExceptionally(new RejectedExecutionException("AI 處理已中斷", e));
+        return;
+      }
+
+      queued.decrementAndGet();
+      active.incrementAndGet();
+      waitTimer.record(System.nanoTime() - enqueuedAt, TimeUnit.NANOSECONDS);
+
+      CompletableFuture<T> future;
+      try {
+        future = task.get();
+      } catch (Throwable e) {
+        future = CompletableFuture.failedFuture(e);
+      }
+      future.whenComplete((value, error) -> {
+        active.decrementAndGet();
+        globalPermits.release();
+        scope.release();
+        leaveScope(scopeId);
+        if (error != null) {
+          result.completeExceptionally(error);
+        } else {
+          result.complete(value);
+        }
+      });
+    });
+    return result;
+  }
+
+  /**
+   * 取得範圍的許可，並登記一個使用中的工作
+   */
+  private Semaphore enterScope(long scopeId) {
+    return scopePermits.compute(scopeId, (id, scope) -> {
+      ScopePermits entry = scope != null ? scope : new ScopePermits(config.getPerGuildConcurrency());
+      entry.users++;
+      return entry;
+    }).permits;
+  }
+
+  /**
+   * 工作結束，範圍沒有其他工作時移除
+   */
+  private void leaveScope(long scopeId) {
+    scopePermits.computeIfPresent(scopeId, (id, scope) -> --scope.users == 0 ? null : scope);
+  }
+
+  /**
+   * 目前等待中的請求數
+   */
+  public int getQueueDepth() {
+    return queued.get();
+  }
+
+  /**
+   * 目前處理中的請求數
+   */
+  public int getActiveCount() {
+    return active.get();
+  }
+
+  /**
+   * 目前保留許可的範圍數
+   */
+  int getScopeCount() {
+    return scopePermits.size();
+  }
+
+  @PreDestroy
+  public void shutdown() {
+    executor.shutdownNow();
+  }
+
+  /**
+   * 單一範圍的許可和使用中的工作數（users 只在 map 的 compute 內修改）
+   */
+  private static final class ScopePermits {
+
+    private final Semaphore permits;
+    private int users;
+
+    private ScopePermits(int concurrency) {
+      this.permits = new Semaphore(concurrency, true);
+    }
+  }
+}
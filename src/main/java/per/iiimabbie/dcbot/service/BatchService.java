@@ -4,10 +4,13 @@ import java.util.Random;
 import lombok.extern.slf4j.Slf4j;
 import net.dv8tion.jda.api.JDA;
 import net.dv8tion.jda.api.entities.channel.concrete.TextChannel;
+import org.springframework.context.annotation.Profile;
 import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
 import per.iiimabbie.dcbot.config.BotConfig;
 
+// 負載測試改用本機替身，不連線 Discord
+@Profile("!loadtest")
 @Service
 @Slf4j
 public class BatchService {
@@ -71,6 +71,11 @@ public class ConfigValidationService {
       throw new ConfigurationException("Gemini API URL 未設定 (GEMINI_API_URL)");
     }
 
+    // cachedContents 的位址和模型名稱都由 url 推導，必須是 .../models/{模型}:generateContent 的形式
+    if (geminiConfig.getCache().isEnabled() && !geminiConfig.getApi().getUrl().contains("/models/")) {
+      throw new ConfigurationException("啟用 gemini.cache 時 Gemini API URL 必須包含 /models/{模型名稱}");
+    }
+
     // 檢查 API Key 格式 (Google API Key 通常以 AIza 開頭)
     if (!geminiConfig.getApi().getKey().startsWith("AIza")) {
       log.warn("Gemini API Key 格式可能不正確 (應以 AIza 開頭)");
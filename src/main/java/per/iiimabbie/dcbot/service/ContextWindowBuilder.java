@@ -0,0 +1,94 @@
+package per.iiimabbie.dcbot.service;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+import per.iiimabbie.dcbot.config.BotConfig;
+
+/**
+ * 上下文視窗組裝
+ * 在 token 預算內由新到舊放入歷史訊息，取代固定的訊息數量上限
+ *
+ * @author iiimabbie
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class ContextWindowBuilder {
+
+  private final BotConfig botConfig;
+  private final TokenEstimator tokenEstimator;
+
+  /**
+   * 組裝上下文視窗
+   *
+   * @param reservedTokens 固定前綴（system prompt、摘要等）已佔用的 token
+   * @param history        由舊到新的歷史訊息
+   * @param current        當前訊息（一定會放入）
+   * @return 放得下的歷史、當前訊息、被捨棄的較舊訊息和估算的總 token 數
+   */
+  public ContextWindow build(int reservedTokens, List<ConversationCache.Entry> history,
+      List<ConversationCache.Entry> current) {
+    BotConfig.Context config = botConfig.getContext();
+    // 啟用摘要時原始歷史只保留較小的預算，較舊的部分交給摘要
+    int budget = botConfig.getSummary().isEnabled()
+        ? Math.min(config.getTokenBudget(), botConfig.getSummary().getTokenBudget() + reservedTokens)
+        : config.getTokenBudget();
+    int used = reservedTokens;
+
+    List<ConversationCache.Entry> currentEntries = new ArrayList<>(current.size());
+    for (ConversationCache.Entry entry : current) {
+      ConversationCache.Entry fitted = fit(entry, config.getMaxMessageTokens());
+      used += tokenEstimator.estimate(fitted.text());
+      currentEntries.add(fitted);
+    }
+
+    // 由新到舊放入，直到預算用完
+    List<ConversationCache.Entry> included = new ArrayList<>();
+    int index = history.size() - 1;
+    for (; index >= 0; index--) {
+      ConversationCache.Entry fitted = fit(history.get(index), config.getMaxMessageTokens());
+      int tokens = tokenEstimator.estimate(fitted.text());
+      if (used + tokens > budget) {
+        break;
+      }
+      used += tokens;
+      included.add(fitted);
+    }
+    Collections.reverse(included);
+    List<ConversationCache.Entry> dropped = history.subList(0, index + 1);
+
+    if (!dropped.isEmpty()) {
+      log.debug("Token 預算 {} 已滿，捨棄 {} 則較舊的訊息", budget, dropped.size());
+    }
+    tokenEstimator.recordEstimate(used);
+    return new ContextWindow(included, currentEntries, List.copyOf(dropped), used);
+  }
+
+  /**
+   * 單則訊息超過上限時截斷
+   */
+  private ConversationCache.Entry fit(ConversationCache.Entry entry, int maxTokens) {
+    if (tokenEstimator.estimate(entry.text()) <= maxTokens) {
+      return entry;
+    }
+    return new ConversationCache.Entry(entry.messageId(), entry.role(),
+        tokenEstimator.truncate(entry.text(), maxTokens));
+  }
+
+  /**
+   * 組裝結果
+   *
+   * @param history         放得下的歷史訊息（由舊到新）
+   * @param current         當前訊息
+   * @param dropped         因預算不足被捨棄的較舊訊息（由舊到新）
+   * @param estimatedTokens 估算的輸入 token 總數
+   */
+  public record ContextWindow(List<ConversationCache.Entry> history, List<ConversationCache.Entry> current,
+      List<ConversationCache.Entry> dropped, int estimatedTokens) {
+
+  }
+}
@@ -0,0 +1,281 @@
+package per.iiimabbie.dcbot.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
+import lombok.extern.slf4j.Slf4j;
+import net.dv8tion.jda.api.entities.Message;
+import net.dv8tion.jda.api.entities.channel.middleman.MessageChannel;
+import org.springframework.stereotype.Service;
+import per.iiimabbie.dcbot.config.BotConfig;
+import per.iiimabbie.dcbot.metrics.PipelineMetrics;
+
+/**
+ * 對話歷史快取
+ * 以頻道為單位保存已清理過的歷史訊息，只在冷啟動時才透過 REST 回補
+ *
+ * @author iiimabbie
+ */
+@Slf4j
+@Service
+public class ConversationCache {
+
+  private final BotConfig botConfig;
+  private final Map<Long, ChannelHistory> channels;
+  private final PipelineMetrics pipelineMetrics;
+
+  private final Counter hitCounter;
+  private final Counter missCounter;
+  private final Counter evictionCounter;
+
+  public ConversationCache(BotConfig botConfig, MeterRegistry meterRegistry, PipelineMetrics pipelineMetrics) {
+    this.botConfig = botConfig;
+    this.pipelineMetrics = pipelineMetrics;
+    this.hitCounter = Counter.builder("dcbot.history.cache")
+        .tag("result", "hit")
+        .description("對話歷史快取命中次數")
+        .register(meterRegistry);
+    this.missCounter = Counter.builder("dcbot.history.cache")
+        .tag("result", "miss")
+        .description("對話歷史快取未命中次數")
+        .register(meterRegistry);
+    this.evictionCounter = Counter.builder("dcbot.history.cache.evictions")
+        .description("因頻道數量超過上限而被淘汰的頻道快取")
+        .register(meterRegistry);
+
+    int maxChannels = botConfig.getHistory().getMaxChannels();
+    // access-order 的 LinkedHashMap 作為頻道層級的 LRU
+    this.channels = Collections.synchronizedMap(new LinkedHashMap<>(16, 0.75f, true) {
+      @Override
+      protected boolean removeEldestEntry(Map.Entry<Long, ChannelHistory> eldest) {
+        if (size() > maxChannels) {
+          evictionCounter.increment();
+          return true;
+        }
+        return false;
+      }
+    });
+    meterRegistry.gauge("dcbot.history.cache.channels", channels, Map::size);
+  }
+
+  /**
+   * 取得當前訊息之前的歷史（由舊到新）
+   * 快取命中時直接回傳，未命中時透過 REST 回補並建立頻道快取
+   *
+   * @param channel        Discord 頻道
+   * @param currentMessage 當前訊息
+   * @return 已清理的歷史訊息
+   */
+  public List<Entry> getHistoryBefore(MessageChannel channel, Message currentMessage) {
+    long channelId = channel.getIdLong();
+    ChannelHistory history = channels.get(channelId);
+    if (history != null) {
+      hitCounter.increment();
+      pipelineMetrics.recordCacheLookup(PipelineMetrics.Cache.HISTORY, true);
+      // 其他請求正在回補時等它完成，不回傳不完整的歷史
+      history.awaitBackfill();
+      return history.before(currentMessage.getIdLong());
+    }
+
+    missCounter.increment();
+    pipelineMetrics.recordCacheLookup(PipelineMetrics.Cache.HISTORY, false);
+    log.debug("頻道 {} 的對話歷史未快取，從 Discord 回補", channel.getName());
+
+    // 先登記回補中的歷史，REST 期間 gateway 事件照樣寫入，同時間的其他請求等待這次回補
+    int capacity = botConfig.getHistory().getCapacity();
+    ChannelHistory created = new ChannelHistory(capacity, true);
+    history = channels.putIfAbsent(channelId, created);
+    if (history != null) {
+      history.awaitBackfill();
+      history.put(Entry.from(currentMessage));
+      return history.before(currentMessage.getIdLong());
+    }
+
+    try {
+      List<Message> messages = channel.getHistoryBefore(currentMessage, capacity)
+          .complete()
+          .getRetrievedHistory();
+      for (Message msg : messages) {
+        created.backfill(Entry.from(msg));
+      }
+      // 在結束回補前放入，等待中的請求才看得到這則訊息
+      created.put(Entry.from(currentMessage));
+    } catch (RuntimeException e) {
+      // 回補失敗時移除，下次請求重新回補
+      channels.remove(channelId, created);
+      throw e;
+    } finally {
+      created.finishBackfill();
+    }
+    return created.before(currentMessage.getIdLong());
+  }
+
+  /**
+   * 為頻道建立空的歷史快取，之後的訊息直接由 gateway 事件累積，不再回補
+   */
+  public void prime(long channelId) {
+    channels.computeIfAbsent(channelId, id -> new ChannelHistory(botConfig.getHistory().getCapacity(), false));
+  }
+
+  /**
+   * 新訊息進入時更新快取（僅限已快取的頻道）
+   */
+  public void record(Message message) {
+    ChannelHistory history = channels.get(message.getChannel().getIdLong());
+    if (history != null) {
+      history.put(Entry.from(message));
+    }
+  }
+
+  /**
+   * 訊息被編輯時更新快取
+   */
+  public void update(Message message) {
+    ChannelHistory history = channels.get(message.getChannel().getIdLong());
+    if (history == null) {
+      return;
+    }
+    Entry entry = Entry.from(message);
+    if (entry == null) {
+      // 編輯後變成空訊息，從歷史中移除
+      history.remove(message.getIdLong());
+    } else {
+      history.replace(entry);
+    }
+  }
+
+  /**
+   * 訊息被刪除時移除快取
+   */
+  public void remove(long channelId, long messageId) {
+    ChannelHistory history = channels.get(channelId);
+    if (history != null) {
+      history.remove(messageId);
+    }
+  }
+
+  /**
+   * 批次刪除訊息時移除快取
+   */
+  public void removeAll(long channelId, Collection<String> messageIds) {
+    ChannelHistory history = channels.get(channelId);
+    if (history != null) {
+      messageIds.forEach(id -> history.remove(Long.parseLong(id)));
+    }
+  }
+
+  /**
+   * 已清理過的歷史訊息
+   *
+   * @param messageId 訊息 ID（snowflake，可直接用來排序）
+   * @param role      "user" 或 "model"
+   * @param text      清理後的內容
+   */
+  public record Entry(long messageId, String role, String text) {
+
+    /**
+     * 由 Discord 訊息建立歷史項目
+     * 系統訊息和空訊息回傳 null
+     */
+    public static Entry from(Message message) {
+      if (message.getAuthor().isSystem() || message.getContentRaw().trim().isEmpty()) {
+        return null;
+      }
+
+      String content = message.getContentDisplay();
+      if (content.isEmpty()) {
+        return null;
+      }
+
+      // 加上用戶名稱前綴（讓 AI 知道是誰說的）
+      boolean isBot = message.getAuthor().isBot();
+      if (!isBot) {
+        content = message.getAuthor().getName() + ": " + content;
+      }
+
+      // 判斷是機器人還是用戶
+      return new Entry(message.getIdLong(), isBot ? "model" : "user", content);
+    }
+  }
+
+  /**
+   * 單一頻道的有界歷史視窗
+   * 以 snowflake 排序，超過容量時丟棄最舊的訊息
+   */
+  private static class ChannelHistory {
+
+    private final int capacity;
+    private final TreeMap<Long, Entry> entries = new TreeMap<>();
+    // 回補完成時結束；回補期間被刪除的訊息記在 deleted，避免 REST 結果把它加回來
+    private final CompletableFuture<Void> backfilled;
+    private final Set<Long> deleted = new HashSet<>();
+
+    ChannelHistory(int capacity, boolean backfilling) {
+      this.capacity = capacity;
+      this.backfilled = backfilling ? new CompletableFuture<>() : CompletableFuture.completedFuture(null);
+    }
+
+    synchronized void put(Entry entry) {
+      if (entry == null) {
+        return;
+      }
+      entries.put(entry.messageId(), entry);
+      trim();
+    }
+
+    /**
+     * 放入 REST 取回的訊息，gateway 事件已寫入（可能是較新的編輯）或已刪除的訊息不覆蓋
+     */
+    synchronized void backfill(Entry entry) {
+      if (entry == null || deleted.contains(entry.messageId())) {
+        return;
+      }
+      entries.putIfAbsent(entry.messageId(), entry);
+      trim();
+    }
+
+    synchronized void finishBackfill() {
+      deleted.clear();
+      backfilled.complete(null);
+    }
+
+    void awaitBackfill() {
+      backfilled.join();
+    }
+
+    synchronized void replace(Entry entry) {
+      // 只更新視窗範圍內的訊息，太舊的編輯直接忽略；回補中還不知道視窗範圍，一律放入
+      if (!backfilled.isDone()
+          || entries.containsKey(entry.messageId())
+          || (!entries.isEmpty() && entry.messageId() > entries.firstKey())) {
+        put(entry);
+      }
+    }
+
+    synchronized void remove(long messageId) {
+      entries.remove(messageId);
+      if (!backfilled.isDone()) {
+        deleted.add(messageId);
+      }
+    }
+
+    synchronized List<Entry> before(long messageId) {
+      return new ArrayList<>(entries.headMap(messageId, false).values());
+    }
+
+    private void trim() {
+      while (entries.size() > capacity) {
+        entries.pollFirstEntry();
+      }
+    }
+  }
+}
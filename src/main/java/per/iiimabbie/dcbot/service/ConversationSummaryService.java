@@ -0,0 +1,171 @@
+package per.iiimabbie.dcbot.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+import per.iiimabbie.dcbot.client.GeminiDispatcher;
+import per.iiimabbie.dcbot.config.BotConfig;
+import per.iiimabbie.dcbot.dto.gemini.GeminiRequest;
+
+/**
+ * 對話滾動摘要
+ * 把超出上下文視窗的舊訊息在背景整理成每個頻道一份的摘要，之後以摘要取代原始訊息
+ *
+ * @author iiimabbie
+ */
+@Slf4j
+@Service
+public class ConversationSummaryService {
+
+  private final BotConfig.Summary config;
+  private final GeminiDispatcher geminiDispatcher;
+  private final Map<Long, ChannelSummary> summaries;
+  private final ExecutorService executor = Executors.newThreadPerTaskExecutor(
+      Thread.ofVirtual().name("summarizer-", 0).factory());
+  private final ObjectMapper objectMapper = new ObjectMapper();
+
+  private final Counter updateCounter;
+  private final Counter failureCounter;
+
+  public ConversationSummaryService(BotConfig botConfig, GeminiDispatcher geminiDispatcher,
+      MeterRegistry meterRegistry) {
+    this.config = botConfig.getSummary();
+    this.geminiDispatcher = geminiDispatcher;
+    int maxChannels = config.getMaxChannels();
+    this.summaries = Collections.synchronizedMap(new LinkedHashMap<>(16, 0.75f, true) {
+      @Override
+      protected boolean removeEldestEntry(Map.Entry<Long, ChannelSummary> eldest) {
+        return size() > maxChannels;
+      }
+    });
+    this.updateCounter = Counter.builder("dcbot.summary.updates")
+        .description("對話摘要更新次數")
+        .register(meterRegistry);
+    this.failureCounter = Counter.builder("dcbot.summary.failures")
+        .description("對話摘要更新失敗次數")
+        .register(meterRegistry);
+  }
+
+  /**
+   * 是否啟用摘要
+   */
+  public boolean isEnabled() {
+    return config.isEnabled();
+  }
+
+  /**
+   * 取得頻道目前的摘要
+   *
+   * @return 摘要內容，尚未產生時回傳 null
+   */
+  public String getSummary(long channelId) {
+    ChannelSummary summary = summaries.get(channelId);
+    return summary == null ? null : summary.text;
+  }
+
+  /**
+   * 提供被擠出視窗的舊訊息，累積足夠時在背景更新摘要
+   *
+   * @param channelId 頻道 ID
+   * @param dropped   被捨棄的訊息（由舊到新）
+   */
+  public void offer(long channelId, List<ConversationCache.Entry> dropped) {
+    if (!config.isEnabled() || dropped.isEmpty()) {
+      return;
+    }
+
+    ChannelSummary summary = summaries.computeIfAbsent(channelId, id -> new ChannelSummary());
+    List<ConversationCache.Entry> pending;
+    String previous;
+    synchronized (summary) {
+      if (summary.updating) {
+        return;
+      }
+      long covered = summary.coveredUpTo;
+      pending = dropped.stream().filter(entry -> entry.messageId() > covered).toList();
+      if (pending.size() < config.getMinBatch()) {
+        return;
+      }
+      summary.updating = true;
+      previous = summary.text;
+    }
+
+    executor.execute(() -> summarize(channelId, summary, previous, pending));
+  }
+
+  private void summarize(long channelId, ChannelSummary summary, String previous,
+      List<ConversationCache.Entry> pending) {
+    try {
+      byte[] body = objectMapper.writeValueAsBytes(buildRequest(previous, pending));
+      String text = geminiDispatcher.generateContent(body).join().getFirstCandidateText();
+      if (text == null || text.isBlank()) {
+        throw new IllegalStateException("摘要回應為空");
+      }
+
+      synchronized (summary) {
+        summary.text = text.trim();
+        summary.coveredUpTo = pending.getLast().messageId();
+      }
+      updateCounter.increment();
+      log.debug("已更新頻道 {} 的對話摘要，新增 {} 則訊息", channelId, pending.size());
+    } catch (Exception e) {
+      failureCounter.increment();
+      log.warn("更新頻道 {} 的對話摘要失敗: {}", channelId, e.getMessage());
+    } finally {
+      synchronized (summary) {
+        summary.updating = false;
+      }
+    }
+  }
+
+  private GeminiRequest buildRequest(String previous, List<ConversationCache.Entry> pending) {
+    StringBuilder prompt = new StringBuilder()
+        .append("請將以下 Discord 對話整理成精簡的摘要，保留人物、主題、結論和尚未解決的問題，")
+        .append("使用繁體中文條列，不要超過 300 字。\n\n");
+    if (previous != null) {
+      prompt.append("目前的摘要：\n").append(previous).append("\n\n");
+    }
+    prompt.append("新的對話：\n");
+    for (ConversationCache.Entry entry : pending) {
+      prompt.append(entry.role().equals("model") ? "機器人: " : "").append(entry.text()).append('\n');
+    }
+
+    return GeminiRequest.builder()
+        .contents(List.of(GeminiRequest.Content.builder()
+            .role("user")
+            .parts(List.of(GeminiRequest.Part.builder()
+                .text(prompt.toString())
+                .build()))
+            .build()))
+        .generationConfig(GeminiRequest.GenerationConfig.builder()
+            .temperature(0.2)
+            .maxOutputTokens(config.getMaxOutputTokens())
+            .build())
+        .build();
+  }
+
+  @PreDestroy
+  public void shutdown() {
+    executor.shutdownNow();
+  }
+
+  /**
+   * 單一頻道的摘要狀態，由自身 monitor 保護
+   */
+  private static class ChannelSummary {
+
+    private String text;
+    // 已摘要到的最新訊息 ID
+    private long coveredUpTo;
+    private boolean updating;
+  }
+}
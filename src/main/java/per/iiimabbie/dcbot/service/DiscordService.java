@@ -1,7 +1,7 @@
 package per.iiimabbie.dcbot.service;
 
-import jakarta.annotation.PostConstruct;
 import jakarta.annotation.PreDestroy;
+import java.util.concurrent.CompletableFuture;
 import lombok.Getter;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
@@ -10,6 +10,9 @@ import net.dv8tion.jda.api.JDABuilder;
 import net.dv8tion.jda.api.OnlineStatus;
 import net.dv8tion.jda.api.entities.Activity;
 import net.dv8tion.jda.api.requests.GatewayIntent;
+import org.springframework.boot.context.event.ApplicationStartedEvent;
+import org.springframework.context.annotation.Profile;
+import org.springframework.context.event.EventListener;
 import org.springframework.stereotype.Service;
 import per.iiimabbie.dcbot.command.impl.CommandsCommand;
 import per.iiimabbie.dcbot.command.impl.HelpCommand;
@@ -17,33 +20,42 @@ import per.iiimabbie.dcbot.command.impl.PingCommand;
 import per.iiimabbie.dcbot.command.impl.StatusCommand;
 import per.iiimabbie.dcbot.config.BotConfig;
 import per.iiimabbie.dcbot.config.DiscordConfig;
-import per.iiimabbie.dcbot.listener.ButtonInteractionListener;
-import per.iiimabbie.dcbot.listener.DiceRollListener;
-import per.iiimabbie.dcbot.listener.MessageListener;
-import per.iiimabbie.dcbot.listener.SlashCommandListener;
+import per.iiimabbie.dcbot.listener.EventRouter;
+import per.iiimabbie.dcbot.metrics.StartupMetrics;
 
 @Slf4j
+// 負載測試改用本機替身，不連線 Discord
+@Profile("!loadtest")
 @Service
 @RequiredArgsConstructor
 public class DiscordService {
 
   private final DiscordConfig discordConfig;
   private final BotConfig botConfig;
-  private final MessageListener messageListener;
-  private final SlashCommandListener slashCommandListener;
-  private final ButtonInteractionListener buttonInteractionListener;
-  private final DiceRollListener diceRollListener;
+  private final EventRouter eventRouter;
   private final EmojiManager emojiManager;
   private final CommandManager commandManager;
   private final HelpCommand helpCommand;
   private final CommandsCommand commandsCommand;
   private final PingCommand pingCommand;
   private final StatusCommand statusCommand;
+  private final StartupMetrics startupMetrics;
   @Getter
-  private JDA jda;
+  private volatile JDA jda;
+  // gateway 就緒、emoji 與指令都載入後完成；登入失敗時以例外完成
+  @Getter
+  private final CompletableFuture<JDA> ready = new CompletableFuture<>();
 
-  @PostConstruct
+  /**
+   * context 啟動後在背景登入 Discord，不阻塞啟動，就緒狀態由 DiscordHealthIndicator 回報
+   * faststart 的 AppCDS 訓練在 refresh 完成時就結束，不會走到這裡去連線
+   */
+  @EventListener(ApplicationStartedEvent.class)
   public void init() {
+    Thread.ofVirtual().name("discord-login").start(this::login);
+  }
+
+  private void login() {
     try {
       log.info("正在初始化 Discord 機器人...");
 
@@ -55,16 +67,13 @@ public class DiscordService {
               GatewayIntent.MESSAGE_CONTENT,
               GatewayIntent.GUILD_MEMBERS
           )
-          .addEventListeners(
-              messageListener,
-              slashCommandListener,
-              buttonInteractionListener,
-              diceRollListener
-          )
+          // 所有事件由 EventRouter 分類後交給各處理器
+          .addEventListeners(eventRouter)
           .build();
 
       jda.awaitReady();
-      
+      startupMetrics.markGatewayReady();
+
       // 初始化 emoji 管理器
       emojiManager.initialize(jda);
 
@@ -72,9 +81,11 @@ public class DiscordService {
       registerCommands();
 
       log.info("Discord 機器人已啟動成功！");
+      ready.complete(jda);
 
     } catch (Exception e) {
       log.error("Discord 機器人初始化失敗", e);
+      ready.completeExceptionally(e);
     }
   }
 
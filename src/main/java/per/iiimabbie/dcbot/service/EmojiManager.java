@@ -1,5 +1,6 @@
 package per.iiimabbie.dcbot.service;
 
+import java.util.Collection;
 import java.util.HashSet;
 import java.util.Map;
 import java.util.Optional;
@@ -41,18 +42,23 @@ public class EmojiManager {
 
     log.info("開始載入 Application Emoji 快取...");
 
-    jda.retrieveApplicationEmojis().queue(emojis -> {
-      emojiCache.clear();
-      emojis.forEach(emoji -> emojiCache.put(emoji.getName(), emoji));
-
-      log.info("載入了 {} 個 Application Emoji", emojis.size());
-      emojis.forEach(emoji ->
-          log.debug("Emoji: {} -> {}", emoji.getName(), emoji.getFormatted()));
-    }, throwable -> {
+    jda.retrieveApplicationEmojis().queue(this::replaceCache, throwable -> {
       log.error("載入 emoji 快取失敗", throwable);
     });
   }
 
+  /**
+   * 以新的 emoji 清單取代快取
+   */
+  public void replaceCache(Collection<? extends ApplicationEmoji> emojis) {
+    emojiCache.clear();
+    emojis.forEach(emoji -> emojiCache.put(emoji.getName(), emoji));
+
+    log.info("載入了 {} 個 Application Emoji", emojis.size());
+    emojis.forEach(emoji ->
+        log.debug("Emoji: {} -> {}", emoji.getName(), emoji.getFormatted()));
+  }
+
   /**
    * 取得 emoji 物件
    */
@@ -0,0 +1,211 @@
+package per.iiimabbie.dcbot.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import java.time.Instant;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.TimeUnit;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.http.HttpEntity;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.MediaType;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.web.client.HttpClientErrorException;
+import org.springframework.web.client.RestTemplate;
+import per.iiimabbie.dcbot.config.BotConfig;
+import per.iiimabbie.dcbot.config.GeminiConfig;
+import per.iiimabbie.dcbot.dto.gemini.CachedContent;
+import per.iiimabbie.dcbot.dto.gemini.GeminiRequest;
+import per.iiimabbie.dcbot.exception.GeminiApiException;
+
+/**
+ * system prompt 的 Gemini cachedContents 管理
+ * 啟動和 prompt 變更時建立快取，快到期時延長 TTL；快取不可用時請求自動改回內嵌 system prompt
+ *
+ * @author iiimabbie
+ */
+@Slf4j
+@Service
+public class GeminiContextCacheService {
+
+  private final GeminiConfig geminiConfig;
+  private final BotConfig botConfig;
+  private final GeminiRequestTemplate geminiRequestTemplate;
+  private final RestTemplate restTemplate;
+
+  private final Counter createCounter;
+  private final Counter failureCounter;
+  private final Counter fallbackCounter;
+
+  // 目前的快取，只在排程執行緒和 invalidate 中修改
+  private volatile Handle handle;
+  private volatile Instant nextAttempt = Instant.MIN;
+
+  public GeminiContextCacheService(GeminiConfig geminiConfig, BotConfig botConfig,
+      GeminiRequestTemplate geminiRequestTemplate,
+      @Qualifier("defaultRestTemplate") RestTemplate restTemplate, MeterRegistry meterRegistry) {
+    this.geminiConfig = geminiConfig;
+    this.botConfig = botConfig;
+    this.geminiRequestTemplate = geminiRequestTemplate;
+    this.restTemplate = restTemplate;
+    this.createCounter = Counter.builder("dcbot.gemini.context.cache.creates")
+        .description("建立 system prompt 快取的次數")
+        .register(meterRegistry);
+    this.failureCounter = Counter.builder("dcbot.gemini.context.cache.failures")
+        .description("建立或延長 system prompt 快取失敗的次數")
+        .register(meterRegistry);
+    this.fallbackCounter = Counter.builder("dcbot.gemini.context.cache.fallbacks")
+        .description("快取失效改用內嵌 system prompt 重送的次數")
+        .register(meterRegistry);
+  }
+
+  /**
+   * 定期檢查快取：不存在或 prompt 變更時建立，快到期時延長
+   */
+  @Scheduled(initialDelay = 0, fixedDelay = 1, timeUnit = TimeUnit.MINUTES)
+  public synchronized void maintain() {
+    if (!geminiConfig.getCache().isEnabled()) {
+      return;
+    }
+
+    String systemPrompt = botConfig.getSystemPrompt();
+    String botName = botConfig.getName();
+    Handle current = handle;
+    try {
+      if (current == null || !current.matches(systemPrompt, botName) || current.isExpired()) {
+        if (Instant.now().isBefore(nextAttempt)) {
+          return;
+        }
+        create(systemPrompt, botName);
+        if (current != null) {
+          delete(current.name());
+        }
+      } else if (Instant.now().plus(geminiConfig.getCache().getRefreshMargin()).isAfter(current.expireTime())) {
+        refresh(current);
+      }
+    } catch (Exception e) {
+      failureCounter.increment();
+      nextAttempt = Instant.now().plus(geminiConfig.getCache().getRetryDelay());
+      log.warn("維護 system prompt 快取失敗，暫時使用內嵌模式: {}", e.getMessage());
+    }
+  }
+
+  /**
+   * 判斷請求失敗是否因為引用的快取已不存在或過期
+   */
+  public boolean isCacheMiss(Throwable e) {
+    Throwable cause = e instanceof CompletionException && e.getCause() != null ? e.getCause() : e;
+    if (!(cause instanceof GeminiApiException apiException)) {
+      return false;
+    }
+    int status = apiException.getStatusCode();
+    String body = apiException.getResponseBody();
+    return status == 403 || status == 404
+        || (status == 400 && body != null && body.toLowerCase().contains("cached"));
+  }
+
+  /**
+   * 快取已失效，之後的請求改用內嵌模式，下次排程時重新建立
+   */
+  public void invalidate(String name) {
+    fallbackCounter.increment();
+    geminiRequestTemplate.clearCachedContent(name);
+    Handle current = handle;
+    if (current != null && current.name().equals(name)) {
+      handle = null;
+    }
+    log.warn("system prompt 快取 {} 已失效，改用內嵌模式", name);
+  }
+
+  private void create(String systemPrompt, String botName) {
+    List<GeminiRequest.Content> prefix = geminiRequestTemplate.buildPromptPrefix();
+    CachedContent request = CachedContent.builder()
+        .model(geminiConfig.getApi().resolveModel())
+        .contents(prefix)
+        .ttl(ttl())
+        .build();
+
+    String url = geminiConfig.getApi().resolveBaseUrl() + "/cachedContents?key=" + geminiConfig.getApi().getKey();
+    CachedContent created = exchange(url, HttpMethod.POST, request);
+    Instant expireTime = Instant.parse(created.getExpireTime());
+
+    handle = new Handle(created.getName(), systemPrompt, botName, expireTime);
+    geminiRequestTemplate.useCachedContent(created.getName(), expireTime, systemPrompt, botName);
+    createCounter.increment();
+    log.info("已建立 system prompt 快取 {}，{} tokens，到期時間 {}", created.getName(),
+        created.getUsageMetadata() == null ? "?" : created.getUsageMetadata().getTotalTokenCount(), expireTime);
+  }
+
+  private void refresh(Handle current) {
+    String url = geminiConfig.getApi().resolveBaseUrl() + "/" + current.name()
+        + "?updateMask=ttl&key=" + geminiConfig.getApi().getKey();
+    CachedContent updated;
+    try {
+      updated = exchange(url, HttpMethod.PATCH, CachedContent.builder().ttl(ttl()).build());
+    } catch (HttpClientErrorException.NotFound e) {
+      // 已經被刪除或過期，下次排程重新建立
+      invalidate(current.name());
+      return;
+    }
+
+    Instant expireTime = Instant.parse(updated.getExpireTime());
+    handle = new Handle(current.name(), current.systemPrompt(), current.botName(), expireTime);
+    geminiRequestTemplate.useCachedContent(current.name(), expireTime, current.systemPrompt(), current.botName());
+    log.debug("已延長 system prompt 快取 {} 到 {}", current.name(), expireTime);
+  }
+
+  private void delete(String name) {
+    try {
+      restTemplate.delete(geminiConfig.getApi().resolveBaseUrl() + "/" + name
+          + "?key=" + geminiConfig.getApi().getKey());
+    } catch (Exception e) {
+      log.debug("刪除舊的 system prompt 快取 {} 失敗: {}", name, e.getMessage());
+    }
+  }
+
+  private CachedContent exchange(String url, HttpMethod method, CachedContent body) {
+    HttpHeaders headers = new HttpHeaders();
+    headers.setContentType(MediaType.APPLICATION_JSON);
+    CachedContent response = restTemplate.exchange(url, method, new HttpEntity<>(body, headers),
+        CachedContent.class).getBody();
+    if (response == null || response.getName() == null || response.getExpireTime() == null) {
+      throw new IllegalStateException("cachedContents 回應缺少 name 或 expireTime");
+    }
+    return response;
+  }
+
+  private String ttl() {
+    return geminiConfig.getCache().getTtl().toSeconds() + "s";
+  }
+
+  /**
+   * 關閉時刪除快取，避免繼續計費
+   */
+  @PreDestroy
+  public void shutdown() {
+    Handle current = handle;
+    if (current != null) {
+      delete(current.name());
+    }
+  }
+
+  /**
+   * 已建立的快取
+   */
+  private record Handle(String name, String systemPrompt, String botName, Instant expireTime) {
+
+    boolean matches(String systemPrompt, String botName) {
+      return Objects.equals(this.systemPrompt, systemPrompt) && Objects.equals(this.botName, botName);
+    }
+
+    boolean isExpired() {
+      return !Instant.now().isBefore(expireTime);
+    }
+  }
+}
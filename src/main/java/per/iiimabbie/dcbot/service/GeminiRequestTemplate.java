@@ -0,0 +1,335 @@
+package per.iiimabbie.dcbot.service;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+import per.iiimabbie.dcbot.config.BotConfig;
+import per.iiimabbie.dcbot.dto.gemini.GeminiRequest;
+
+/**
+ * Gemini 請求骨架
+ * system prompt、model 確認、生成配置和安全設定只在啟動或設定變更時序列化一次，
+ * 每次請求只需要把變動的對話內容接在預先序列化好的前後綴之間。
+ * 啟用 cachedContents 時，前綴改為引用快取名稱，不再每次送出 system prompt
+ *
+ * @author iiimabbie
+ */
+@Slf4j
+@Component
+public class GeminiRequestTemplate {
+
+  private static final byte[] CONTENTS_START = "{\"contents\":[".getBytes(StandardCharsets.UTF_8);
+  private static final byte[] CACHED_CONTENT_START = "{\"cachedContent\":".getBytes(StandardCharsets.UTF_8);
+  private static final byte[] CACHED_CONTENTS_START = ",\"contents\":[".getBytes(StandardCharsets.UTF_8);
+  private static final byte[] CONTENTS_END = "],".getBytes(StandardCharsets.UTF_8);
+
+  private final BotConfig botConfig;
+  private final TokenEstimator tokenEstimator;
+  private final ObjectMapper objectMapper = new ObjectMapper();
+
+  private volatile Skeleton skeleton;
+  private volatile Skeleton cachedSkeleton;
+
+  public GeminiRequestTemplate(BotConfig botConfig, TokenEstimator tokenEstimator) {
+    this.botConfig = botConfig;
+    this.tokenEstimator = tokenEstimator;
+  }
+
+  /**
+   * 取得目前的骨架
+   * 有可用的 cachedContents 時引用快取，否則內嵌 system prompt；設定變更時自動重建
+   */
+  public Skeleton current() {
+    Skeleton cached = cachedSkeleton;
+    if (cached != null && matchesConfig(cached) && cached.isUsable()) {
+      return cached;
+    }
+    return inline();
+  }
+
+  /**
+   * 取得內嵌 system prompt 的骨架（不使用快取）
+   */
+  public Skeleton inline() {
+    Skeleton current = skeleton;
+    if (current == null || !matchesConfig(current)) {
+      current = rebuild();
+    }
+    return current;
+  }
+
+  /**
+   * 重新建立內嵌骨架
+   */
+  public synchronized Skeleton rebuild() {
+    String systemPrompt = botConfig.getSystemPrompt();
+    String botName = botConfig.getName();
+    List<GeminiRequest.Content> prefix = buildPromptPrefix(systemPrompt, botName);
+
+    try {
+      ByteArrayOutputStream head = new ByteArrayOutputStream();
+      head.write(CONTENTS_START);
+      for (int i = 0; i < prefix.size(); i++) {
+        if (i > 0) {
+          head.write(',');
+        }
+        objectMapper.writeValue(head, prefix.get(i));
+      }
+
+      Skeleton built = new Skeleton(systemPrompt, botName, null, null, head.toByteArray(), true,
+          buildTail(), estimatePrefixTokens(prefix));
+      skeleton = built;
+      log.info("已建立 Gemini 請求骨架，前綴 {} bytes，估算 {} tokens", built.head.length, built.prefixTokens);
+      return built;
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+  }
+
+  /**
+   * 改為引用已建立的 cachedContents
+   *
+   * @param name         快取名稱，例如 cachedContents/abc123
+   * @param expireTime   快取到期時間
+   * @param systemPrompt 建立快取時的 system prompt，與目前設定不同時不會使用
+   * @param botName      建立快取時的機器人名稱
+   */
+  public synchronized void useCachedContent(String name, Instant expireTime, String systemPrompt,
+      String botName) {
+    try {
+      ByteArrayOutputStream head = new ByteArrayOutputStream();
+      head.write(CACHED_CONTENT_START);
+      head.write(objectMapper.writeValueAsBytes(name));
+      head.write(CACHED_CONTENTS_START);
+
+      // 快取內容仍佔用上下文視窗，token 預算照樣保留
+      int prefixTokens = estimatePrefixTokens(buildPromptPrefix(systemPrompt, botName));
+      cachedSkeleton = new Skeleton(systemPrompt, botName, name, expireTime, head.toByteArray(), false,
+          buildTail(), prefixTokens);
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+  }
+
+  /**
+   * 停止引用指定的 cachedContents，之後的請求改回內嵌 system prompt
+   */
+  public synchronized void clearCachedContent(String name) {
+    Skeleton cached = cachedSkeleton;
+    if (cached != null && cached.cachedContent.equals(name)) {
+      cachedSkeleton = null;
+    }
+  }
+
+  /**
+   * 依目前設定建立固定前綴，供建立 cachedContents 使用
+   */
+  public List<GeminiRequest.Content> buildPromptPrefix() {
+    return buildPromptPrefix(botConfig.getSystemPrompt(), botConfig.getName());
+  }
+
+  private boolean matchesConfig(Skeleton skeleton) {
+    return Objects.equals(skeleton.systemPrompt, botConfig.getSystemPrompt())
+        && Objects.equals(skeleton.botName, botConfig.getName());
+  }
+
+  /**
+   * 用完整請求序列化後去掉 contents 的部分，確保欄位與 DTO 一致
+   */
+  private byte[] buildTail() throws IOException {
+    GeminiRequest tailRequest = GeminiRequest.builder()
+        .generationConfig(buildGenerationConfig())
+        .safetySettings(buildSafetySettings())
+        .build();
+    String tailJson = objectMapper.writeValueAsString(tailRequest);
+    return tailJson.substring(tailJson.indexOf(",\"") + 1).getBytes(StandardCharsets.UTF_8);
+  }
+
+  private int estimatePrefixTokens(List<GeminiRequest.Content> prefix) {
+    int prefixTokens = 0;
+    for (GeminiRequest.Content content : prefix) {
+      prefixTokens += tokenEstimator.estimate(content.getParts().getFirst().getText());
+    }
+    return prefixTokens;
+  }
+
+  /**
+   * 建立固定前綴
+   * system prompt + model 確認
+   */
+  private List<GeminiRequest.Content> buildPromptPrefix(String systemPrompt, String botName) {
+    List<GeminiRequest.Content> contents = new ArrayList<>();
+
+    // 先加入 system prompt（固定在第一位）
+    if (systemPrompt != null && !systemPrompt.trim().isEmpty()) {
+      contents.add(GeminiRequest.Content.builder()
+          .role("user")
+          .parts(List.of(GeminiRequest.Part.builder()
+              .text("System: " + systemPrompt)
+              .build()))
+          .build());
+    }
+
+    // Model 確認回應 (model 角色)
+    contents.add(GeminiRequest.Content.builder()
+        .role("model")
+        .parts(List.of(GeminiRequest.Part.builder()
+            .text("好的，我是" + botName + "，我會按照指示與用戶互動。")
+            .build()))
+        .build());
+    return contents;
+  }
+
+  /**
+   * 建立生成配置
+   */
+  private GeminiRequest.GenerationConfig buildGenerationConfig() {
+    return GeminiRequest.GenerationConfig.builder()
+        .temperature(0.7)  // 創意程度
+        .topK(40)         // Top-K 採樣
+        .topP(0.95)       // Top-P 採樣
+        .maxOutputTokens(2048)  // 最大輸出長度
+        .build();
+  }
+
+  /**
+   * 建立安全設定
+   */
+  private List<GeminiRequest.SafetySetting> buildSafetySettings() {
+    return List.of(
+        GeminiRequest.SafetySetting.builder()
+            .category("HARM_CATEGORY_HARASSMENT") // 防止騷擾內容
+            .threshold("BLOCK_MEDIUM_AND_ABOVE")
+            .build(),
+        GeminiRequest.SafetySetting.builder()
+            .category("HARM_CATEGORY_HATE_SPEECH") // 防止仇恨言論
+            .threshold("BLOCK_MEDIUM_AND_ABOVE")
+            .build(),
+        GeminiRequest.SafetySetting.builder()
+            .category("HARM_CATEGORY_SEXUALLY_EXPLICIT") // 防止性露骨內容
+            .threshold("BLOCK_MEDIUM_AND_ABOVE")
+            .build(),
+        GeminiRequest.SafetySetting.builder()
+            .category("HARM_CATEGORY_DANGEROUS_CONTENT") // 防止危險內容
+            .threshold("BLOCK_MEDIUM_AND_ABOVE")
+            .build()
+    );
+    /*
+    Gemini API 提供的閾值選項有：
+    BLOCK_NONE：不阻止任何內容
+    BLOCK_LOW_AND_ABOVE：阻止輕微及以上程度的內容
+    BLOCK_MEDIUM_AND_ABOVE：阻止中等及以上程度的內容
+    BLOCK_HIGH_AND_ABOVE：只阻止高度及以上程度的內容
+    BLOCK_ONLY_MAXIMUM：只阻止最高程度的內容
+    */
+  }
+
+  /**
+   * 預先序列化好的請求骨架（不可變）
+   */
+  public final class Skeleton {
+
+    // 到期前預留的時間，避免請求送到時快取剛好過期
+    private static final Duration EXPIRY_MARGIN = Duration.ofSeconds(30);
+
+    private final String systemPrompt;
+    private final String botName;
+    private final String cachedContent;
+    private final Instant expireTime;
+    private final byte[] head;
+    // head 之後已經有對話內容，接下來的 turn 前面要加逗號
+    private final boolean headHasTurns;
+    private final byte[] tail;
+    private final int prefixTokens;
+
+    private Skeleton(String systemPrompt, String botName, String cachedContent, Instant expireTime,
+        byte[] head, boolean headHasTurns, byte[] tail, int prefixTokens) {
+      this.systemPrompt = systemPrompt;
+      this.botName = botName;
+      this.cachedContent = cachedContent;
+      this.expireTime = expireTime;
+      this.head = head;
+      this.headHasTurns = headHasTurns;
+      this.tail = tail;
+      this.prefixTokens = prefixTokens;
+    }
+
+    /**
+     * 引用的 cachedContents 名稱，內嵌模式為 null
+     */
+    public String getCachedContent() {
+      return cachedContent;
+    }
+
+    /**
+     * 是否引用 cachedContents
+     */
+    public boolean isCached() {
+      return cachedContent != null;
+    }
+
+    private boolean isUsable() {
+      return expireTime == null || Instant.now().plus(EXPIRY_MARGIN).isBefore(expireTime);
+    }
+
+    /**
+     * 固定前綴估算的 token 數
+     */
+    public int getPrefixTokens() {
+      return prefixTokens;
+    }
+
+    /**
+     * 把變動的對話內容接到骨架中，輸出精簡 JSON
+     *
+     * @param turns 接在固定前綴之後的對話（由舊到新）
+     * @return 完整的請求 JSON
+     */
+    public byte[] render(List<ConversationCache.Entry> turns) throws IOException {
+      ByteArrayOutputStream out = new ByteArrayOutputStream(head.length + tail.length + estimateSize(turns));
+      out.write(head);
+      try (JsonGenerator generator = objectMapper.getFactory().createGenerator(out)) {
+        // 每個 turn 都是一個 root value，不要額外插入空白分隔
+        generator.setRootValueSeparator(null);
+        boolean first = !headHasTurns;
+        for (ConversationCache.Entry turn : turns) {
+          if (!first) {
+            generator.writeRaw(',');
+          }
+          first = false;
+          // 欄位順序與 GeminiRequest.Content 的序列化結果相同
+          generator.writeStartObject();
+          generator.writeArrayFieldStart("parts");
+          generator.writeStartObject();
+          generator.writeStringField("text", turn.text());
+          generator.writeEndObject();
+          generator.writeEndArray();
+          generator.writeStringField("role", turn.role());
+          generator.writeEndObject();
+        }
+      }
+      out.write(CONTENTS_END);
+      out.write(tail);
+      return out.toByteArray();
+    }
+
+    private int estimateSize(List<ConversationCache.Entry> turns) {
+      int size = 0;
+      for (ConversationCache.Entry turn : turns) {
+        // 中文 UTF-8 一字三個 bytes，加上欄位名稱
+        size += turn.text().length() * 3 + 40;
+      }
+      return size;
+    }
+  }
+}
@@ -1,29 +1,26 @@
 package per.iiimabbie.dcbot.service;
 
-import com.fasterxml.jackson.core.JsonProcessingException;
-import com.fasterxml.jackson.databind.DeserializationFeature;
-import com.fasterxml.jackson.databind.ObjectMapper;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
-import java.util.Collections;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.regex.Pattern;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import net.dv8tion.jda.api.entities.Message;
-import net.dv8tion.jda.api.entities.MessageHistory;
 import net.dv8tion.jda.api.entities.channel.middleman.MessageChannel;
-import org.springframework.beans.factory.annotation.Qualifier;
-import org.springframework.http.HttpEntity;
-import org.springframework.http.HttpHeaders;
-import org.springframework.http.HttpMethod;
-import org.springframework.http.MediaType;
-import org.springframework.http.ResponseEntity;
 import org.springframework.stereotype.Service;
-import org.springframework.web.client.RestTemplate;
-import per.iiimabbie.dcbot.config.BotConfig;
-import per.iiimabbie.dcbot.config.GeminiConfig;
-import per.iiimabbie.dcbot.dto.gemini.GeminiRequest;
+import per.iiimabbie.dcbot.client.GeminiDispatcher;
+import per.iiimabbie.dcbot.client.GeminiEndpoint;
 import per.iiimabbie.dcbot.dto.gemini.GeminiResponse;
 import per.iiimabbie.dcbot.exception.BotException;
+import per.iiimabbie.dcbot.logging.LogMarkers;
+import per.iiimabbie.dcbot.metrics.PipelineMetrics;
 
 /**
  * Gemini API 服務
@@ -36,18 +33,19 @@ import per.iiimabbie.dcbot.exception.BotException;
 @RequiredArgsConstructor
 public class GeminiService {
 
-  private final GeminiConfig geminiConfig;
-  private final BotConfig botConfig;
-  // 使用配置好的 RestTemplate, 需配合lombok.config
-  @Qualifier("defaultRestTemplate")
-  private final RestTemplate restTemplate;
+  // Gemini 沒有回傳文字時的預設訊息
+  private static final String EMPTY_RESPONSE = "抱歉，我沒有收到有效的回應...";
+  private static final Pattern LINE_BREAK = Pattern.compile("\\R");
 
-  // 設定 ObjectMapper 忽略未知欄位
-  private final ObjectMapper objectMapper = new ObjectMapper()
-      .configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false);
-
-  // 最大歷史訊息數量 - 避免 token 超限
-  private static final int MAX_HISTORY_COUNT = 50;
+  private final ConversationCache conversationCache;
+  private final GeminiDispatcher geminiDispatcher;
+  private final ContextWindowBuilder contextWindowBuilder;
+  private final TokenEstimator tokenEstimator;
+  private final ConversationSummaryService conversationSummaryService;
+  private final GeminiRequestTemplate geminiRequestTemplate;
+  private final GeminiContextCacheService geminiContextCacheService;
+  private final ResponseCache responseCache;
+  private final PipelineMetrics pipelineMetrics;
 
   /**
    * 處理 Discord 訊息並取得 AI 回應
@@ -59,106 +57,144 @@ public class GeminiService {
    */
   public String processMessage(MessageChannel channel, Message currentMessage) {
     try {
-      // 1. 建立對話歷史
-      List<GeminiRequest.Content> contents = buildConversationHistory(channel, currentMessage);
-
-      // 2. 建立請求
-      GeminiRequest request = GeminiRequest.builder()
-          .contents(contents)
-          .generationConfig(buildGenerationConfig())
-          .safetySettings(buildSafetySettings())
-          .build();
-
-      // 3. 發送請求並返回結果
-      return sendGeminiRequest(request);
-
-    } catch (BotException e) {
-      // 重新拋出已知的業務異常
-      throw e;
-    } catch (JsonProcessingException e) {
-      log.error("JSON 處理失敗", e);
-      throw BotException.geminiError("API 請求格式錯誤", e);
-    } catch (Exception e) {
-      log.error("處理 Gemini 請求時發生未知錯誤", e);
-      throw BotException.geminiError("AI 服務暫時無法使用", e);
+      return processMessageAsync(channel, currentMessage).join();
+    } catch (CompletionException e) {
+      if (e.getCause() instanceof BotException botException) {
+        throw botException;
+      }
+      log.error("處理 Gemini 請求時發生未知錯誤", e.getCause());
+      throw BotException.geminiError("AI 服務暫時無法使用", e.getCause());
     }
   }
 
   /**
-   * 建立對話歷史
-   * 包含 system prompt + model 確認 + 歷史訊息 + 當前訊息
+   * 非同步處理 Discord 訊息並取得 AI 回應
+   * 建立請求的部分在呼叫端執行緒完成，HTTP 交給 GeminiDispatcher
+   *
+   * @param channel        Discord 頻道
+   * @param currentMessage 當前訊息
+   * @return AI 回應文字，失敗時以 BotException 結束
    */
-  private List<GeminiRequest.Content> buildConversationHistory(MessageChannel channel, Message currentMessage) {
-    List<GeminiRequest.Content> contents = new ArrayList<>();
+  public CompletableFuture<String> processMessageAsync(MessageChannel channel, Message currentMessage) {
+    return processMessagesAsync(channel, List.of(currentMessage), null);
+  }
 
+  /**
+   * 將同一頻道的一批訊息合併成一次 Gemini 請求
+   *
+   * @param channel  Discord 頻道
+   * @param messages 依時間排序的當前訊息（至少一則）
+   * @param onChunk  串流片段回呼，為 null 時使用一般模式
+   * @return 完整的 AI 回應文字，失敗時以 BotException 結束
+   */
+  public CompletableFuture<String> processMessagesAsync(MessageChannel channel, List<Message> messages,
+      Consumer<String> onChunk) {
     try {
-      // 1. 先加入 system prompt（固定在第一位）
-      if (botConfig.getSystemPrompt() != null && !botConfig.getSystemPrompt().trim().isEmpty()) {
-        contents.add(GeminiRequest.Content.builder()
-            .role("user")
-            .parts(List.of(GeminiRequest.Part.builder()
-                .text("System: " + botConfig.getSystemPrompt())
-                .build()))
-            .build());
+      // 1. 建立對話歷史（預先序列化的 system prompt + model 確認 + 摘要 + 預算內的歷史 + 當前訊息）
+      GeminiRequestTemplate.Skeleton skeleton = geminiRequestTemplate.current();
+      List<ConversationCache.Entry> turns = new ArrayList<>();
+      int reservedTokens = skeleton.getPrefixTokens();
+
+      String summary = conversationSummaryService.getSummary(channel.getIdLong());
+      if (summary != null) {
+        // 較舊的對話以摘要取代原始訊息，放在 system prompt 之後
+        ConversationCache.Entry summaryTurn = new ConversationCache.Entry(0, "user", "（先前對話摘要）\n" + summary);
+        turns.add(summaryTurn);
+        reservedTokens += tokenEstimator.estimate(summaryTurn.text());
       }
 
-      // Model 確認回應 (model 角色)
-      contents.add(GeminiRequest.Content.builder()
-          .role("model")
-          .parts(List.of(GeminiRequest.Part.builder()
-              .text("好的，我是" + botConfig.getName() + "，我會按照指示與用戶互動。")
-              .build()))
-          .build());
+      ContextWindowBuilder.ContextWindow window = buildConversationHistory(channel, messages, reservedTokens);
 
-      // 2. 取得歷史訊息
-      try {
-        MessageHistory history = channel.getHistoryBefore(currentMessage, MAX_HISTORY_COUNT).complete();
-        List<Message> messages = new ArrayList<>(history.getRetrievedHistory());
+      // 重複的問題直接使用快取的回應
+      ResponseCache.Key cacheKey = responseCache.keyFor(messages, window.history());
+      if (cacheKey != null) {
+        String cached = responseCache.get(cacheKey);
+        if (cached != null) {
+          log.info("使用快取的回應: {}", cacheKey.question());
+          if (onChunk != null) {
+            onChunk.accept(cached);
+          }
+          return CompletableFuture.completedFuture(cached);
+        }
+      }
 
-        // 反轉順序，讓最舊的訊息在前面
-        Collections.reverse(messages);
+      conversationSummaryService.offer(channel.getIdLong(), window.dropped());
+      turns.addAll(window.history());
+      turns.addAll(window.current());
+      log.debug("建立了 {} 則變動對話內容，估算 {} tokens", turns.size(), window.estimatedTokens());
 
-        // 3. 處理歷史訊息
-        for (Message msg : messages) {
-          // 跳過系統訊息和空訊息
-          if (msg.getAuthor().isSystem() || msg.getContentRaw().trim().isEmpty()) {
-            continue;
-          }
+      // 2. 建立請求：只序列化變動的部分，接到預先序列化的骨架上
+      //    cachedContents 建立在預設端點上，路由到其他端點時改用內嵌 system prompt
+      AtomicBoolean usedCache = new AtomicBoolean();
+      Function<GeminiEndpoint, byte[]> body = endpoint -> {
+        boolean cached = skeleton.isCached() && endpoint.isDefault();
+        usedCache.set(cached);
+        return render(cached ? skeleton : geminiRequestTemplate.inline(), turns);
+      };
 
-          String messageContent = cleanMessageContent(msg);
-          if (messageContent.isEmpty()) {
-            continue;
+      // 3. 發送請求並返回結果
+      CompletableFuture<String> result = sendGeminiRequest(body, window.estimatedTokens(), onChunk);
+      if (skeleton.isCached()) {
+        // 快取已過期或被刪除時改用內嵌 system prompt 重送一次
+        result = result.exceptionallyCompose(e -> {
+          if (!usedCache.get() || !geminiContextCacheService.isCacheMiss(e)) {
+            return CompletableFuture.failedFuture(e);
           }
+          geminiContextCacheService.invalidate(skeleton.getCachedContent());
+          return sendGeminiRequest(endpoint -> render(geminiRequestTemplate.inline(), turns),
+              window.estimatedTokens(), onChunk);
+        });
+      }
+      if (cacheKey != null) {
+        result = result.thenApply(text -> {
+          if (!EMPTY_RESPONSE.equals(text)) {
+            responseCache.put(cacheKey, text);
+          }
+          return text;
+        });
+      }
+      return result;
 
-          // 判斷是機器人還是用戶
-          String role = msg.getAuthor().isBot() ? "model" : "user";
-
-          contents.add(GeminiRequest.Content.builder()
-              .role(role)
-              .parts(List.of(GeminiRequest.Part.builder()
-                  .text(messageContent)
-                  .build()))
-              .build());
-        }
+    } catch (BotException e) {
+      // 重新拋出已知的業務異常
+      return CompletableFuture.failedFuture(e);
+    } catch (Exception e) {
+      log.error("處理 Gemini 請求時發生未知錯誤", e);
+      return CompletableFuture.failedFuture(BotException.geminiError("AI 服務暫時無法使用", e));
+    }
+  }
 
+  /**
+   * 建立對話歷史
+   * 在 token 預算內放入歷史訊息，當前訊息一定放入
+   */
+  private ContextWindowBuilder.ContextWindow buildConversationHistory(MessageChannel channel,
+      List<Message> currentMessages, int reservedTokens) {
+    try {
+      // 取得歷史訊息（優先使用快取）
+      List<ConversationCache.Entry> history = List.of();
+      long fetchStart = System.nanoTime();
+      try {
+        history = conversationCache.getHistoryBefore(channel, currentMessages.getFirst());
       } catch (Exception e) {
         log.warn("取得歷史訊息失敗，僅使用當前訊息: {}", e.getMessage());
         // 這裡不拋出異常，因為即使沒有歷史訊息也能繼續處理
       }
-
-      // 4. 加入當前訊息
-      String currentContent = cleanMessageContent(currentMessage);
-      if (!currentContent.isEmpty()) {
-        contents.add(GeminiRequest.Content.builder()
-            .role("user")
-            .parts(List.of(GeminiRequest.Part.builder()
-                .text(currentContent)
-                .build()))
-            .build());
+      pipelineMetrics.recordStage(PipelineMetrics.Stage.HISTORY_FETCH, fetchStart);
+
+      // 加入當前訊息（合併時可能有多則）
+      List<ConversationCache.Entry> current = new ArrayList<>();
+      for (Message currentMessage : currentMessages) {
+        ConversationCache.Entry entry = ConversationCache.Entry.from(currentMessage);
+        if (entry != null) {
+          current.add(entry);
+        }
       }
 
-      log.debug("建立了 {} 則對話內容", contents.size());
-      return contents;
+      long buildStart = System.nanoTime();
+      ContextWindowBuilder.ContextWindow window = contextWindowBuilder.build(reservedTokens, history, current);
+      pipelineMetrics.recordStage(PipelineMetrics.Stage.CONTEXT_BUILD, buildStart);
+      return window;
 
     } catch (Exception e) {
       log.error("建立對話歷史時發生錯誤", e);
@@ -167,120 +203,58 @@ public class GeminiService {
   }
 
   /**
-   * 清理訊息內容
-   * 移除 @ 標記、多餘空白等
+   * 把對話內容接到骨架上
    */
-  private String cleanMessageContent(Message message) {
-    String content = message.getContentDisplay();
-
-    // 如果訊息太短就跳過
-    if (content.isEmpty()) {
-      return "";
-    }
-
-    // 加上用戶名稱前綴（讓 AI 知道是誰說的）
-    String username = message.getAuthor().getName();
-    if (!message.getAuthor().isBot()) {
-      content = username + ": " + content;
+  private byte[] render(GeminiRequestTemplate.Skeleton skeleton, List<ConversationCache.Entry> turns) {
+    try {
+      long start = System.nanoTime();
+      byte[] body = skeleton.render(turns);
+      pipelineMetrics.recordStage(PipelineMetrics.Stage.SERIALIZATION, start);
+      if (log.isDebugEnabled()) {
+        log.debug(LogMarkers.GEMINI_REQUEST, "Gemini 請求 JSON: {}",
+            LogMarkers.lazy(() -> new String(body, StandardCharsets.UTF_8)));
+      }
+      return body;
+    } catch (IOException e) {
+      log.error("JSON 處理失敗", e);
+      throw BotException.geminiError("API 請求格式錯誤", e);
     }
-
-    return content;
   }
 
   /**
    * 發送 Gemini API 請求
    *
-   * @param request Gemini 請求物件
+   * @param body            依路由選定的端點產生請求 JSON
+   * @param estimatedTokens 估算的輸入 token，用來校正估算
+   * @param onChunk         串流片段回呼，為 null 時使用一般模式
    * @return AI 回應文字
-   * @throws BotException 當 API 調用失敗時拋出
    */
-  private String sendGeminiRequest(GeminiRequest request) throws JsonProcessingException {
-    String url = geminiConfig.getApi().getUrl() + "?key=" + geminiConfig.getApi().getKey();
-
-    // 建立 HTTP 標頭
-    HttpHeaders headers = new HttpHeaders();
-    headers.setContentType(MediaType.APPLICATION_JSON);
-
-    // 序列化請求
-    String requestJson = objectMapper.writerWithDefaultPrettyPrinter().writeValueAsString(request);
-    log.debug("Gemini 請求 JSON: {}", requestJson);
-
-    HttpEntity<String> entity = new HttpEntity<>(requestJson, headers);
-
-    try {
-      // 發送請求
-      ResponseEntity<String> response = restTemplate.exchange(
-          url, HttpMethod.POST, entity, String.class);
-
-      if (!response.getStatusCode().is2xxSuccessful()) {
-        throw BotException.geminiError("Gemini API 回應錯誤: " + response.getStatusCode());
-      }
-
-      log.debug("Gemini API 原始回應: {}", response.getBody());
-
-      // 解析回應
-      GeminiResponse geminiResponse = objectMapper.readValue(
-          response.getBody(), GeminiResponse.class);
-
-      String responseText = geminiResponse.getFirstCandidateText();
-      if (responseText == null || responseText.trim().isEmpty()) {
-        log.warn("Gemini 回應為空，使用預設訊息");
-        return "抱歉，我沒有收到有效的回應...";
-      }
-
-      log.info("Gemini 回應: {}", responseText.replaceAll("\\R", "\\\\n"));
-      return responseText;
-
-    } catch (BotException e) {
-      // 重新拋出自己的異常
-      throw e;
-    } catch (Exception e) {
-      log.error("調用 Gemini API 時發生網路錯誤", e);
-      throw BotException.networkError("網路連線問題", e);
-    }
+  private CompletableFuture<String> sendGeminiRequest(Function<GeminiEndpoint, byte[]> body,
+      int estimatedTokens, Consumer<String> onChunk) {
+    CompletableFuture<GeminiResponse> response = onChunk == null
+        ? geminiDispatcher.generateContent(body, estimatedTokens)
+        : geminiDispatcher.streamGenerateContent(body, estimatedTokens, onChunk);
+    response.whenComplete((geminiResponse, error) -> pipelineMetrics.recordGeminiResult(error));
+    return response.thenApply(geminiResponse -> {
+      tokenEstimator.observe(estimatedTokens, geminiResponse.getUsageMetadata());
+      pipelineMetrics.recordUsage(geminiResponse.getUsageMetadata());
+      return extractResponseText(geminiResponse);
+    });
   }
 
   /**
-   * 建立生成配置
+   * 取出回應文字，空回應時使用預設訊息
    */
-  private GeminiRequest.GenerationConfig buildGenerationConfig() {
-    return GeminiRequest.GenerationConfig.builder()
-        .temperature(0.7)  // 創意程度
-        .topK(40)         // Top-K 採樣
-        .topP(0.95)       // Top-P 採樣
-        .maxOutputTokens(2048)  // 最大輸出長度
-        .build();
-  }
+  private String extractResponseText(GeminiResponse geminiResponse) {
+    String responseText = geminiResponse.getFirstCandidateText();
+    if (responseText == null || responseText.trim().isEmpty()) {
+      log.warn("Gemini 回應為空，使用預設訊息");
+      return EMPTY_RESPONSE;
+    }
 
-  /**
-   * 建立安全設定
-   */
-  private List<GeminiRequest.SafetySetting> buildSafetySettings() {
-    return List.of(
-        GeminiRequest.SafetySetting.builder()
-            .category("HARM_CATEGORY_HARASSMENT") // 防止騷擾內容
-            .threshold("BLOCK_MEDIUM_AND_ABOVE")
-            .build(),
-        GeminiRequest.SafetySetting.builder()
-            .category("HARM_CATEGORY_HATE_SPEECH") // 防止仇恨言論
-            .threshold("BLOCK_MEDIUM_AND_ABOVE")
-            .build(),
-        GeminiRequest.SafetySetting.builder()
-            .category("HARM_CATEGORY_SEXUALLY_EXPLICIT") // 防止性露骨內容
-            .threshold("BLOCK_MEDIUM_AND_ABOVE")
-            .build(),
-        GeminiRequest.SafetySetting.builder()
-            .category("HARM_CATEGORY_DANGEROUS_CONTENT") // 防止危險內容
-            .threshold("BLOCK_MEDIUM_AND_ABOVE")
-            .build()
-    );
-    /*
-    Gemini API 提供的閾值選項有：
-    BLOCK_NONE：不阻止任何內容
-    BLOCK_LOW_AND_ABOVE：阻止輕微及以上程度的內容
-    BLOCK_MEDIUM_AND_ABOVE：阻止中等及以上程度的內容
-    BLOCK_HIGH_AND_ABOVE：只阻止高度及以上程度的內容
-    BLOCK_ONLY_MAXIMUM：只阻止最高程度的內容
-    */
+    // 換行轉義只在真的輸出時才做
+    log.info(LogMarkers.GEMINI_REPLY, "Gemini 回應: {}",
+        LogMarkers.lazy(() -> LINE_BREAK.matcher(responseText).replaceAll("\\\\n")));
+    return responseText;
   }
-}
\ No newline at end of file
+}
@@ -0,0 +1,132 @@
+package per.iiimabbie.dcbot.service;
+
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import lombok.extern.slf4j.Slf4j;
+import net.dv8tion.jda.api.entities.Message;
+import org.springframework.stereotype.Service;
+import per.iiimabbie.dcbot.config.BotConfig;
+
+/**
+ * 同頻道訊息合併
+ * 在短時間內連續 @ bot 的訊息會被合併成一批，只打一次 Gemini
+ *
+ * @author iiimabbie
+ */
+@Slf4j
+@Service
+public class MessageCoalescer {
+
+  private final BotConfig.Coalesce config;
+  private final Map<Long, Burst> bursts = new ConcurrentHashMap<>();
+  private final DistributionSummary burstSize;
+  private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(
+      Thread.ofPlatform().name("message-coalescer").daemon().factory());
+
+  public MessageCoalescer(BotConfig botConfig, MeterRegistry meterRegistry) {
+    this.config = botConfig.getCoalesce();
+    this.burstSize = DistributionSummary.builder("dcbot.coalesce.burst.size")
+        .description("每批合併的訊息數量")
+        .register(meterRegistry);
+  }
+
+  /**
+   * 是否啟用合併
+   */
+  public boolean isEnabled() {
+    return !config.getWindow().isZero() && !config.getWindow().isNegative();
+  }
+
+  /**
+   * 加入一則訊息，重新開始計時
+   *
+   * @param message 要處理的訊息
+   * @param onFlush 一批訊息送出時呼叫（在排程執行緒上）
+   */
+  public void submit(Message message, Consumer<List<Message>> onFlush) {
+    long channelId = message.getChannel().getIdLong();
+    bursts.compute(channelId, (id, burst) -> {
+      if (burst == null) {
+        burst = new Burst(onFlush);
+      }
+      burst.messages.add(message);
+      if (burst.timer != null) {
+        burst.timer.cancel(false);
+      }
+
+      long delay;
+      if (burst.messages.size() >= config.getMaxMessages()) {
+        delay = 0;
+      } else {
+        long untilDeadline = burst.startedAt + config.getMaxWait().toNanos() - System.nanoTime();
+        delay = Math.max(0, Math.min(config.getWindow().toNanos(), untilDeadline));
+      }
+      Burst target = burst;
+      burst.timer = scheduler.schedule(() -> flush(channelId, target), delay, TimeUnit.NANOSECONDS);
+      return burst;
+    });
+  }
+
+  /**
+   * 訊息在送出前被刪除時從批次中移除，整批都被刪除則取消
+   */
+  public void cancel(long channelId, long messageId) {
+    bursts.computeIfPresent(channelId, (id, burst) -> {
+      burst.messages.removeIf(message -> message.getIdLong() == messageId);
+      if (burst.messages.isEmpty()) {
+        burst.timer.cancel(false);
+        log.debug("頻道 {} 的合併批次已全部刪除，取消處理", channelId);
+        return null;
+      }
+      return burst;
+    });
+  }
+
+  private void flush(long channelId, Burst burst) {
+    // 只移除同一批，避免誤刪計時器觸發後才建立的新批次
+    if (!bursts.remove(channelId, burst)) {
+      return;
+    }
+    List<Message> messages = List.copyOf(burst.messages);
+    burstSize.record(messages.size());
+    if (messages.size() > 1) {
+      log.debug("頻道 {} 合併了 {} 則訊息", channelId, messages.size());
+    }
+    try {
+      burst.onFlush.accept(messages);
+    } catch (Exception e) {
+      log.error("處理合併訊息時發生錯誤", e);
+    }
+  }
+
+  @PreDestroy
+  public void shutdown() {
+    scheduler.shutdownNow();
+  }
+
+  /**
+   * 單一頻道尚未送出的一批訊息
+   * 只在 bursts.compute 內修改
+   */
+  private static class Burst {
+
+    private final Consumer<List<Message>> onFlush;
+    private final long startedAt = System.nanoTime();
+    private final List<Message> messages = new ArrayList<>();
+    private ScheduledFuture<?> timer;
+
+    Burst(Consumer<List<Message>> onFlush) {
+      this.onFlush = onFlush;
+    }
+  }
+}
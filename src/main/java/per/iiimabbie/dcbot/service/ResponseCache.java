@@ -0,0 +1,287 @@
+package per.iiimabbie.dcbot.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Pattern;
+import lombok.extern.slf4j.Slf4j;
+import net.dv8tion.jda.api.entities.Message;
+import org.springframework.stereotype.Component;
+import per.iiimabbie.dcbot.config.BotConfig;
+import per.iiimabbie.dcbot.metrics.PipelineMetrics;
+
+/**
+ * 重複問題的回應快取
+ * 以正規化後的問題加上最近上下文的指紋為鍵，找不到完全相同的問題時，
+ * 在同一個上下文內以 trigram Jaccard 相似度找近似問題
+ *
+ * @author iiimabbie
+ */
+@Slf4j
+@Component
+public class ResponseCache {
+
+  private static final Pattern MENTION = Pattern.compile("@\\S+");
+  // 保留文字和數字，其餘（標點、符號、表情）視為空白
+  private static final Pattern NON_WORD = Pattern.compile("[^\\p{L}\\p{N}]+");
+  private static final int MIN_QUESTION_LENGTH = 2;
+
+  private final BotConfig.ResponseCache config;
+  private final PipelineMetrics pipelineMetrics;
+
+  // 全部快取，依存取順序淘汰；buckets 以 guild + 上下文指紋分組，供近似比對
+  private final LinkedHashMap<String, CachedResponse> entries;
+  private final Map<String, List<CachedResponse>> buckets = new HashMap<>();
+
+  private final Counter hitCounter;
+  private final Counter nearHitCounter;
+  private final Counter missCounter;
+
+  public ResponseCache(BotConfig botConfig, MeterRegistry meterRegistry, PipelineMetrics pipelineMetrics) {
+    this.config = botConfig.getResponseCache();
+    this.pipelineMetrics = pipelineMetrics;
+    int maxEntries = config.getMaxEntries();
+    this.entries = new LinkedHashMap<>(16, 0.75f, true) {
+      @Override
+      protected boolean removeEldestEntry(Map.Entry<String, CachedResponse> eldest) {
+        if (size() > maxEntries) {
+          unindex(eldest.getValue());
+          return true;
+        }
+        return false;
+      }
+    };
+
+    this.hitCounter = counter(meterRegistry, "hit");
+    this.nearHitCounter = counter(meterRegistry, "near_hit");
+    this.missCounter = counter(meterRegistry, "miss");
+    Gauge.builder("dcbot.response.cache.size", this, ResponseCache::size)
+        .description("快取中的回應數量")
+        .register(meterRegistry);
+  }
+
+  private static Counter counter(MeterRegistry meterRegistry, String result) {
+    return Counter.builder("dcbot.response.cache")
+        .description("回應快取查詢結果")
+        .tag("result", result)
+        .register(meterRegistry);
+  }
+
+  /**
+   * 建立查詢鍵
+   *
+   * @param messages 這次要回覆的訊息，合併多則時不使用快取
+   * @param history  放入上下文視窗的歷史訊息（由舊到新）
+   * @return 不適用快取時回傳 null
+   */
+  public Key keyFor(List<Message> messages, List<ConversationCache.Entry> history) {
+    if (!config.isEnabled() || messages.size() != 1) {
+      return null;
+    }
+    Message message = messages.getFirst();
+    if (!message.isFromGuild() || !config.getGuilds().contains(message.getGuild().getId())) {
+      return null;
+    }
+
+    String question = normalize(MENTION.matcher(message.getContentDisplay()).replaceAll(" "));
+    if (question.length() < MIN_QUESTION_LENGTH) {
+      return null;
+    }
+
+    StringBuilder context = new StringBuilder();
+    int from = Math.max(0, history.size() - config.getContextTurns());
+    for (ConversationCache.Entry entry : history.subList(from, history.size())) {
+      context.append(entry.role()).append('\u0000').append(normalize(entry.text())).append('\u0000');
+    }
+
+    String bucket = message.getGuild().getId() + ':' + Long.toHexString(fingerprint(context));
+    return new Key(bucket, question, trigrams(question));
+  }
+
+  /**
+   * 查詢快取
+   *
+   * @return 快取的回應，沒有時回傳 null
+   */
+  public String get(Key key) {
+    long now = System.nanoTime();
+    synchronized (this) {
+      CachedResponse exact = entries.get(key.exactKey());
+      if (exact != null) {
+        if (!exact.isExpired(now)) {
+          hitCounter.increment();
+          pipelineMetrics.recordCacheLookup(PipelineMetrics.Cache.RESPONSE, true);
+          return exact.response;
+        }
+        entries.remove(key.exactKey());
+        unindex(exact);
+      }
+
+      CachedResponse best = null;
+      double bestScore = config.getSimilarity();
+      List<CachedResponse> candidates = buckets.getOrDefault(key.bucket(), List.of());
+      for (CachedResponse candidate : candidates) {
+        if (candidate.isExpired(now)) {
+          continue;
+        }
+        // 大小差太多時不可能達到門檻，交集最多是較小的集合
+        int shorter = Math.min(key.trigrams().length, candidate.key.trigrams().length);
+        int longer = Math.max(key.trigrams().length, candidate.key.trigrams().length);
+        if (shorter < bestScore * longer) {
+          continue;
+        }
+        double score = jaccard(key.trigrams(), candidate.key.trigrams());
+        if (score >= bestScore) {
+          best = candidate;
+          bestScore = score;
+        }
+      }
+
+      if (best != null) {
+        // 更新存取順序
+        entries.get(best.key.exactKey());
+        nearHitCounter.increment();
+        pipelineMetrics.recordCacheLookup(PipelineMetrics.Cache.RESPONSE, true);
+        log.debug("回應快取近似命中（相似度 {}）: {} ≈ {}", bestScore, key.question(), best.key.question());
+        return best.response;
+      }
+    }
+    missCounter.increment();
+    pipelineMetrics.recordCacheLookup(PipelineMetrics.Cache.RESPONSE, false);
+    return null;
+  }
+
+  /**
+   * 放入快取
+   */
+  public void put(Key key, String response) {
+    CachedResponse cached = new CachedResponse(key, response,
+        System.nanoTime() + config.getTtl().toNanos());
+    synchronized (this) {
+      CachedResponse previous = entries.put(key.exactKey(), cached);
+      if (previous != null) {
+        unindex(previous);
+      }
+      buckets.computeIfAbsent(key.bucket(), bucket -> new ArrayList<>()).add(cached);
+    }
+  }
+
+  public synchronized int size() {
+    return entries.size();
+  }
+
+  private void unindex(CachedResponse cached) {
+    List<CachedResponse> bucket = buckets.get(cached.key.bucket());
+    if (bucket != null) {
+      bucket.remove(cached);
+      if (bucket.isEmpty()) {
+        buckets.remove(cached.key.bucket());
+      }
+    }
+  }
+
+  /**
+   * 正規化：全半形統一、小寫、去掉標點符號和多餘空白
+   */
+  static String normalize(String text) {
+    String normalized = Normalizer.normalize(text, Normalizer.Form.NFKC).toLowerCase();
+    return NON_WORD.matcher(normalized).replaceAll(" ").strip();
+  }
+
+  /**
+   * 取出排序且不重複的字元 trigram，三個 UTF-16 字元打包成一個 long
+   */
+  static long[] trigrams(String text) {
+    String padded = " " + text + " ";
+    if (padded.length() < 3) {
+      return new long[0];
+    }
+    long[] grams = new long[padded.length() - 2];
+    for (int i = 0; i < grams.length; i++) {
+      grams[i] = ((long) padded.charAt(i) << 32) | ((long) padded.charAt(i + 1) << 16) | padded.charAt(i + 2);
+    }
+    Arrays.sort(grams);
+
+    int unique = 0;
+    for (int i = 0; i < grams.length; i++) {
+      if (i == 0 || grams[i] != grams[i - 1]) {
+        grams[unique++] = grams[i];
+      }
+    }
+    return Arrays.copyOf(grams, unique);
+  }
+
+  /**
+   * 兩個已排序集合的 Jaccard 相似度
+   */
+  static double jaccard(long[] a, long[] b) {
+    if (a.length == 0 || b.length == 0) {
+      return 0;
+    }
+    int i = 0;
+    int j = 0;
+    int intersection = 0;
+    while (i < a.length && j < b.length) {
+      if (a[i] == b[j]) {
+        intersection++;
+        i++;
+        j++;
+      } else if (a[i] < b[j]) {
+        i++;
+      } else {
+        j++;
+      }
+    }
+    return (double) intersection / (a.length + b.length - intersection);
+  }
+
+  /**
+   * 64 位元 FNV-1a
+   */
+  private static long fingerprint(CharSequence text) {
+    long hash = 0xcbf29ce484222325L;
+    for (int i = 0; i < text.length(); i++) {
+      hash ^= text.charAt(i);
+      hash *= 0x100000001b3L;
+    }
+    return hash;
+  }
+
+  /**
+   * 快取查詢鍵
+   *
+   * @param bucket   guild ID + 上下文指紋
+   * @param question 正規化後的問題
+   * @param trigrams 問題的 trigram 集合
+   */
+  public record Key(String bucket, String question, long[] trigrams) {
+
+    String exactKey() {
+      return bucket + '\u0000' + question;
+    }
+  }
+
+  private static class CachedResponse {
+
+    private final Key key;
+    private final String response;
+    private final long expiresAt;
+
+    CachedResponse(Key key, String response, long expiresAt) {
+      this.key = key;
+      this.response = response;
+      this.expiresAt = expiresAt;
+    }
+
+    boolean isExpired(long now) {
+      return now - expiresAt >= 0;
+    }
+  }
+}
@@ -0,0 +1,212 @@
+package per.iiimabbie.dcbot.service;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import net.dv8tion.jda.api.entities.Message;
+import net.dv8tion.jda.api.entities.channel.middleman.MessageChannel;
+import org.springframework.stereotype.Service;
+import per.iiimabbie.dcbot.config.BotConfig;
+
+/**
+ * 串流回覆服務
+ * 先送出佔位訊息，再把 Gemini 串流的片段合併後節流編輯到 Discord 上
+ *
+ * @author iiimabbie
+ */
+@Service
+public class StreamingReplyService {
+
+  private final BotConfig botConfig;
+  private final Timer firstTokenTimer;
+  private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(
+      Thread.ofPlatform().name("streaming-reply").daemon().factory());
+
+  public StreamingReplyService(BotConfig botConfig, MeterRegistry meterRegistry) {
+    this.botConfig = botConfig;
+    this.firstTokenTimer = Timer.builder("dcbot.reply.first.token")
+        .description("從開始處理訊息（含 AI 佇列等待）到收到第一段模型輸出的時間")
+        .register(meterRegistry);
+  }
+
+  /**
+   * 開始一個串流回覆，立即送出佔位訊息
+   *
+   * @param startNanos 開始處理訊息的時間，first token 延遲從這裡算起
+   */
+  public StreamingReply start(MessageChannel channel, long startNanos) {
+    return new StreamingReply(channel, botConfig.getReply(), startNanos);
+  }
+
+  /**
+   * 把超過單則上限的內容切成多則（非串流回覆用），切法和串流換頁相同
+   */
+  public static List<String> split(String content, int maxLength) {
+    List<String> pages = new ArrayList<>();
+    String remaining = content;
+    while (remaining.length() > maxLength) {
+      int cut = findCut(remaining, maxLength);
+      pages.add(remaining.substring(0, cut));
+      remaining = remaining.substring(cut);
+    }
+    pages.add(remaining);
+    return pages;
+  }
+
+  /**
+   * 找換頁位置：優先換行，其次空白，避免切斷 surrogate pair
+   */
+  private static int findCut(String content, int maxLength) {
+    int cut = content.lastIndexOf('\n', maxLength - 1) + 1;
+    if (cut < maxLength / 2) {
+      cut = content.lastIndexOf(' ', maxLength - 1) + 1;
+    }
+    if (cut < maxLength / 2) {
+      cut = maxLength;
+    }
+    if (Character.isHighSurrogate(content.charAt(cut - 1))) {
+      cut--;
+    }
+    return cut;
+  }
+
+  @PreDestroy
+  public void shutdown() {
+    scheduler.shutdownNow();
+  }
+
+  /**
+   * 單次串流回覆
+   * append 可從任意執行緒呼叫；實際的 Discord 操作串在 chain 上依序執行
+   */
+  public class StreamingReply {
+
+    private final MessageChannel channel;
+    private final long intervalNanos;
+    private final int maxLength;
+    private final long startNanos;
+
+    // 以下欄位由 this 保護
+    private final StringBuilder text = new StringBuilder();
+    private ScheduledFuture<?> pendingFlush;
+    private long lastFlushNanos;
+    private boolean completed;
+    private CompletableFuture<Void> chain;
+    private boolean firstToken;
+
+    // 以下欄位只在 chain 上依序存取
+    private Message current;
+    private int pageStart;
+    // 已定稿頁面的內容（content 的前 pageStart 個字元）
+    private String committed = "";
+    private String lastRendered = "";
+
+    private StreamingReply(MessageChannel channel, BotConfig.Reply config, long startNanos) {
+      this.channel = channel;
+      this.startNanos = startNanos;
+      this.intervalNanos = config.getEditInterval().toNanos();
+      this.maxLength = config.getMaxLength();
+      this.chain = channel.sendMessage(config.getPlaceholder()).submit()
+          .thenAccept(message -> current = message);
+    }
+
+    /**
+     * Gemini 串流的片段：第一段有內容的片段記錄 first token 延遲，再合併
+     */
+    public synchronized void onChunk(String chunk) {
+      if (!firstToken && !chunk.isEmpty()) {
+        firstToken = true;
+        firstTokenTimer.record(System.nanoTime() - startNanos, TimeUnit.NANOSECONDS);
+      }
+      append(chunk);
+    }
+
+    /**
+     * 收到新的片段（例如合併回覆的引用），合併後等待下一次節流編輯
+     */
+    public synchronized void append(String chunk) {
+      if (completed) {
+        return;
+      }
+      text.append(chunk);
+      if (pendingFlush == null) {
+        long delay = Math.max(0, lastFlushNanos + intervalNanos - System.nanoTime());
+        pendingFlush = scheduler.schedule(this::flush, delay, TimeUnit.NANOSECONDS);
+      }
+    }
+
+    /**
+     * 串流結束，以完整內容做最後一次編輯
+     *
+     * @param finalText 完整回應（或錯誤訊息）
+     * @return 所有 Discord 操作完成時結束
+     */
+    public synchronized CompletableFuture<Void> complete(String finalText) {
+      completed = true;
+      if (pendingFlush != null) {
+        pendingFlush.cancel(false);
+        pendingFlush = null;
+      }
+      text.setLength(0);
+      text.append(finalText);
+      chain = chain.thenCompose(v -> render(finalText));
+      return chain;
+    }
+
+    private synchronized void flush() {
+      pendingFlush = null;
+      if (completed) {
+        return;
+      }
+      lastFlushNanos = System.nanoTime();
+      // 執行時才讀最新內容，前一次編輯還沒完成時排隊的舊快照會變成空操作
+      chain = chain.thenCompose(v -> render(snapshot()));
+    }
+
+    private synchronized String snapshot() {
+      return text.toString();
+    }
+
+    private CompletableFuture<Void> render(String content) {
+      if (!content.startsWith(committed)) {
+        // 最後內容（例如錯誤訊息）不是已串流內容的延續：已定稿的頁面保留，從目前這一頁重新寫起
+        pageStart = 0;
+        committed = "";
+      }
+      String remaining = content.substring(Math.min(pageStart, content.length()));
+      if (remaining.length() <= maxLength) {
+        return update(remaining);
+      }
+
+      // 超過單則上限：把這一頁定稿，剩下的換到新訊息
+      int cut = findCut(remaining, maxLength);
+      return update(remaining.substring(0, cut)).thenCompose(v -> {
+        pageStart += cut;
+        committed = content.substring(0, pageStart);
+        current = null;
+        lastRendered = "";
+        return render(content);
+      });
+    }
+
+    private CompletableFuture<Void> update(String content) {
+      if (content.isBlank() || content.equals(lastRendered)) {
+        return CompletableFuture.completedFuture(null);
+      }
+      lastRendered = content;
+
+      CompletableFuture<Message> action = current == null
+          ? channel.sendMessage(content).submit()
+          : current.editMessage(content).submit();
+      return action.thenAccept(message -> current = message);
+    }
+
+  }
+}
@@ -0,0 +1,108 @@
+package per.iiimabbie.dcbot.service;
+
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+import per.iiimabbie.dcbot.dto.gemini.GeminiResponse;
+
+/**
+ * Token 數量估算
+ * 以字元類型粗估，再用 Gemini 回報的 promptTokenCount 持續校正
+ *
+ * @author iiimabbie
+ */
+@Slf4j
+@Component
+public class TokenEstimator {
+
+  // 每則訊息的角色、分隔等額外開銷
+  private static final int MESSAGE_OVERHEAD = 4;
+  // 非 CJK 字元大約 4 個字元一個 token
+  private static final double LATIN_TOKENS_PER_CHAR = 0.25;
+  // 校正係數的指數移動平均權重
+  private static final double LEARNING_RATE = 0.2;
+  private static final double MIN_CORRECTION = 0.3;
+  private static final double MAX_CORRECTION = 3.0;
+
+  private final DistributionSummary promptTokens;
+  private final DistributionSummary estimatedPromptTokens;
+
+  // 實際 / 估算 的比例
+  private volatile double correction = 1.0;
+
+  public TokenEstimator(MeterRegistry meterRegistry) {
+    this.promptTokens = DistributionSummary.builder("dcbot.gemini.prompt.tokens")
+        .description("Gemini 回報的每次請求輸入 token 數")
+        .baseUnit("tokens")
+        .publishPercentileHistogram()
+        .register(meterRegistry);
+    this.estimatedPromptTokens = DistributionSummary.builder("dcbot.context.prompt.tokens.estimated")
+        .description("上下文組裝時估算的輸入 token 數")
+        .baseUnit("tokens")
+        .publishPercentileHistogram()
+        .register(meterRegistry);
+  }
+
+  /**
+   * 估算一段文字（視為一則訊息）的 token 數
+   */
+  public int estimate(String text) {
+    return (int) Math.ceil(rawEstimate(text) * correction) + MESSAGE_OVERHEAD;
+  }
+
+  /**
+   * 截斷文字，讓估算結果不超過 maxTokens
+   */
+  public String truncate(String text, int maxTokens) {
+    double limit = (maxTokens - MESSAGE_OVERHEAD) / correction;
+    double tokens = 0;
+    for (int i = 0; i < text.length(); i++) {
+      tokens += weight(text.charAt(i));
+      if (tokens > limit) {
+        int end = Character.isHighSurrogate(text.charAt(Math.max(0, i - 1))) ? i - 1 : i;
+        return text.substring(0, Math.max(0, end)) + "…（略）";
+      }
+    }
+    return text;
+  }
+
+  /**
+   * 記錄本次請求的估算值
+   */
+  public void recordEstimate(int estimatedTokens) {
+    estimatedPromptTokens.record(estimatedTokens);
+  }
+
+  /**
+   * 以實際用量校正估算
+   *
+   * @param estimatedTokens 送出前估算的 token 數
+   * @param usage           Gemini 回報的用量，可能為 null
+   */
+  public void observe(int estimatedTokens, GeminiResponse.UsageMetadata usage) {
+    if (usage == null || usage.getPromptTokenCount() == null || estimatedTokens <= 0) {
+      return;
+    }
+    int actual = usage.getPromptTokenCount();
+    promptTokens.record(actual);
+
+    double ratio = correction * actual / estimatedTokens;
+    ratio = Math.max(MIN_CORRECTION, Math.min(MAX_CORRECTION, ratio));
+    correction = correction + LEARNING_RATE * (ratio - correction);
+    log.debug("Token 估算 {}，實際 {}，校正係數 {}", estimatedTokens, actual, correction);
+  }
+
+  private double rawEstimate(String text) {
+    double tokens = 0;
+    for (int i = 0; i < text.length(); i++) {
+      tokens += weight(text.charAt(i));
+    }
+    return tokens;
+  }
+
+  private double weight(char c) {
+    // CJK、假名、全形符號等大多一字一個 token
+    return c >= 0x2E80 ? 1.0 : LATIN_TOKENS_PER_CHAR;
+  }
+}
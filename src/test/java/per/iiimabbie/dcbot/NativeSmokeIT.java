@@ -0,0 +1,84 @@
+package per.iiimabbie.dcbot;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestReporter;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ * native image 的 smoke test：用 loadtest profile 啟動執行檔，
+ * 對本機的 Gemini / Discord 替身跑一小段負載測試，確認每則訊息都有回覆
+ * 由 mvn -Pnative,native-smoke verify 執行（native.binary 指向建好的執行檔）
+ * loadtest 用 Discord 替身，不涵蓋 JDA 的連線部分
+ * 常駐記憶體只回報，設定 native.max-rss-mb 時才檢查上限
+ */
+@EnabledIfSystemProperty(named = "native.binary", matches = ".+")
+class NativeSmokeIT {
+
+  @TempDir
+  Path workDir;
+
+  @Test
+  void answersMessagesAgainstLocalStandIns(TestReporter reporter) throws Exception {
+    Path report = workDir.resolve("report.txt");
+    Path output = workDir.resolve("output.log");
+    Process process = new ProcessBuilder(System.getProperty("native.binary"),
+        "--spring.profiles.active=loadtest",
+        "--loadtest.duration=5s",
+        "--loadtest.rate=5",
+        "--loadtest.gemini.error-rate=0",
+        "--loadtest.report-file=" + report)
+        .directory(workDir.toFile())
+        .redirectErrorStream(true)
+        .redirectOutput(output.toFile())
+        .start();
+
+    // 執行期間取樣常駐記憶體（只有 Linux 有 /proc）
+    long maxRssKb = 0;
+    long deadline = System.nanoTime() + TimeUnit.MINUTES.toNanos(2);
+    while (!process.waitFor(100, TimeUnit.MILLISECONDS)) {
+      maxRssKb = Math.max(maxRssKb, rssKb(process.pid()));
+      if (System.nanoTime() > deadline) {
+        process.destroyForcibly().waitFor();
+        break;
+      }
+    }
+
+    String log = Files.readString(output, StandardCharsets.UTF_8);
+    assertEquals(0, process.exitValue(), log);
+    assertTrue(Files.exists(report), log);
+    String text = Files.readString(report, StandardCharsets.UTF_8);
+    reporter.publishEntry("report", text);
+    reporter.publishEntry("maxRssMb", String.valueOf(maxRssKb / 1024));
+    assertTrue(text.contains("錯誤 0，忙碌拒絕 0，未完成 0"), text);
+    assertTrue(text.contains("送出第一則回覆"), text);
+
+    String maxRssMb = System.getProperty("native.max-rss-mb", "");
+    if (!maxRssMb.isBlank()) {
+      assertTrue(maxRssKb > 0, "無法取得常駐記憶體（需要 Linux 的 /proc）");
+      assertTrue(maxRssKb / 1024 <= Long.parseLong(maxRssMb.strip()),
+          "常駐記憶體最多 " + maxRssKb / 1024 + " MB，超過上限 " + maxRssMb + " MB");
+    }
+  }
+
+  private static long rssKb(long pid) {
+    try {
+      for (String line : Files.readAllLines(Path.of("/proc", String.valueOf(pid), "status"))) {
+        if (line.startsWith("VmRSS:")) {
+          return Long.parseLong(line.replaceAll("\\D", ""));
+        }
+      }
+    } catch (IOException | RuntimeException e) {
+      // 程序已結束或不是 Linux
+    }
+    return 0;
+  }
+}
@@ -0,0 +1,82 @@
+package per.iiimabbie.dcbot.client;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.time.Duration;
+import org.junit.jupiter.api.Test;
+import per.iiimabbie.dcbot.client.GeminiCircuitBreaker.State;
+
+class GeminiCircuitBreakerTest {
+
+  @Test
+  void opensAfterConsecutiveFailures() {
+    GeminiCircuitBreaker breaker = new GeminiCircuitBreaker(3, Duration.ofMinutes(1));
+    breaker.onFailure();
+    breaker.onFailure();
+    assertEquals(State.CLOSED, breaker.getState());
+    assertTrue(breaker.tryAcquire());
+
+    breaker.onFailure();
+    assertEquals(State.OPEN, breaker.getState());
+    assertFalse(breaker.tryAcquire());
+  }
+
+  @Test
+  void successResetsFailureCount() {
+    GeminiCircuitBreaker breaker = new GeminiCircuitBreaker(3, Duration.ofMinutes(1));
+    breaker.onFailure();
+    breaker.onFailure();
+    breaker.onSuccess();
+    breaker.onFailure();
+    breaker.onFailure();
+    assertEquals(State.CLOSED, breaker.getState());
+  }
+
+  @Test
+  void halfOpenLetsOneTrialThrough() {
+    // 開啟時間為 0：一開啟就進入半開
+    GeminiCircuitBreaker breaker = new GeminiCircuitBreaker(1, Duration.ZERO);
+    breaker.onFailure();
+    assertEquals(State.HALF_OPEN, breaker.getState());
+
+    assertTrue(breaker.tryAcquire());
+    assertFalse(breaker.tryAcquire());
+
+    // 試探成功才關閉
+    breaker.onSuccess();
+    assertEquals(State.CLOSED, breaker.getState());
+    assertTrue(breaker.tryAcquire());
+    assertTrue(breaker.tryAcquire());
+  }
+
+  @Test
+  void failedTrialReopens() throws InterruptedException {
+    GeminiCircuitBreaker breaker = new GeminiCircuitBreaker(2, Duration.ofMillis(100));
+    breaker.onFailure();
+    breaker.onFailure();
+    assertEquals(State.OPEN, breaker.getState());
+
+    Thread.sleep(150);
+    assertEquals(State.HALF_OPEN, breaker.getState());
+    assertTrue(breaker.tryAcquire());
+
+    // 半開時一次失敗就重新開啟，不用再累積到門檻
+    breaker.onFailure();
+    assertEquals(State.OPEN, breaker.getState());
+    assertFalse(breaker.tryAcquire());
+  }
+
+  @Test
+  void ignoredResultReleasesTrial() {
+    GeminiCircuitBreaker breaker = new GeminiCircuitBreaker(1, Duration.ZERO);
+    breaker.onFailure();
+    assertTrue(breaker.tryAcquire());
+
+    // 例如 429：和 API 是否可用無關，只把試探名額還回去
+    breaker.onIgnored();
+    assertEquals(State.HALF_OPEN, breaker.getState());
+    assertTrue(breaker.tryAcquire());
+  }
+}
@@ -0,0 +1,425 @@
+package per.iiimabbie.dcbot.client;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.time.Duration;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BiFunction;
+import java.util.function.Consumer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import per.iiimabbie.dcbot.config.GeminiConfig;
+import per.iiimabbie.dcbot.dto.gemini.GeminiResponse;
+import per.iiimabbie.dcbot.exception.BotException;
+import per.iiimabbie.dcbot.exception.GeminiApiException;
+
+class GeminiDispatcherTest {
+
+  private GeminiDispatcher dispatcher;
+
+  @AfterEach
+  void shutdown() {
+    if (dispatcher != null) {
+      dispatcher.shutdown();
+    }
+  }
+
+  @Test
+  void blockedHedgeLoserIsInterruptedAndReleasesItsSlot() throws Exception {
+    GeminiResponse fast = new GeminiResponse();
+    CountDownLatch interrupted = new CountDownLatch(1);
+    AtomicInteger calls = new AtomicInteger();
+    // 第一次像 RestTemplate 一樣阻塞到被中斷，第二次立即回應
+    dispatcher = new GeminiDispatcher(client((endpoint, body) -> {
+      if (calls.incrementAndGet() > 1) {
+        return CompletableFuture.completedFuture(fast);
+      }
+      try {
+        Thread.sleep(TimeUnit.MINUTES.toMillis(1));
+      } catch (InterruptedException e) {
+        interrupted.countDown();
+        return CompletableFuture.failedFuture(BotException.networkError("中斷", e));
+      }
+      return CompletableFuture.failedFuture(BotException.networkError("逾時"));
+    }), hedgeConfig(), new SimpleMeterRegistry());
+
+    GeminiResponse response = dispatcher.generateContent(new byte[8]).get(5, TimeUnit.SECONDS);
+
+    assertSame(fast, response);
+    assertTrue(interrupted.await(5, TimeUnit.SECONDS));
+    awaitIdle();
+    assertEquals(GeminiCircuitBreaker.State.CLOSED, dispatcher.snapshot().getFirst().circuitState());
+  }
+
+  @Test
+  void pendingHedgeLoserReleasesItsSlot() throws Exception {
+    GeminiResponse fast = new GeminiResponse();
+    CompletableFuture<GeminiResponse> never = new CompletableFuture<>();
+    AtomicInteger calls = new AtomicInteger();
+    dispatcher = new GeminiDispatcher(client((endpoint, body) ->
+        calls.incrementAndGet() == 1 ? never : CompletableFuture.completedFuture(fast)),
+        hedgeConfig(), new SimpleMeterRegistry());
+
+    assertSame(fast, dispatcher.generateContent(new byte[8]).get(5, TimeUnit.SECONDS));
+
+    awaitIdle();
+    assertTrue(never.isCancelled());
+  }
+
+  @Test
+  void retriesServerErrors() throws Exception {
+    GeminiResponse ok = new GeminiResponse();
+    AtomicInteger calls = new AtomicInteger();
+    dispatcher = new GeminiDispatcher(client((endpoint, body) -> calls.incrementAndGet() < 3
+        ? CompletableFuture.failedFuture(new GeminiApiException(503, "overloaded"))
+        : CompletableFuture.completedFuture(ok)), config(), new SimpleMeterRegistry());
+
+    assertSame(ok, dispatcher.generateContent(new byte[8]).get(5, TimeUnit.SECONDS));
+    assertEquals(3, calls.get());
+    awaitIdle();
+  }
+
+  @Test
+  void givesUpAfterMaxAttempts() throws Exception {
+    AtomicInteger calls = new AtomicInteger();
+    dispatcher = new GeminiDispatcher(client((endpoint, body) -> {
+      calls.incrementAndGet();
+      return CompletableFuture.failedFuture(new GeminiApiException(500, "internal"));
+    }), config(), new SimpleMeterRegistry());
+
+    ExecutionException error = assertThrows(ExecutionException.class,
+        () -> dispatcher.generateContent(new byte[8]).get(5, TimeUnit.SECONDS));
+    assertEquals(500, ((GeminiApiException) error.getCause()).getStatusCode());
+    assertEquals(3, calls.get());
+    awaitIdle();
+  }
+
+  @Test
+  void doesNotRetryClientErrors() {
+    AtomicInteger calls = new AtomicInteger();
+    dispatcher = new GeminiDispatcher(client((endpoint, body) -> {
+      calls.incrementAndGet();
+      return CompletableFuture.failedFuture(new GeminiApiException(400, "bad request"));
+    }), config(), new SimpleMeterRegistry());
+
+    assertThrows(ExecutionException.class, () -> dispatcher.generateContent(new byte[8]).get(5, TimeUnit.SECONDS));
+    assertEquals(1, calls.get());
+  }
+
+  @Test
+  void waitsForRetryAfterOn429() throws Exception {
+    GeminiResponse ok = new GeminiResponse();
+    AtomicInteger calls = new AtomicInteger();
+    GeminiConfig config = config();
+    // 請求配額不限，等待時間只來自 429 的冷卻
+    config.getRateLimit().setRequestsPerMinute(0);
+    config.getRetry().setMaxBackoff(Duration.ofSeconds(1));
+    dispatcher = new GeminiDispatcher(client((endpoint, body) -> calls.incrementAndGet() == 1
+        ? CompletableFuture.failedFuture(new GeminiApiException(429, "{\"retryDelay\": \"0.3s\"}"))
+        : CompletableFuture.completedFuture(ok)), config, new SimpleMeterRegistry());
+
+    long start = System.nanoTime();
+    assertSame(ok, dispatcher.generateContent(new byte[8]).get(5, TimeUnit.SECONDS));
+    assertTrue(System.nanoTime() - start >= TimeUnit.MILLISECONDS.toNanos(300));
+    assertEquals(2, calls.get());
+  }
+
+  @Test
+  void retryAfterBeyondMaxWaitFailsFast() {
+    GeminiConfig config = config();
+    config.getRateLimit().setMaxWait(Duration.ofSeconds(1));
+    dispatcher = new GeminiDispatcher(client((endpoint, body) ->
+        CompletableFuture.failedFuture(new GeminiApiException(429, "quota", "60"))), config, new SimpleMeterRegistry());
+
+    long start = System.nanoTime();
+    ExecutionException error = assertThrows(ExecutionException.class,
+        () -> dispatcher.generateContent(new byte[8]).get(5, TimeUnit.SECONDS));
+    assertEquals(BotException.ErrorType.GEMINI_BUSY, ((BotException) error.getCause()).getErrorType());
+    assertTrue(System.nanoTime() - start < TimeUnit.SECONDS.toNanos(1));
+  }
+
+  @Test
+  void retryAfterBeyondMaxBackoffGivesUp() {
+    AtomicInteger calls = new AtomicInteger();
+    GeminiConfig config = config();
+    // 配額等待上限很寬，但 Retry-After 超過 maxBackoff（50 ms）
+    config.getRateLimit().setMaxWait(Duration.ofSeconds(30));
+    dispatcher = new GeminiDispatcher(client((endpoint, body) -> {
+      calls.incrementAndGet();
+      return CompletableFuture.failedFuture(new GeminiApiException(429, "quota", "300"));
+    }), config, new SimpleMeterRegistry());
+
+    long start = System.nanoTime();
+    ExecutionException error = assertThrows(ExecutionException.class,
+        () -> dispatcher.generateContent(new byte[8]).get(5, TimeUnit.SECONDS));
+    assertEquals(BotException.ErrorType.GEMINI_BUSY, ((BotException) error.getCause()).getErrorType());
+    assertTrue(System.nanoTime() - start < TimeUnit.SECONDS.toNanos(1));
+    assertEquals(1, calls.get());
+  }
+
+  @Test
+  void openCircuitRejectsWithoutCallingApi() throws Exception {
+    AtomicInteger calls = new AtomicInteger();
+    GeminiConfig config = config();
+    config.getRetry().setMaxAttempts(1);
+    config.getCircuitBreaker().setFailureThreshold(2);
+    dispatcher = new GeminiDispatcher(client((endpoint, body) -> {
+      calls.incrementAndGet();
+      return CompletableFuture.failedFuture(new GeminiApiException(502, "bad gateway"));
+    }), config, new SimpleMeterRegistry());
+
+    for (int i = 0; i < 2; i++) {
+      assertThrows(ExecutionException.class, () -> dispatcher.generateContent(new byte[8]).get(5, TimeUnit.SECONDS));
+    }
+    assertEquals(GeminiCircuitBreaker.State.OPEN, dispatcher.snapshot().getFirst().circuitState());
+
+    ExecutionException error = assertThrows(ExecutionException.class,
+        () -> dispatcher.generateContent(new byte[8]).get(5, TimeUnit.SECONDS));
+    assertTrue(error.getCause().getMessage().contains("斷路器"));
+    assertEquals(2, calls.get());
+  }
+
+  @Test
+  void spreadsLoadAcrossEndpointsInTier() throws Exception {
+    List<String> routed = new CopyOnWriteArrayList<>();
+    GeminiConfig config = config();
+    config.getEndpoints().add(endpoint("second", 0, null));
+    dispatcher = new GeminiDispatcher(client((endpoint, body) -> {
+      routed.add(endpoint.getName());
+      return new CompletableFuture<>();
+    }), config, new SimpleMeterRegistry());
+
+    dispatcher.generateContent(new byte[8]);
+    dispatcher.generateContent(new byte[8]);
+
+    // 第一個請求還在進行中，第二個改用負載較低的端點
+    awaitCalls(routed, 2);
+    assertEquals(Set.of(GeminiEndpoint.DEFAULT_NAME, "second"), Set.copyOf(routed));
+  }
+
+  @Test
+  void failsOverWhenPreferredTierIsSaturated() throws Exception {
+    List<String> routed = new CopyOnWriteArrayList<>();
+    GeminiConfig config = config();
+    // 預設端點每分鐘只有 1 次，備用端點在下一層
+    config.getRateLimit().setRequestsPerMinute(1);
+    config.getEndpoints().add(endpoint("backup", 1, 100));
+    SimpleMeterRegistry registry = new SimpleMeterRegistry();
+    dispatcher = new GeminiDispatcher(client((endpoint, body) -> {
+      routed.add(endpoint.getName());
+      return CompletableFuture.completedFuture(new GeminiResponse());
+    }), config, registry);
+
+    dispatcher.generateContent(new byte[8]).get(5, TimeUnit.SECONDS);
+    dispatcher.generateContent(new byte[8]).get(5, TimeUnit.SECONDS);
+
+    assertEquals(List.of(GeminiEndpoint.DEFAULT_NAME, "backup"), routed);
+    assertEquals(1, registry.get("dcbot.gemini.failover").counter().count());
+  }
+
+  @Test
+  void rateLimitedEndpointHandsRetryToAnother() throws Exception {
+    List<String> routed = new CopyOnWriteArrayList<>();
+    GeminiConfig config = config();
+    config.getEndpoints().add(endpoint("second", 0, null));
+    dispatcher = new GeminiDispatcher(client((endpoint, body) -> {
+      routed.add(endpoint.getName());
+      return routed.size() == 1
+          ? CompletableFuture.failedFuture(new GeminiApiException(429, "{\"retryDelay\": \"30s\"}"))
+          : CompletableFuture.completedFuture(new GeminiResponse());
+    }), config, new SimpleMeterRegistry());
+
+    // 第一個端點冷卻 30 秒，重試不用等，直接改用另一個 key
+    long start = System.nanoTime();
+    dispatcher.generateContent(new byte[8]).get(5, TimeUnit.SECONDS);
+    assertTrue(System.nanoTime() - start < TimeUnit.SECONDS.toNanos(1));
+    assertEquals(Set.of(GeminiEndpoint.DEFAULT_NAME, "second"), Set.copyOf(routed));
+  }
+
+  @Test
+  void hedgesOnlyWithinBudget() throws Exception {
+    AtomicInteger calls = new AtomicInteger();
+    GeminiConfig config = hedgeConfig();
+    // 每個請求累積半次 hedge 額度
+    config.getHedge().setBudgetPercent(50);
+    SimpleMeterRegistry registry = new SimpleMeterRegistry();
+    dispatcher = new GeminiDispatcher(client((endpoint, body) -> {
+      calls.incrementAndGet();
+      return CompletableFuture.supplyAsync(GeminiResponse::new,
+          CompletableFuture.delayedExecutor(200, TimeUnit.MILLISECONDS));
+    }), config, registry);
+
+    for (int i = 0; i < 4; i++) {
+      dispatcher.generateContent(new byte[8]).get(5, TimeUnit.SECONDS);
+    }
+
+    // 第 2、4 個請求額度足夠才 hedge
+    assertEquals(2, hedgeCount(registry, "launched"));
+    assertEquals(2, hedgeCount(registry, "budget_exhausted"));
+    assertEquals(6, calls.get());
+  }
+
+  @Test
+  void zeroBudgetNeverHedges() throws Exception {
+    AtomicInteger calls = new AtomicInteger();
+    GeminiConfig config = hedgeConfig();
+    config.getHedge().setBudgetPercent(0);
+    SimpleMeterRegistry registry = new SimpleMeterRegistry();
+    dispatcher = new GeminiDispatcher(client((endpoint, body) -> {
+      calls.incrementAndGet();
+      return CompletableFuture.supplyAsync(GeminiResponse::new,
+          CompletableFuture.delayedExecutor(200, TimeUnit.MILLISECONDS));
+    }), config, registry);
+
+    dispatcher.generateContent(new byte[8]).get(5, TimeUnit.SECONDS);
+
+    assertEquals(0, hedgeCount(registry, "launched"));
+    assertEquals(1, hedgeCount(registry, "budget_exhausted"));
+    assertEquals(1, calls.get());
+  }
+
+  @Test
+  void primaryFailingAsTimerFiresDoesNotLaunchHedge() throws Exception {
+    AtomicInteger calls = new AtomicInteger();
+    CompletableFuture<GeminiResponse> primary = new CompletableFuture<>();
+    SimpleMeterRegistry registry = new SimpleMeterRegistry();
+    dispatcher = new GeminiDispatcher(client((endpoint, body) ->
+        calls.incrementAndGet() == 1 ? primary : new CompletableFuture<>()), hedgeConfig(), registry);
+
+    CompletableFuture<GeminiResponse> result;
+    // 持有 dispatcher 的鎖，讓 hedge 計時器停在檢查結果之後、扣額度之前
+    synchronized (dispatcher) {
+      result = dispatcher.generateContent(new byte[8]);
+      awaitHedgeTimerBlocked();
+      primary.completeExceptionally(new GeminiApiException(400, "bad request"));
+      assertTrue(result.isCompletedExceptionally());
+    }
+
+    Thread.sleep(200);
+    assertEquals(1, calls.get());
+    assertEquals(0, hedgeCount(registry, "launched"));
+  }
+
+  private static void awaitHedgeTimerBlocked() throws InterruptedException {
+    long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+    while (System.nanoTime() < deadline) {
+      if (Thread.getAllStackTraces().keySet().stream()
+          .anyMatch(thread -> thread.getName().equals("gemini-hedge") && thread.getState() == Thread.State.BLOCKED)) {
+        return;
+      }
+      Thread.sleep(5);
+    }
+    throw new AssertionError("hedge 計時器沒有觸發");
+  }
+
+  private static double hedgeCount(SimpleMeterRegistry registry, String result) {
+    return registry.get("dcbot.gemini.hedge").tag("result", result).counter().count();
+  }
+
+  @Test
+  void idleEndpointsFollowWeights() throws Exception {
+    List<String> routed = new CopyOnWriteArrayList<>();
+    GeminiConfig config = config();
+    config.getRateLimit().setRequestsPerMinute(0);
+    GeminiConfig.Endpoint heavy = endpoint("heavy", 0, null);
+    heavy.setWeight(3);
+    config.getEndpoints().add(heavy);
+    dispatcher = new GeminiDispatcher(client((endpoint, body) -> {
+      routed.add(endpoint.getName());
+      return CompletableFuture.completedFuture(new GeminiResponse());
+    }), config, new SimpleMeterRegistry());
+
+    // 每次都是閒置狀態：1 / 3 比 1 / 1 小，一律選權重大的端點
+    for (int i = 0; i < 20; i++) {
+      dispatcher.generateContent(new byte[8]).get(5, TimeUnit.SECONDS);
+    }
+    assertEquals(Set.of("heavy"), Set.copyOf(routed));
+  }
+
+  @Test
+  void idleEndpointsWithEqualWeightShareTraffic() throws Exception {
+    List<String> routed = new CopyOnWriteArrayList<>();
+    GeminiConfig config = config();
+    config.getRateLimit().setRequestsPerMinute(0);
+    config.getEndpoints().add(endpoint("second", 0, null));
+    dispatcher = new GeminiDispatcher(client((endpoint, body) -> {
+      routed.add(endpoint.getName());
+      return CompletableFuture.completedFuture(new GeminiResponse());
+    }), config, new SimpleMeterRegistry());
+
+    for (int i = 0; i < 40; i++) {
+      dispatcher.generateContent(new byte[8]).get(5, TimeUnit.SECONDS);
+    }
+    assertEquals(Set.of(GeminiEndpoint.DEFAULT_NAME, "second"), Set.copyOf(routed));
+  }
+
+  private static GeminiConfig.Endpoint endpoint(String name, int priority, Integer requestsPerMinute) {
+    GeminiConfig.Endpoint endpoint = new GeminiConfig.Endpoint();
+    endpoint.setName(name);
+    endpoint.setKey("AIza-" + name);
+    endpoint.setPriority(priority);
+    endpoint.setRequestsPerMinute(requestsPerMinute);
+    return endpoint;
+  }
+
+  private static void awaitCalls(List<String> routed, int count) throws InterruptedException {
+    long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+    while (routed.size() < count && System.nanoTime() < deadline) {
+      Thread.sleep(10);
+    }
+    assertEquals(count, routed.size());
+  }
+
+  private void awaitIdle() throws InterruptedException {
+    long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+    while (dispatcher.snapshot().getFirst().inFlight() != 0 && System.nanoTime() < deadline) {
+      Thread.sleep(10);
+    }
+    assertEquals(0, dispatcher.snapshot().getFirst().inFlight());
+  }
+
+  private static GeminiConfig config() {
+    GeminiConfig config = new GeminiConfig();
+    GeminiConfig.Api api = new GeminiConfig.Api();
+    api.setUrl("http://127.0.0.1:9/v1beta/models/test:generateContent");
+    api.setKey("AIza-test");
+    config.setApi(api);
+    config.getRetry().setInitialBackoff(Duration.ofMillis(10));
+    config.getRetry().setMaxBackoff(Duration.ofMillis(50));
+    return config;
+  }
+
+  private static GeminiConfig hedgeConfig() {
+    GeminiConfig config = config();
+    config.getHedge().setEnabled(true);
+    config.getHedge().setInitialDelay(Duration.ofMillis(50));
+    config.getHedge().setBudgetPercent(100);
+    return config;
+  }
+
+  private static GeminiClient client(BiFunction<GeminiEndpoint, byte[], CompletableFuture<GeminiResponse>> generate) {
+    return new GeminiClient() {
+      @Override
+      public CompletableFuture<GeminiResponse> generateContent(GeminiEndpoint endpoint, byte[] body) {
+        return generate.apply(endpoint, body);
+      }
+
+      @Override
+      public CompletableFuture<GeminiResponse> streamGenerateContent(GeminiEndpoint endpoint, byte[] body,
+          Consumer<String> onChunk) {
+        return generate.apply(endpoint, body);
+      }
+    };
+  }
+}
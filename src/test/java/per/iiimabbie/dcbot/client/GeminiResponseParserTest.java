@@ -0,0 +1,113 @@
+package per.iiimabbie.dcbot.client;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import org.junit.jupiter.api.Test;
+import per.iiimabbie.dcbot.dto.gemini.GeminiResponse;
+
+class GeminiResponseParserTest {
+
+  @Test
+  void extractsFirstCandidateText() throws IOException {
+    // {JSON, 預期文字}
+    String[][] cases = {
+        // 一般回應，safetyRatings 整段跳過
+        {"""
+            {"candidates":[{"content":{"parts":[{"text":"你好"}],"role":"model"},"finishReason":"STOP",
+            "index":0,"safetyRatings":[{"category":"HARM_CATEGORY_HARASSMENT","probability":"NEGLIGIBLE"}]}]}
+            """, "你好"},
+        // 思考摘要不屬於回覆內容
+        {"""
+            {"candidates":[{"content":{"parts":[{"text":"先想想","thought":true},{"text":"答案"}]}}]}
+            """, "答案"},
+        // 多個 part 依序串接，非文字的 part 略過
+        {"""
+            {"candidates":[{"content":{"parts":[{"text":"a"},{"inlineData":{"mimeType":"image/png","data":"AA=="}},
+            {"text":"b"},"c",{"text":"d"}]}}]}
+            """, "abd"},
+        // 只取第一個候選回應
+        {"""
+            {"candidates":[{"content":{"parts":[{"text":"first"}]}},{"content":{"parts":[{"text":"second"}]}}]}
+            """, "first"},
+        // 欄位順序不同、有未知欄位
+        {"""
+            {"modelVersion":"gemini-2.0-flash","candidates":[{"index":0,"content":{"role":"model",
+            "parts":[{"text":"ok"}]},"citationMetadata":{"citationSources":[]}}],"responseId":"x"}
+            """, "ok"},
+        // 只有思考摘要
+        {"""
+            {"candidates":[{"content":{"parts":[{"text":"先想想","thought":true}]}}]}
+            """, null},
+    };
+    for (String[] testCase : cases) {
+      assertEquals(testCase[1], GeminiResponseParser.parse(testCase[0]).getFirstCandidateText(), testCase[0]);
+    }
+  }
+
+  @Test
+  void readsFinishReasonAndUsage() throws IOException {
+    GeminiResponse response = GeminiResponseParser.parse("""
+        {"candidates":[{"content":{"parts":[{"text":"hi"}]},"finishReason":"MAX_TOKENS"}],
+        "usageMetadata":{"promptTokenCount":10,"candidatesTokenCount":3,"totalTokenCount":13,
+        "cachedContentTokenCount":8}}
+        """);
+
+    assertEquals("MAX_TOKENS", response.getCandidates().getFirst().getFinishReason());
+    assertEquals(10, response.getUsageMetadata().getPromptTokenCount());
+    assertEquals(3, response.getUsageMetadata().getCandidatesTokenCount());
+    assertEquals(13, response.getUsageMetadata().getTotalTokenCount());
+    assertEquals(8, response.getUsageMetadata().getCachedContentTokenCount());
+  }
+
+  @Test
+  void ignoresNonIntegerUsageFields() throws IOException {
+    GeminiResponse.UsageMetadata usage = GeminiResponseParser.parse("""
+        {"usageMetadata":{"promptTokenCount":5,"promptTokensDetails":[{"modality":"TEXT","tokenCount":5}],
+        "candidatesTokenCount":"3","totalTokenCount":7.5,"thoughtsTokenCount":2}}
+        """).getUsageMetadata();
+
+    assertEquals(5, usage.getPromptTokenCount());
+    assertNull(usage.getCandidatesTokenCount());
+    assertNull(usage.getTotalTokenCount());
+  }
+
+  @Test
+  void sseChunkWithoutCandidates() throws IOException {
+    // 串流最後一段常常只有 usageMetadata
+    GeminiResponse response = GeminiResponseParser.parse("""
+        {"usageMetadata":{"promptTokenCount":4,"totalTokenCount":9},"modelVersion":"gemini-2.0-flash"}
+        """);
+
+    assertNull(response.getCandidates());
+    assertNull(response.getFirstCandidateText());
+    assertEquals(9, response.getUsageMetadata().getTotalTokenCount());
+
+    // 只有 finishReason 的片段
+    GeminiResponse finish = GeminiResponseParser.parse("{\"candidates\":[{\"finishReason\":\"STOP\"}]}");
+    assertNull(finish.getFirstCandidateText());
+    assertEquals("STOP", finish.getCandidates().getFirst().getFinishReason());
+  }
+
+  @Test
+  void allInputsParseTheSame() throws IOException {
+    byte[] body = "{\"candidates\":[{\"content\":{\"parts\":[{\"text\":\"同一份\"}]}}]}"
+        .getBytes(StandardCharsets.UTF_8);
+
+    assertEquals("同一份", GeminiResponseParser.parse(body).getFirstCandidateText());
+    assertEquals("同一份", GeminiResponseParser.parse(new ByteArrayInputStream(body)).getFirstCandidateText());
+  }
+
+  @Test
+  void rejectsMalformedInput() {
+    assertThrows(IOException.class, () -> GeminiResponseParser.parse(""));
+    assertThrows(IOException.class, () -> GeminiResponseParser.parse("[]"));
+    assertThrows(IOException.class, () -> GeminiResponseParser.parse("\"text\""));
+    assertThrows(IOException.class, () -> GeminiResponseParser.parse("{\"candidates\":[{\"content\":"));
+    assertThrows(IOException.class, () -> GeminiResponseParser.parse("{\"candidates\":[}"));
+  }
+}
@@ -0,0 +1,74 @@
+package per.iiimabbie.dcbot.client;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.concurrent.TimeUnit;
+import org.junit.jupiter.api.Test;
+
+class TokenBucketTest {
+
+  private static final long SECOND = TimeUnit.SECONDS.toNanos(1);
+
+  @Test
+  void unlimitedNeverWaits() {
+    TokenBucket bucket = new TokenBucket(0);
+    bucket.take(1_000_000);
+    assertEquals(0, bucket.waitNanos(1_000_000, System.nanoTime()));
+  }
+
+  @Test
+  void refillsContinuously() {
+    // 每分鐘 60 次，每秒補 1 次
+    TokenBucket bucket = new TokenBucket(60);
+    bucket.take(60);
+    long now = System.nanoTime();
+
+    long wait = bucket.waitNanos(1, now);
+    assertTrue(wait > SECOND / 2 && wait <= SECOND, "wait " + wait);
+    assertEquals(0, bucket.waitNanos(1, now + SECOND));
+    assertEquals(0, bucket.waitNanos(10, now + 10 * SECOND));
+    assertTrue(bucket.waitNanos(11, now + 10 * SECOND) > 0);
+  }
+
+  @Test
+  void releasingReservationRestoresQuota() {
+    TokenBucket bucket = new TokenBucket(1000);
+    bucket.take(400);
+    assertTrue(bucket.getAvailable() <= 601);
+
+    // 請求失敗：預扣的 400 全部退還
+    bucket.adjust(-400);
+    assertEquals(1000, bucket.getAvailable());
+    // 退還不會超過容量
+    bucket.adjust(-400);
+    assertEquals(1000, bucket.getAvailable());
+  }
+
+  @Test
+  void underestimatedUsageGoesIntoDebt() {
+    TokenBucket bucket = new TokenBucket(600);
+    bucket.take(600);
+    // 實際用量比預估多 300：要等補回 301 個 token（約 30 秒）
+    bucket.adjust(300);
+    long wait = bucket.waitNanos(1, System.nanoTime());
+    assertTrue(wait > 29 * SECOND && wait <= 31 * SECOND, "wait " + wait);
+    assertEquals(0, bucket.getAvailable());
+  }
+
+  @Test
+  void oversizedRequestWaitsForFullBucketOnly() {
+    TokenBucket bucket = new TokenBucket(1000);
+    // 超過容量的需求以容量計算，滿的時候可以送出，不會永遠等不到
+    assertEquals(0, bucket.waitNanos(5000, System.nanoTime()));
+    bucket.take(5000);
+    assertEquals(0, bucket.getAvailable());
+  }
+
+  @Test
+  void drainEmptiesQuota() {
+    TokenBucket bucket = new TokenBucket(60);
+    bucket.drain();
+    assertTrue(bucket.waitNanos(1, System.nanoTime()) > SECOND / 2);
+  }
+}
@@ -0,0 +1,39 @@
+package per.iiimabbie.dcbot.command.impl;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.Collections;
+import java.util.List;
+import net.dv8tion.jda.api.entities.MessageEmbed;
+import org.junit.jupiter.api.Test;
+
+class StatusCommandTest {
+
+  // 和實際單一端點的狀態差不多長
+  private static final String ENDPOINT = "x".repeat(89) + "\n";
+
+  @Test
+  void fewEndpointsShareOneField() {
+    assertEquals(List.of(ENDPOINT.repeat(3)), StatusCommand.geminiFields(Collections.nCopies(3, ENDPOINT)));
+  }
+
+  @Test
+  void manyEndpointsSplitAcrossFields() {
+    List<String> fields = StatusCommand.geminiFields(Collections.nCopies(25, ENDPOINT));
+
+    // 每個欄位放 11 個端點
+    assertEquals(3, fields.size());
+    assertEquals(String.join("", Collections.nCopies(25, ENDPOINT)), String.join("", fields));
+    fields.forEach(field -> assertTrue(field.length() <= MessageEmbed.VALUE_MAX_LENGTH));
+  }
+
+  @Test
+  void endpointsBeyondTheLastFieldAreCounted() {
+    List<String> fields = StatusCommand.geminiFields(Collections.nCopies(100, ENDPOINT));
+
+    assertEquals(3, fields.size());
+    assertTrue(fields.getLast().endsWith("…還有 67 個端點"));
+    fields.forEach(field -> assertTrue(field.length() <= MessageEmbed.VALUE_MAX_LENGTH));
+  }
+}
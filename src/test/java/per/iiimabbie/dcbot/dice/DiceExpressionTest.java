@@ -0,0 +1,116 @@
+package per.iiimabbie.dcbot.dice;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.SplittableRandom;
+import java.util.random.RandomGenerator;
+import org.junit.jupiter.api.Test;
+import per.iiimabbie.dcbot.exception.BotException;
+
+class DiceExpressionTest {
+
+  @Test
+  void ignoresMessagesWithoutDice() {
+    assertNull(DiceExpression.find("早安大家"));
+    assertNull(DiceExpression.find("有人知道 D&D 5e 的法術位怎麼算嗎"));
+    assertNull(DiceExpression.find("2024 年的團錄"));
+    assertNull(DiceExpression.find("3d 列印"));
+    assertNull(DiceExpression.find("0d6"));
+    assertNull(DiceExpression.find(""));
+  }
+
+  @Test
+  void findsExpressionAndDescription() {
+    String content = "今天 2d10 + 5 - 1 傷害";
+    DiceExpression expression = DiceExpression.find(content);
+    assertNotNull(expression);
+    assertEquals("2d10 + 5 - 1", expression.getText());
+    assertEquals("傷害", content.substring(expression.getEnd()).trim());
+
+    // 後面接的不是數字或骰子時，- 屬於說明文字
+    DiceExpression initiative = DiceExpression.find("1D20 - 先攻");
+    assertEquals("1D20", initiative.getText());
+  }
+
+  @Test
+  void singleDieKeepsLegacyFormat() {
+    DiceExpression.DiceRoll roll = DiceExpression.find("1d100 偵查").roll(fixed(57));
+    assertEquals(57, roll.total());
+    assertEquals("57[57]", roll.detail());
+  }
+
+  @Test
+  void keepHighestWithModifier() {
+    DiceExpression.DiceRoll roll = DiceExpression.find("4d6kh3+2").roll(fixed(6, 5, 2, 4));
+    assertEquals(17, roll.total());
+    assertEquals("15[6, 5, ~~2~~, 4]+2", roll.detail());
+
+    // 去掉最低一顆等同保留最高三顆
+    assertEquals(17, DiceExpression.find("4d6d1+2").roll(fixed(6, 5, 2, 4)).total());
+    assertEquals(2 + 2, DiceExpression.find("4d6kl1+2").roll(fixed(6, 5, 2, 4)).total());
+  }
+
+  @Test
+  void advantageAndDisadvantage() {
+    assertEquals(18, DiceExpression.find("1d20adv").roll(fixed(7, 18)).total());
+    assertEquals(7, DiceExpression.find("1d20dis").roll(fixed(7, 18)).total());
+  }
+
+  @Test
+  void explodingDice() {
+    DiceExpression.DiceRoll roll = DiceExpression.find("2d6!").roll(fixed(6, 6, 3, 2));
+    assertEquals(17, roll.total());
+    assertEquals("17[15!, 2]", roll.detail());
+  }
+
+  @Test
+  void multipleGroupsAndPercentile() {
+    // 第一組一定要有數量，避免一般文字裡的 d 被當成擲骰
+    assertNull(DiceExpression.find("d% 機率"));
+    DiceExpression.DiceRoll groups = DiceExpression.find("1d%-d4+2d6").roll(fixed(42, 3, 1, 6));
+    assertEquals(42 - 3 + 7, groups.total());
+    assertEquals("42[42]-3[3]+7[1, 6]", groups.detail());
+  }
+
+  @Test
+  void rollsStayInRange() {
+    DiceExpression expression = DiceExpression.find("3d6");
+    SplittableRandom random = new SplittableRandom(42);
+    for (int i = 0; i < 10_000; i++) {
+      long total = expression.roll(random).total();
+      assertTrue(total >= 3 && total <= 18);
+    }
+  }
+
+  @Test
+  void rejectsOversizedRolls() {
+    assertThrows(BotException.class, () -> DiceExpression.find("101d6"));
+    assertThrows(BotException.class, () -> DiceExpression.find("60d6+50d6"));
+    assertThrows(BotException.class, () -> DiceExpression.find("60d20adv"));
+    assertThrows(BotException.class, () -> DiceExpression.find("1d1001"));
+    assertThrows(BotException.class, () -> DiceExpression.find("1d6+99999999999999999999999"));
+    assertThrows(BotException.class, () -> DiceExpression.find("99999999999999999999d6"));
+  }
+
+  /**
+   * 依序回傳指定點數的亂數來源
+   */
+  private static RandomGenerator fixed(int... values) {
+    int[] index = {0};
+    return new RandomGenerator() {
+      @Override
+      public long nextLong() {
+        throw new UnsupportedOperationException();
+      }
+
+      @Override
+      public int nextInt(int origin, int bound) {
+        return values[index[0]++];
+      }
+    };
+  }
+}
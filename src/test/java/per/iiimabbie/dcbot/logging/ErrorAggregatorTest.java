@@ -0,0 +1,132 @@
+package per.iiimabbie.dcbot.logging;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import ch.qos.logback.classic.Level;
+import ch.qos.logback.classic.spi.LoggingEvent;
+import ch.qos.logback.classic.spi.ThrowableProxy;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import org.junit.jupiter.api.Test;
+
+class ErrorAggregatorTest {
+
+  private static final long SECOND = TimeUnit.SECONDS.toNanos(1);
+
+  @Test
+  void emitsFirstOccurrenceAndCountsRepeats() {
+    ErrorAggregator aggregator = new ErrorAggregator(16);
+    LoggingEvent first = event("Gemini 請求失敗: {}", failure("a"));
+
+    assertTrue(aggregator.record(first, 0));
+    // 例外訊息不同，但樣板、例外類型和丟出位置相同，算同一個指紋
+    assertFalse(aggregator.record(event("Gemini 請求失敗: {}", failure("b")), SECOND));
+    assertFalse(aggregator.record(event("Gemini 請求失敗: {}", failure("c")), 2 * SECOND));
+    // 例外類型不同是另一個指紋
+    assertTrue(aggregator.record(event("Gemini 請求失敗: {}", new IllegalArgumentException("d")), 2 * SECOND));
+    assertTrue(aggregator.record(event("其他錯誤", null), 2 * SECOND));
+  }
+
+  @Test
+  void summarizesRepeatsOncePerWindow() {
+    ErrorAggregator aggregator = new ErrorAggregator(16);
+    LoggingEvent first = event("發送回覆失敗", null);
+    aggregator.record(first, 0);
+    for (int i = 1; i <= 3; i++) {
+      aggregator.record(event("發送回覆失敗", null), i * SECOND);
+    }
+
+    List<ErrorAggregator.Summary> summaries = aggregator.summarize(60 * SECOND, 300 * SECOND);
+    assertEquals(1, summaries.size());
+    assertSame(first, summaries.getFirst().sample());
+    assertEquals(3, summaries.getFirst().repeats());
+    assertEquals(60 * SECOND, summaries.getFirst().windowNanos());
+
+    // 沒有新的重複就不再彙整；下一個區間從上次彙整開始算
+    assertTrue(aggregator.summarize(90 * SECOND, 300 * SECOND).isEmpty());
+    aggregator.record(event("發送回覆失敗", null), 100 * SECOND);
+    assertEquals(60 * SECOND, aggregator.summarize(120 * SECOND, 300 * SECOND).getFirst().windowNanos());
+  }
+
+  @Test
+  void retiredFingerprintIsEmittedAgain() {
+    ErrorAggregator aggregator = new ErrorAggregator(16);
+    aggregator.record(event("連線中斷", null), 0);
+    assertFalse(aggregator.record(event("連線中斷", null), SECOND));
+
+    // 第一次彙整送出重複次數，之後閒置超過 idle 才移除
+    assertEquals(1, aggregator.summarize(10 * SECOND, 5 * SECOND).size());
+    assertTrue(aggregator.summarize(20 * SECOND, 5 * SECOND).isEmpty());
+
+    assertTrue(aggregator.record(event("連線中斷", null), 21 * SECOND));
+    assertFalse(aggregator.record(event("連線中斷", null), 22 * SECOND));
+  }
+
+  @Test
+  void fullTableFallsBackToEmitting() {
+    ErrorAggregator aggregator = new ErrorAggregator(4);
+    for (String message : List.of("錯誤 A", "錯誤 B", "錯誤 C", "錯誤 D")) {
+      assertTrue(aggregator.record(event(message, null), 0));
+    }
+
+    // 表滿時不聚合，每次都送出
+    assertTrue(aggregator.record(event("錯誤 E", null), 0));
+    assertTrue(aggregator.record(event("錯誤 E", null), 0));
+    assertTrue(aggregator.summarize(SECOND, 300 * SECOND).isEmpty());
+  }
+
+  @Test
+  void concurrentRecordingNeverLosesEvents() throws InterruptedException {
+    ErrorAggregator aggregator = new ErrorAggregator(8);
+    int threads = 4;
+    int perThread = 50_000;
+    AtomicLong emitted = new AtomicLong();
+    List<Thread> workers = new ArrayList<>();
+    for (int t = 0; t < threads; t++) {
+      workers.add(Thread.ofPlatform().start(() -> {
+        for (int i = 0; i < perThread; i++) {
+          if (aggregator.record(event("同一個錯誤", null), 0)) {
+            emitted.incrementAndGet();
+          }
+        }
+      }));
+    }
+
+    // 同時以 idle = 0 彙整，反覆觸發移除和重新放入
+    long repeats = 0;
+    while (workers.stream().anyMatch(Thread::isAlive)) {
+      repeats += sum(aggregator.summarize(0, 0));
+    }
+    for (Thread worker : workers) {
+      worker.join();
+    }
+    repeats += sum(aggregator.summarize(0, 0));
+
+    // 每個事件不是立即送出就是計入某一次彙整
+    assertEquals((long) threads * perThread, emitted.get() + repeats);
+  }
+
+  private static long sum(List<ErrorAggregator.Summary> summaries) {
+    return summaries.stream().mapToLong(ErrorAggregator.Summary::repeats).sum();
+  }
+
+  private static Throwable failure(String message) {
+    return new IllegalStateException(message);
+  }
+
+  private static LoggingEvent event(String message, Throwable error) {
+    LoggingEvent event = new LoggingEvent();
+    event.setLoggerName("per.iiimabbie.dcbot.service.GeminiService");
+    event.setLevel(Level.ERROR);
+    event.setMessage(message);
+    if (error != null) {
+      event.setThrowableProxy(new ThrowableProxy(error));
+    }
+    return event;
+  }
+}
@@ -0,0 +1,56 @@
+package per.iiimabbie.dcbot.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import per.iiimabbie.dcbot.config.BotConfig;
+
+class AiTaskExecutorTest {
+
+  private final AiTaskExecutor executor = new AiTaskExecutor(new BotConfig(), new SimpleMeterRegistry());
+
+  @AfterEach
+  void shutdown() {
+    executor.shutdown();
+  }
+
+  @Test
+  void limitsConcurrencyPerScope() throws Exception {
+    AtomicInteger running = new AtomicInteger();
+    AtomicInteger maxRunning = new AtomicInteger();
+    List<CompletableFuture<Integer>> results = new ArrayList<>();
+    for (int i = 0; i < 10; i++) {
+      results.add(executor.submit(42L, () -> {
+        maxRunning.accumulateAndGet(running.incrementAndGet(), Math::max);
+        return CompletableFuture.supplyAsync(running::decrementAndGet,
+            CompletableFuture.delayedExecutor(20, TimeUnit.MILLISECONDS));
+      }));
+    }
+    CompletableFuture.allOf(results.toArray(CompletableFuture[]::new)).get(10, TimeUnit.SECONDS);
+
+    // 預設單一範圍最多同時 3 個
+    assertEquals(3, maxRunning.get());
+  }
+
+  @Test
+  void forgetsScopesWithoutPendingWork() throws Exception {
+    List<CompletableFuture<Long>> results = new ArrayList<>();
+    for (long channelId = 1; channelId <= 20; channelId++) {
+      long id = channelId;
+      results.add(executor.submit(id, () -> CompletableFuture.completedFuture(id)));
+    }
+    // 失敗的工作也要歸還
+    results.add(executor.submit(99L, () -> CompletableFuture.failedFuture(new IllegalStateException())));
+    CompletableFuture.allOf(results.toArray(CompletableFuture[]::new))
+        .exceptionally(error -> null).get(10, TimeUnit.SECONDS);
+
+    assertEquals(0, executor.getScopeCount());
+  }
+}
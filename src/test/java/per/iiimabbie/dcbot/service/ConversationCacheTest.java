@@ -0,0 +1,216 @@
+package per.iiimabbie.dcbot.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.Mockito.RETURNS_DEEP_STUBS;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import net.dv8tion.jda.api.entities.Message;
+import net.dv8tion.jda.api.entities.MessageHistory;
+import net.dv8tion.jda.api.entities.User;
+import net.dv8tion.jda.api.entities.channel.unions.MessageChannelUnion;
+import org.junit.jupiter.api.Test;
+import per.iiimabbie.dcbot.config.BotConfig;
+import per.iiimabbie.dcbot.metrics.PipelineMetrics;
+
+class ConversationCacheTest {
+
+  private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+
+  @Test
+  void primedChannelNeverCallsRest() {
+    ConversationCache cache = cache(100, 10);
+    MessageChannelUnion channel = channel(1);
+    cache.prime(1);
+    cache.record(message(channel, 10, "alice", "早安", false));
+    cache.record(message(channel, 11, "bot", "早安！", true));
+
+    List<ConversationCache.Entry> history = cache.getHistoryBefore(channel, message(channel, 12, "bob", "在嗎", false));
+
+    assertEquals(List.of(
+        new ConversationCache.Entry(10, "user", "alice: 早安"),
+        new ConversationCache.Entry(11, "model", "早安！")), history);
+    verify(channel, never()).getHistoryBefore(any(Message.class), anyInt());
+    assertEquals(1, cacheCount("hit"));
+  }
+
+  @Test
+  void coldChannelIsBackfilledOnce() {
+    ConversationCache cache = cache(100, 10);
+    MessageChannelUnion channel = channel(1);
+    List<Message> retrieved = List.of(message(channel, 10, "alice", "第一則", false));
+    when(channel.getHistoryBefore(any(Message.class), anyInt()).complete().getRetrievedHistory())
+        .thenReturn(retrieved);
+
+    Message current = message(channel, 11, "bob", "第二則", false);
+    assertEquals(List.of(new ConversationCache.Entry(10, "user", "alice: 第一則")),
+        cache.getHistoryBefore(channel, current));
+    // 回補時也放入了當前訊息
+    assertEquals(2, cache.getHistoryBefore(channel, message(channel, 12, "bob", "第三則", false)).size());
+    assertEquals(1, cacheCount("miss"));
+    assertEquals(1, cacheCount("hit"));
+  }
+
+  @Test
+  void keepsGatewayMessagesArrivingDuringBackfill() throws Exception {
+    ConversationCache cache = cache(100, 10);
+    MessageChannelUnion channel = channel(1);
+    CountDownLatch fetching = new CountDownLatch(1);
+    CountDownLatch release = new CountDownLatch(1);
+    List<Message> older = List.of(
+        message(channel, 10, "alice", "舊訊息", false),
+        message(channel, 11, "alice", "被刪掉的訊息", false));
+    MessageHistory retrieved = mock(MessageHistory.class);
+    when(retrieved.getRetrievedHistory()).thenReturn(older);
+    MessageHistory.MessageRetrieveAction action = mock(MessageHistory.MessageRetrieveAction.class);
+    when(action.complete()).thenAnswer(invocation -> {
+      fetching.countDown();
+      release.await();
+      return retrieved;
+    });
+    when(channel.getHistoryBefore(any(Message.class), anyInt())).thenReturn(action);
+
+    Message current = message(channel, 20, "bob", "在嗎", false);
+    CompletableFuture<List<ConversationCache.Entry>> first =
+        CompletableFuture.supplyAsync(() -> cache.getHistoryBefore(channel, current));
+    assertTrue(fetching.await(5, TimeUnit.SECONDS));
+
+    // REST 還沒回來時收到的訊息、刪除和另一個請求
+    cache.record(message(channel, 21, "bot", "在！", true));
+    cache.record(message(channel, 22, "carol", "我也在", false));
+    cache.remove(1, 11);
+    CompletableFuture<List<ConversationCache.Entry>> second = CompletableFuture.supplyAsync(
+        () -> cache.getHistoryBefore(channel, message(channel, 23, "bob", "好", false)));
+    Thread.sleep(100);
+    assertFalse(second.isDone());
+
+    release.countDown();
+    assertEquals(List.of(10L), ids(first.get(5, TimeUnit.SECONDS)));
+    assertEquals(List.of(10L, 20L, 21L, 22L), ids(second.get(5, TimeUnit.SECONDS)));
+    verify(channel, times(1)).getHistoryBefore(any(Message.class), anyInt());
+  }
+
+  @Test
+  void failedBackfillIsRetried() {
+    ConversationCache cache = cache(100, 10);
+    MessageChannelUnion channel = channel(1);
+    MessageHistory empty = mock(MessageHistory.class);
+    when(channel.getHistoryBefore(any(Message.class), anyInt()).complete())
+        .thenThrow(new IllegalStateException("網路錯誤"))
+        .thenReturn(empty);
+
+    Message current = message(channel, 10, "alice", "hi", false);
+    assertThrows(IllegalStateException.class, () -> cache.getHistoryBefore(channel, current));
+    cache.getHistoryBefore(channel, current);
+
+    assertEquals(2, cacheCount("miss"));
+  }
+
+  @Test
+  void keepsOnlyTheNewestMessages() {
+    ConversationCache cache = cache(3, 10);
+    MessageChannelUnion channel = channel(1);
+    cache.prime(1);
+    for (long id = 1; id <= 5; id++) {
+      cache.record(message(channel, id, "alice", "訊息 " + id, false));
+    }
+
+    List<ConversationCache.Entry> history = cache.getHistoryBefore(channel, message(channel, 6, "bob", "?", false));
+    assertEquals(List.of(3L, 4L, 5L), ids(history));
+  }
+
+  @Test
+  void appliesEditsAndDeletes() {
+    ConversationCache cache = cache(100, 10);
+    MessageChannelUnion channel = channel(1);
+    cache.prime(1);
+    for (long id = 1; id <= 3; id++) {
+      cache.record(message(channel, id, "alice", "訊息 " + id, false));
+    }
+
+    cache.update(message(channel, 1, "alice", "改過了", false));
+    // 編輯成空訊息等於刪除
+    cache.update(message(channel, 2, "alice", " ", false));
+    cache.remove(1, 3);
+
+    List<ConversationCache.Entry> history = cache.getHistoryBefore(channel, message(channel, 4, "bob", "?", false));
+    assertEquals(List.of(new ConversationCache.Entry(1, "user", "alice: 改過了")), history);
+  }
+
+  @Test
+  void evictsLeastRecentlyUsedChannel() {
+    ConversationCache cache = cache(100, 2);
+    MessageChannelUnion first = channel(1);
+    MessageChannelUnion second = channel(2);
+    cache.prime(1);
+    cache.prime(2);
+    // 讀取頻道 1，頻道 2 變成最久未使用
+    cache.getHistoryBefore(first, message(first, 10, "alice", "hi", false));
+    cache.prime(3);
+
+    cache.record(message(second, 11, "alice", "hi", false));
+    cache.getHistoryBefore(second, message(second, 12, "alice", "hi", false));
+
+    assertEquals(1, cacheCount("miss"));
+    assertEquals(2, registry.get("dcbot.history.cache.evictions").counter().count());
+  }
+
+  @Test
+  void skipsSystemAndEmptyMessages() {
+    MessageChannelUnion channel = channel(1);
+    Message system = message(channel, 1, "discord", "歡迎", false);
+    when(system.getAuthor().isSystem()).thenReturn(true);
+
+    assertNull(ConversationCache.Entry.from(system));
+    assertNull(ConversationCache.Entry.from(message(channel, 2, "alice", "   ", false)));
+  }
+
+  private static List<Long> ids(List<ConversationCache.Entry> history) {
+    return history.stream().map(ConversationCache.Entry::messageId).toList();
+  }
+
+  private ConversationCache cache(int capacity, int maxChannels) {
+    BotConfig botConfig = new BotConfig();
+    botConfig.getHistory().setCapacity(capacity);
+    botConfig.getHistory().setMaxChannels(maxChannels);
+    return new ConversationCache(botConfig, registry, new PipelineMetrics(registry));
+  }
+
+  private double cacheCount(String result) {
+    return registry.get("dcbot.history.cache").tag("result", result).counter().count();
+  }
+
+  private static MessageChannelUnion channel(long id) {
+    MessageChannelUnion channel = mock(MessageChannelUnion.class, RETURNS_DEEP_STUBS);
+    when(channel.getIdLong()).thenReturn(id);
+    when(channel.getName()).thenReturn("channel-" + id);
+    return channel;
+  }
+
+  private static Message message(MessageChannelUnion channel, long id, String author, String text, boolean bot) {
+    User user = mock(User.class);
+    when(user.getName()).thenReturn(author);
+    when(user.isBot()).thenReturn(bot);
+    Message message = mock(Message.class);
+    when(message.getIdLong()).thenReturn(id);
+    when(message.getChannel()).thenReturn(channel);
+    when(message.getAuthor()).thenReturn(user);
+    when(message.getContentRaw()).thenReturn(text);
+    when(message.getContentDisplay()).thenReturn(text);
+    return message;
+  }
+}
@@ -0,0 +1,160 @@
+package per.iiimabbie.dcbot.service;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.RETURNS_DEEP_STUBS;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.time.Duration;
+import java.util.List;
+import java.util.Set;
+import net.dv8tion.jda.api.entities.Message;
+import org.junit.jupiter.api.Test;
+import per.iiimabbie.dcbot.config.BotConfig;
+import per.iiimabbie.dcbot.metrics.PipelineMetrics;
+
+class ResponseCacheTest {
+
+  private static final List<ConversationCache.Entry> NO_HISTORY = List.of();
+
+  private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+  private final BotConfig botConfig = new BotConfig();
+
+  ResponseCacheTest() {
+    BotConfig.ResponseCache config = botConfig.getResponseCache();
+    config.setEnabled(true);
+    config.setGuilds(Set.of("42"));
+    config.setSimilarity(0.6);
+  }
+
+  @Test
+  void normalizesWidthCaseAndPunctuation() {
+    assertEquals("hello world 123", ResponseCache.normalize("  ＨＥＬＬＯ，World!!　１２３？ "));
+    assertEquals("今天 天氣如何", ResponseCache.normalize("今天～天氣如何？？😀"));
+    assertEquals("", ResponseCache.normalize("!!!"));
+  }
+
+  @Test
+  void trigramsAreSortedAndUnique() {
+    // " aaaa " 的 trigram: " aa", "aaa", "aaa", "aa "
+    long[] grams = ResponseCache.trigrams("aaaa");
+    assertEquals(3, grams.length);
+    for (int i = 1; i < grams.length; i++) {
+      assertTrue(grams[i - 1] < grams[i]);
+    }
+    assertArrayEquals(ResponseCache.trigrams("ab"), ResponseCache.trigrams("ab"));
+    assertEquals(2, ResponseCache.trigrams("ab").length);
+  }
+
+  @Test
+  void jaccardOfTrigramSets() {
+    long[] a = ResponseCache.trigrams("abcd");
+    assertEquals(1.0, ResponseCache.jaccard(a, a));
+    assertEquals(0.0, ResponseCache.jaccard(a, ResponseCache.trigrams("wxyz")));
+    assertEquals(0.0, ResponseCache.jaccard(a, new long[0]));
+    // " abcd " 與 " abce " 共用 " ab", "abc"，聯集 6 個
+    assertEquals(2.0 / 6, ResponseCache.jaccard(a, ResponseCache.trigrams("abce")), 1e-9);
+  }
+
+  @Test
+  void exactHitIgnoresMentionsAndPunctuation() {
+    ResponseCache cache = cache();
+    cache.put(key(cache, "@bot 怎麼重設密碼？"), "到設定頁面重設");
+
+    assertEquals("到設定頁面重設", cache.get(key(cache, "怎麼重設密碼")));
+    assertEquals(1, count("hit"));
+  }
+
+  @Test
+  void nearHitAboveSimilarity() {
+    ResponseCache cache = cache();
+    cache.put(key(cache, "how do i reset my password"), "use the settings page");
+
+    assertEquals("use the settings page", cache.get(key(cache, "how do i reset my password please")));
+    assertNull(cache.get(key(cache, "what is the weather today")));
+    assertEquals(1, count("near_hit"));
+    assertEquals(1, count("miss"));
+  }
+
+  @Test
+  void differentContextMisses() {
+    ResponseCache cache = cache();
+    List<ConversationCache.Entry> history = List.of(new ConversationCache.Entry(1, "user", "alice: 在聊遊戲"));
+    ResponseCache.Key key = cache.keyFor(List.of(message("那要怎麼過關")), history);
+    cache.put(key, "先拿鑰匙");
+
+    List<ConversationCache.Entry> other = List.of(new ConversationCache.Entry(2, "user", "alice: 在聊電影"));
+    ResponseCache.Key otherKey = cache.keyFor(List.of(message("那要怎麼過關")), other);
+    assertEquals(key.question(), otherKey.question());
+    assertNotEquals(key.bucket(), otherKey.bucket());
+    assertNull(cache.get(otherKey));
+  }
+
+  @Test
+  void evictsLeastRecentlyUsed() {
+    botConfig.getResponseCache().setMaxEntries(2);
+    ResponseCache cache = cache();
+    cache.put(key(cache, "question one"), "1");
+    cache.put(key(cache, "question two"), "2");
+    cache.get(key(cache, "question one"));
+    cache.put(key(cache, "question three"), "3");
+
+    assertEquals(2, cache.size());
+    assertEquals("1", cache.get(key(cache, "question one")));
+    // 被淘汰的項目也不會從近似比對找到
+    assertNull(cache.get(key(cache, "question two")));
+  }
+
+  @Test
+  void expiredEntriesAreDropped() {
+    botConfig.getResponseCache().setTtl(Duration.ZERO);
+    ResponseCache cache = cache();
+    cache.put(key(cache, "question one"), "1");
+
+    assertNull(cache.get(key(cache, "question one")));
+    assertEquals(0, cache.size());
+  }
+
+  @Test
+  void onlyCachesSingleQuestionsInListedGuilds() {
+    ResponseCache cache = cache();
+    assertNull(cache.keyFor(List.of(message("問題一"), message("問題二")), NO_HISTORY));
+    assertNull(cache.keyFor(List.of(message("?")), NO_HISTORY));
+
+    Message otherGuild = message("問題一");
+    when(otherGuild.getGuild().getId()).thenReturn("7");
+    assertNull(cache.keyFor(List.of(otherGuild), NO_HISTORY));
+
+    Message direct = message("問題一");
+    when(direct.isFromGuild()).thenReturn(false);
+    assertNull(cache.keyFor(List.of(direct), NO_HISTORY));
+
+    botConfig.getResponseCache().setEnabled(false);
+    assertNull(cache().keyFor(List.of(message("問題一")), NO_HISTORY));
+  }
+
+  private ResponseCache cache() {
+    return new ResponseCache(botConfig, registry, new PipelineMetrics(registry));
+  }
+
+  private static ResponseCache.Key key(ResponseCache cache, String question) {
+    return cache.keyFor(List.of(message(question)), NO_HISTORY);
+  }
+
+  private double count(String result) {
+    return registry.get("dcbot.response.cache").tag("result", result).counter().count();
+  }
+
+  private static Message message(String text) {
+    Message message = mock(Message.class, RETURNS_DEEP_STUBS);
+    when(message.isFromGuild()).thenReturn(true);
+    when(message.getGuild().getId()).thenReturn("42");
+    when(message.getContentDisplay()).thenReturn(text);
+    return message;
+  }
+}
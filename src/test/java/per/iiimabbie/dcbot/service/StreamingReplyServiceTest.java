@@ -0,0 +1,129 @@
+package per.iiimabbie.dcbot.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import net.dv8tion.jda.api.entities.Message;
+import net.dv8tion.jda.api.entities.channel.middleman.MessageChannel;
+import net.dv8tion.jda.api.requests.RestAction;
+import net.dv8tion.jda.api.requests.restaction.MessageCreateAction;
+import net.dv8tion.jda.api.requests.restaction.MessageEditAction;
+import org.junit.jupiter.api.Test;
+import per.iiimabbie.dcbot.config.BotConfig;
+
+class StreamingReplyServiceTest {
+
+  @Test
+  void shortReplyStaysInOnePage() {
+    assertEquals(List.of("收到"), StreamingReplyService.split("收到", 1900));
+  }
+
+  @Test
+  void quotedBurstSplitsAtLineBreak() {
+    String quote = "> **alice**: 第一則\n> **bob**: 第二則\n\n";
+    String reply = quote + "甲".repeat(1800) + "\n" + "乙".repeat(100);
+
+    List<String> pages = StreamingReplyService.split(reply, 1900);
+
+    assertEquals(2, pages.size());
+    assertTrue(pages.getFirst().endsWith("\n"));
+    assertEquals("乙".repeat(100), pages.get(1));
+    assertEquals(reply, String.join("", pages));
+  }
+
+  @Test
+  void neverCutsSurrogatePairs() {
+    // 沒有換行或空白時硬切，不能把 emoji 切成兩半
+    String reply = "a" + "😀".repeat(30);
+
+    List<String> pages = StreamingReplyService.split(reply, 10);
+
+    assertEquals(reply, String.join("", pages));
+    for (String page : pages) {
+      assertTrue(page.length() <= 10);
+      assertFalse(Character.isHighSurrogate(page.charAt(page.length() - 1)));
+    }
+  }
+
+  @Test
+  void failureAfterRolloverReplacesTheCurrentPage() throws Exception {
+    List<List<String>> messages = new CopyOnWriteArrayList<>();
+    MessageChannel channel = channel(messages);
+    BotConfig botConfig = new BotConfig();
+    botConfig.getReply().setMaxLength(20);
+    botConfig.getReply().setEditInterval(Duration.ofMillis(10));
+    StreamingReplyService service = new StreamingReplyService(botConfig, new SimpleMeterRegistry());
+
+    try {
+      StreamingReplyService.StreamingReply reply = service.start(channel, System.nanoTime());
+      reply.onChunk("a".repeat(15) + "\n" + "b".repeat(10));
+      long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+      while (messages.size() < 2 && System.nanoTime() < deadline) {
+        Thread.sleep(10);
+      }
+
+      // 已換到第二則後才失敗，錯誤訊息比已定稿的內容短
+      reply.complete("發生錯誤").get(5, TimeUnit.SECONDS);
+
+      assertEquals(2, messages.size());
+      assertEquals("a".repeat(15) + "\n", messages.getFirst().getLast());
+      assertEquals("發生錯誤", messages.get(1).getLast());
+    } finally {
+      service.shutdown();
+    }
+  }
+
+  @Test
+  void finalTextContinuingTheStreamKeepsPages() throws Exception {
+    List<List<String>> messages = new CopyOnWriteArrayList<>();
+    BotConfig botConfig = new BotConfig();
+    botConfig.getReply().setMaxLength(20);
+    StreamingReplyService service = new StreamingReplyService(botConfig, new SimpleMeterRegistry());
+
+    try {
+      StreamingReplyService.StreamingReply reply = service.start(channel(messages), System.nanoTime());
+      reply.onChunk("a".repeat(15));
+      reply.complete("a".repeat(15) + "\n" + "b".repeat(10)).get(5, TimeUnit.SECONDS);
+
+      assertEquals(2, messages.size());
+      assertEquals("a".repeat(15) + "\n", messages.getFirst().getLast());
+      assertEquals("b".repeat(10), messages.get(1).getLast());
+    } finally {
+      service.shutdown();
+    }
+  }
+
+  /**
+   * 假的頻道：每則訊息記錄送出和每次編輯後的內容
+   */
+  private static MessageChannel channel(List<List<String>> messages) {
+    MessageChannel channel = mock(MessageChannel.class);
+    when(channel.sendMessage(anyString())).thenAnswer(send -> {
+      List<String> versions = new CopyOnWriteArrayList<>(List.of(send.<String>getArgument(0)));
+      messages.add(versions);
+      Message message = mock(Message.class);
+      when(message.editMessage(anyString())).thenAnswer(edit -> {
+        versions.add(edit.getArgument(0));
+        return submitting(MessageEditAction.class, message);
+      });
+      return submitting(MessageCreateAction.class, message);
+    });
+    return channel;
+  }
+
+  private static <T extends RestAction<Message>> T submitting(Class<T> type, Message message) {
+    T action = mock(type);
+    when(action.submit()).thenReturn(CompletableFuture.completedFuture(message));
+    return action;
+  }
+}